@@ -1,21 +1,40 @@
 package com.libre.spider.client;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libre.spider.config.XhsConfig;
+import com.libre.spider.enums.EndpointType;
 import com.libre.spider.enums.SearchSortType;
+import com.libre.spider.enums.ErrorType;
+import com.libre.spider.exception.CircuitOpenException;
+import com.libre.spider.exception.CrawlerException;
+import com.libre.spider.exception.DataFetchException;
+import com.libre.spider.exception.IpBlockedException;
+import com.libre.spider.exception.LoginRequiredException;
+import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.exception.TaskTimeoutException;
 import com.libre.spider.exception.XhsException;
+import com.libre.spider.limiter.AdaptiveLimiter;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.limiter.PriorityLock;
 import com.libre.spider.model.SearchResponse;
+import com.libre.spider.service.BulkheadService;
+import com.libre.spider.service.CircuitBreakerService;
 import com.libre.spider.service.CookieService;
 import com.libre.spider.service.JavaScriptExecutor;
+import com.libre.spider.service.RateLimiterService;
+import com.libre.spider.service.RetryBudgetService;
 import com.libre.spider.utils.XhsSignatureHelper;
 import com.microsoft.playwright.Page;
 import lombok.extern.slf4j.Slf4j;
-import net.dreamlu.mica.http.HttpRequest;
 import okhttp3.*;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -37,6 +56,14 @@ public class XhsApiClient {
 
 	private final XhsSignatureHelper signatureHelper;
 
+	private final RateLimiterService rateLimiterService;
+
+	private final BulkheadService bulkheadService;
+
+	private final CircuitBreakerService circuitBreakerService;
+
+	private final RetryBudgetService retryBudgetService;
+
 	private final ObjectMapper objectMapper;
 
 	private final ObjectMapper compactObjectMapper; // 用于生成紧凑格式的JSON
@@ -45,12 +72,23 @@ public class XhsApiClient {
 
 	private Page playwrightPage;
 
+	/**
+	 * 签名计算使用共享的浏览器页面，交互式请求优先获得
+	 */
+	private final PriorityLock signingLock = new PriorityLock();
+
 	public XhsApiClient(XhsConfig xhsConfig, CookieService cookieService, JavaScriptExecutor jsExecutor,
-			XhsSignatureHelper signatureHelper, ObjectMapper objectMapper) {
+			XhsSignatureHelper signatureHelper, RateLimiterService rateLimiterService, BulkheadService bulkheadService,
+			CircuitBreakerService circuitBreakerService, RetryBudgetService retryBudgetService,
+			ObjectMapper objectMapper) {
 		this.xhsConfig = xhsConfig;
 		this.cookieService = cookieService;
 		this.jsExecutor = jsExecutor;
 		this.signatureHelper = signatureHelper;
+		this.rateLimiterService = rateLimiterService;
+		this.bulkheadService = bulkheadService;
+		this.circuitBreakerService = circuitBreakerService;
+		this.retryBudgetService = retryBudgetService;
 		this.objectMapper = objectMapper;
 
 		// 创建一个用于生成紧凑JSON的ObjectMapper，与Python版本保持一致
@@ -90,13 +128,22 @@ public class XhsApiClient {
 		// 添加Cookie
 		headers.put("Cookie", cookieService.getCookieString());
 
-		// 获取加密参数
+		// 获取加密参数 浏览器页面不是线程安全的，串行调用，交互式请求优先
 		if (playwrightPage != null) {
+			// 等不到签名时不能发出未签名的请求，超时或被中断直接失败
+			acquireSigningLock(url);
 			try {
-				Map<String, Object> encryptParams = jsExecutor.getEncryptParams(playwrightPage, url, data);
+				Map<String, Object> encryptParams;
+				String b1;
+				try {
+					encryptParams = jsExecutor.getEncryptParams(playwrightPage, url, data);
+					b1 = jsExecutor.getB1FromLocalStorage(playwrightPage);
+				}
+				finally {
+					signingLock.unlock();
+				}
 				String xS = (String) encryptParams.get("X-s");
 				String xT = String.valueOf(encryptParams.get("X-t"));
-				String b1 = jsExecutor.getB1FromLocalStorage(playwrightPage);
 				String a1 = cookieService.getA1();
 
 				// 生成签名
@@ -114,36 +161,271 @@ public class XhsApiClient {
 		return headers;
 	}
 
+	/**
+	 * 获取签名锁 最长等待到任务的截止时间
+	 * @throws TaskTimeoutException 等待超过截止时间或被中断
+	 */
+	private void acquireSigningLock(String url) {
+		CrawlContext context = CrawlContext.current();
+		context.checkDeadline();
+		try {
+			if (!signingLock.tryLock(context.getPriority(), context.remainingMillis(), TimeUnit.MILLISECONDS)) {
+				throw new TaskTimeoutException("等待签名超过任务截止时间: " + url);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TaskTimeoutException("等待签名被中断: " + url, e);
+		}
+	}
+
+	/**
+	 * 执行HTTP请求，发送前先经过端点和会话的熔断器，出现验证码/封禁响应时打开熔断器并抛出验证码异常
+	 */
+	private Response execute(EndpointType endpointType, Request request) throws IOException {
+		CircuitBreakerService.Pass pass = circuitBreakerService.acquire(endpointType);
+		try {
+			Response response = executeLimited(endpointType, request);
+			if (isBlocked(response.code())) {
+				pass.blocked(response.code());
+				String verifyType = response.header("Verifytype");
+				String verifyUuid = response.header("Verifyuuid");
+				response.close();
+				log.warn("请求被拦截，熔断器打开: endpoint={}, code={}, verifyType={}", endpointType, response.code(),
+						verifyType);
+				throw new XhsException.VerificationError(
+						"出现验证码，请求失败。验证类型: " + verifyType + ", UUID: " + verifyUuid);
+			}
+			pass.success();
+			return response;
+		}
+		finally {
+			pass.release();
+		}
+	}
+
+	/**
+	 * 是否为验证码/封禁响应
+	 */
+	private boolean isBlocked(int code) {
+		return code == 461 || code == 471;
+	}
+
+	/**
+	 * 先占用该端点类别的舱壁名额，再从全局限流器获取令牌后发送请求
+	 * <p>
+	 * 在舱壁外排队的请求不会提前消耗令牌，名额释放时排队的请求也不会集中发出；获取令牌失败时归还名额。
+	 * 响应体在舱壁内读完，名额覆盖完整的请求耗时，响应时间作为舱壁自适应限制的采样
+	 */
+	private Response executeLimited(EndpointType endpointType, Request request) throws IOException {
+		AdaptiveLimiter.Permit permit = bulkheadService.acquire(endpointType);
+
+		// 整个调用（连接、发送、等待、读取响应体）不超过任务的剩余时间
+		Call call = httpClient.newCall(request);
+		CrawlContext context = CrawlContext.current();
+		try {
+			rateLimiterService.acquire(endpointType);
+			if (context.hasDeadline()) {
+				context.checkDeadline();
+				call.timeout().timeout(context.remainingMillis(), TimeUnit.MILLISECONDS);
+			}
+		}
+		catch (RuntimeException e) {
+			if (permit != null) {
+				permit.release();
+			}
+			throw e;
+		}
+		retryBudgetService.recordRequest();
+		long start = System.nanoTime();
+		if (permit == null) {
+			try {
+				Response response = call.execute();
+				rateLimiterService.recordResponse(endpointType, response.code(), elapsedMillis(start));
+				return response;
+			}
+			catch (IOException e) {
+				rateLimiterService.recordError(endpointType);
+				throw e;
+			}
+		}
+
+		try (Response response = call.execute()) {
+			ResponseBody body = response.body();
+			ResponseBody buffered = body != null ? ResponseBody.create(body.bytes(), body.contentType()) : null;
+			if (isThrottled(response.code())) {
+				permit.dropped();
+			}
+			else {
+				permit.success();
+			}
+			rateLimiterService.recordResponse(endpointType, response.code(), elapsedMillis(start));
+			return response.newBuilder().body(buffered).build();
+		}
+		catch (IOException | RuntimeException e) {
+			permit.dropped();
+			if (e instanceof IOException) {
+				rateLimiterService.recordError(endpointType);
+			}
+			throw e;
+		}
+	}
+
+	private long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * 是否为服务端限流或过载的响应（461/471为小红书的风控状态码）
+	 */
+	private boolean isThrottled(int code) {
+		return code == 429 || code == 461 || code == 471 || code >= 500;
+	}
+
 	/**
 	 * 发送GET请求
 	 */
-	public <T> T get(String url, TypeReference<T> typeRef) throws IOException {
+	public <T> T get(EndpointType endpointType, String url, TypeReference<T> typeRef) throws IOException {
 		Map<String, String> headers = buildHeaders(url, null);
 
 		Request.Builder requestBuilder = new Request.Builder().url(url).get();
 
 		headers.forEach(requestBuilder::addHeader);
 
-		try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
+		try (Response response = execute(endpointType, requestBuilder.build())) {
 			if (!response.isSuccessful()) {
-				throw new IOException("Unexpected response code: " + response.code());
+				throw statusError(endpointType, response);
 			}
 
 			String responseBody = response.body().string();
 			log.debug("API响应: {}", responseBody);
 
-			return objectMapper.readValue(responseBody, typeRef);
+			return readJson(endpointType, responseBody, typeRef);
 		}
 	}
 
 	/**
 	 * 发送POST请求
 	 */
-	public <T> T post(String url, Object data, TypeReference<T> typeRef) throws IOException {
+	public <T> T post(EndpointType endpointType, String url, Object data, TypeReference<T> typeRef)
+			throws IOException {
 		Map<String, String> headers = buildHeaders(url, data);
 		// 使用紧凑的JSON格式，与Python版本保持一致: json.dumps(data, separators=(',', ':'))
 		String jsonData = compactObjectMapper.writeValueAsString(data);
-		return HttpRequest.post(url).addHeader(headers).bodyString(jsonData).execute().asValue(typeRef);
+
+		Request.Builder requestBuilder = new Request.Builder().url(url)
+			.post(RequestBody.create(jsonData, MediaType.parse("application/json;charset=UTF-8")));
+
+		headers.forEach(requestBuilder::addHeader);
+
+		try (Response response = execute(endpointType, requestBuilder.build())) {
+			String responseBody = response.body() != null ? response.body().string() : "";
+			log.debug("API响应: {}", responseBody);
+
+			// 错误状态码通常也带有JSON错误信息，能识别接口code时以code为准
+			JsonNode root = null;
+			if (!responseBody.isEmpty()) {
+				try {
+					root = objectMapper.readTree(responseBody);
+				}
+				catch (IOException e) {
+					if (response.isSuccessful()) {
+						throw new DataFetchException("响应解析失败: endpoint=" + endpointType, ErrorType.PARSE_ERROR, 0, e);
+					}
+				}
+			}
+			if (!response.isSuccessful()) {
+				CrawlerException apiError = root != null ? apiError(endpointType, root, retryAfter(response)) : null;
+				throw apiError != null && apiError.getErrorType() != ErrorType.API_ERROR ? apiError
+						: statusError(endpointType, response);
+			}
+			if (root == null) {
+				throw new DataFetchException("响应为空: endpoint=" + endpointType, ErrorType.PARSE_ERROR);
+			}
+			if (root.has("success") && !root.get("success").asBoolean()) {
+				throw apiError(endpointType, root, 0);
+			}
+
+			try {
+				return objectMapper.convertValue(root, typeRef);
+			}
+			catch (IllegalArgumentException e) {
+				throw new DataFetchException("响应解析失败: endpoint=" + endpointType, ErrorType.PARSE_ERROR, 0, e);
+			}
+		}
+	}
+
+	private <T> T readJson(EndpointType endpointType, String body, TypeReference<T> typeRef) {
+		try {
+			return objectMapper.readValue(body, typeRef);
+		}
+		catch (IOException e) {
+			throw new DataFetchException("响应解析失败: endpoint=" + endpointType, ErrorType.PARSE_ERROR, 0, e);
+		}
+	}
+
+	/**
+	 * 按HTTP状态码生成失败异常
+	 */
+	private CrawlerException statusError(EndpointType endpointType, Response response) {
+		int code = response.code();
+		long retryAfter = retryAfter(response);
+		String message = String.format("请求失败: endpoint=%s, status=%d", endpointType, code);
+		if (code == 429) {
+			return new RateLimitException(message, retryAfter);
+		}
+		if (code == 401) {
+			return new LoginRequiredException(message);
+		}
+		if (code == 404) {
+			return new DataFetchException(message, ErrorType.NOT_FOUND);
+		}
+		if (code >= 500) {
+			return new DataFetchException(message, ErrorType.SERVER_ERROR, retryAfter, null);
+		}
+		return new DataFetchException(message, ErrorType.CLIENT_ERROR);
+	}
+
+	/**
+	 * 按接口返回的code生成失败异常
+	 */
+	private CrawlerException apiError(EndpointType endpointType, JsonNode root, long retryAfter) {
+		int code = root.path("code").asInt(0);
+		String message = String.format("接口返回错误: endpoint=%s, code=%d, msg=%s", endpointType, code,
+				root.path("msg").asText(""));
+		if (code == 300012 || code == 300013) {
+			// HTTP 200的限流/封禁响应同样需要放慢请求节奏
+			rateLimiterService.recordThrottled(endpointType);
+		}
+		return switch (code) {
+			case 300012 -> new IpBlockedException(message);
+			case 300013 -> new RateLimitException(message, retryAfter);
+			case -100, -101 -> new LoginRequiredException(message);
+			default -> new DataFetchException(message, ErrorType.API_ERROR, retryAfter, null);
+		};
+	}
+
+	/**
+	 * 解析Retry-After响应头（秒数或HTTP日期）
+	 * @return 毫秒，未给出或无法解析时返回0
+	 */
+	private long retryAfter(Response response) {
+		String value = response.header("Retry-After");
+		if (value == null || value.isBlank()) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		}
+		catch (NumberFormatException e) {
+			try {
+				ZonedDateTime time = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, Duration.between(ZonedDateTime.now(), time).toMillis());
+			}
+			catch (Exception ignored) {
+				return 0;
+			}
+		}
 	}
 
 	/**
@@ -162,7 +444,7 @@ public class XhsApiClient {
 		data.put("note_type", 0);
 		// Python版本没有ext_flags和image_formats参数
 
-		return post(url, data, new TypeReference<>() {
+		return post(EndpointType.SEARCH, url, data, new TypeReference<>() {
 		});
 	}
 
@@ -221,8 +503,13 @@ public class XhsApiClient {
 			log.debug("HTML请求URL: {}", url);
 			log.debug("HTML请求头: {}", headers);
 
-			try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
+			try (Response response = execute(EndpointType.HTML_DETAIL, requestBuilder.build())) {
 				if (!response.isSuccessful()) {
+					CrawlerException error = statusError(EndpointType.HTML_DETAIL, response);
+					if (error.getErrorType() == ErrorType.RATE_LIMITED) {
+						// 限流对其他获取方式同样有效，不再降级
+						throw error;
+					}
 					log.warn("HTML页面请求失败，状态码: {}", response.code());
 					return null;
 				}
@@ -233,6 +520,11 @@ public class XhsApiClient {
 				return parseNoteFromHtml(html, noteId);
 			}
 		}
+		catch (XhsException.VerificationError | CircuitOpenException | TaskTimeoutException
+				| RateLimitException e) {
+			// 被拦截或限流时不再降级尝试其他方式
+			throw e;
+		}
 		catch (Exception e) {
 			log.error("HTML解析方式获取笔记详情失败: {}", e.getMessage());
 			return null;
@@ -253,8 +545,9 @@ public class XhsApiClient {
 			data.put("xsec_source", xsecSource);
 			data.put("xsec_token", xsecToken);
 
-			Map<String, Object> response = post(url, data, new TypeReference<Map<String, Object>>() {
-			});
+			Map<String, Object> response = post(EndpointType.FEED_API, url, data,
+					new TypeReference<Map<String, Object>>() {
+					});
 
 			// 解析API响应
 			if (response != null && response.containsKey("data") && response.get("data") != null) {
@@ -273,6 +566,10 @@ public class XhsApiClient {
 
 			return null;
 		}
+		catch (CrawlerException | XhsException.VerificationError e) {
+			// 最后一级降级，按失败类型交给调用方决定是否重试
+			throw e;
+		}
 		catch (Exception e) {
 			log.error("API方式获取笔记详情失败: {}", e.getMessage());
 			return null;
@@ -360,45 +657,9 @@ public class XhsApiClient {
 	}
 
 	/**
-	 * 获取用户信息（通过解析HTML，完全按照MediaCrawler实现）
+	 * 获取用户信息（通过解析HTML，完全按照MediaCrawler实现） 只请求一次，重试统一由调用方的RetryTemplate按失败类型和重试预算决定
 	 */
 	public Map<String, Object> getUserInfo(String userId) throws IOException {
-		return getUserInfoWithRetry(userId, 3);
-	}
-
-	/**
-	 * 获取用户信息（带重试机制）
-	 */
-	private Map<String, Object> getUserInfoWithRetry(String userId, int maxRetries) throws IOException {
-		Exception lastException = null;
-
-		for (int attempt = 1; attempt <= maxRetries; attempt++) {
-			try {
-				return getUserInfoOnce(userId);
-			}
-			catch (Exception e) {
-				lastException = e;
-				log.warn("获取用户信息失败，第{}次尝试，错误: {}", attempt, e.getMessage());
-
-				if (attempt < maxRetries) {
-					try {
-						Thread.sleep(1000); // 1秒间隔，与MediaCrawler保持一致
-					}
-					catch (InterruptedException ie) {
-						Thread.currentThread().interrupt();
-						throw new IOException("重试被中断", ie);
-					}
-				}
-			}
-		}
-
-		throw new IOException("获取用户信息失败，已重试" + maxRetries + "次", lastException);
-	}
-
-	/**
-	 * 单次获取用户信息
-	 */
-	private Map<String, Object> getUserInfoOnce(String userId) throws IOException {
 		String url = xhsConfig.getWebDomain() + "/user/profile/" + userId;
 
 		log.info("request url: {}", url);
@@ -409,16 +670,10 @@ public class XhsApiClient {
 		Request.Builder requestBuilder = new Request.Builder().url(url).get();
 		headers.forEach(requestBuilder::addHeader);
 
-		try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-			// 检查状态码，处理特殊情况
-			if (response.code() == 471 || response.code() == 461) {
-				String verifyType = response.header("Verifytype");
-				String verifyUuid = response.header("Verifyuuid");
-				throw new XhsException.VerificationError("出现验证码，请求失败。验证类型: " + verifyType + ", UUID: " + verifyUuid);
-			}
-
+		// 验证码响应（461/471）由execute打开熔断器并抛出VerificationError
+		try (Response response = execute(EndpointType.USER_PROFILE, requestBuilder.build())) {
 			if (!response.isSuccessful()) {
-				throw new XhsException.DataFetchError("请求失败，状态码: " + response.code());
+				throw statusError(EndpointType.USER_PROFILE, response);
 			}
 
 			String html = response.body().string();
@@ -431,7 +686,7 @@ public class XhsApiClient {
 	/**
 	 * 解析HTML中的用户信息
 	 */
-	private Map<String, Object> parseUserInfoFromHtml(String html) throws IOException {
+	private Map<String, Object> parseUserInfoFromHtml(String html) {
 		try {
 			// 使用正则表达式提取window.__INITIAL_STATE__ (与MediaCrawler Python版本保持一致)
 			String regex = "<script>window\\.__INITIAL_STATE__=(.+)<\\/script>";
@@ -454,10 +709,13 @@ public class XhsApiClient {
 				}
 			}
 
-			throw new IOException("无法从HTML中解析用户信息");
+			throw new DataFetchException("无法从HTML中解析用户信息", ErrorType.PARSE_ERROR);
+		}
+		catch (DataFetchException e) {
+			throw e;
 		}
 		catch (Exception e) {
-			throw new IOException("解析用户信息失败: " + e.getMessage(), e);
+			throw new DataFetchException("解析用户信息失败: " + e.getMessage(), ErrorType.PARSE_ERROR, 0, e);
 		}
 	}
 
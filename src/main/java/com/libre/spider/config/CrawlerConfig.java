@@ -1,10 +1,14 @@
 package com.libre.spider.config;
 
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.enums.LimitAlgorithm;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 爬虫配置类 用于管理爬虫的各种配置参数
@@ -74,6 +78,101 @@ public class CrawlerConfig {
 	 */
 	private ScheduleConfig schedule = new ScheduleConfig();
 
+	/**
+	 * 流水线配置
+	 */
+	private PipelineConfig pipeline = new PipelineConfig();
+
+	/**
+	 * 限流配置
+	 */
+	private RateLimitConfig rateLimit = new RateLimitConfig();
+
+	/**
+	 * 爬取I/O线程池配置
+	 */
+	private ExecutorConfig executor = new ExecutorConfig();
+
+	/**
+	 * 异步写入配置
+	 */
+	private WriteBehindConfig writeBehind = new WriteBehindConfig();
+
+	/**
+	 * 增量爬取水位线配置
+	 */
+	private WatermarkConfig watermark = new WatermarkConfig();
+
+	/**
+	 * 任务检查点配置
+	 */
+	private CheckpointConfig checkpoint = new CheckpointConfig();
+
+	/**
+	 * 持久化工作队列配置
+	 */
+	private WorkQueueConfig workQueue = new WorkQueueConfig();
+
+	/**
+	 * 节点租约配置
+	 */
+	private LeaseConfig lease = new LeaseConfig();
+
+	/**
+	 * 关键词自适应刷新配置
+	 */
+	private RefreshConfig refresh = new RefreshConfig();
+
+	/**
+	 * 自适应并发限制配置
+	 */
+	private ConcurrencyLimitConfig concurrencyLimit = new ConcurrencyLimitConfig();
+
+	/**
+	 * 按端点类别隔离的舱壁配置
+	 */
+	private BulkheadsConfig bulkhead = new BulkheadsConfig();
+
+	/**
+	 * 熔断配置
+	 */
+	private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+
+	/**
+	 * 重试预算配置
+	 */
+	private RetryBudgetConfig retryBudget = new RetryBudgetConfig();
+
+	/**
+	 * 延迟重试队列配置
+	 */
+	private RetryQueueConfig retryQueue = new RetryQueueConfig();
+
+	/**
+	 * 自适应请求节奏配置
+	 */
+	private PacingConfig pacing = new PacingConfig();
+
+	/**
+	 * 请求优先级配置
+	 */
+	private PriorityConfig priority = new PriorityConfig();
+
+	/**
+	 * REST接口准入控制配置
+	 */
+	private AdmissionConfig admission = new AdmissionConfig();
+
+	/**
+	 * 集群限流配置
+	 */
+	private ClusterRateLimitConfig clusterRateLimit = new ClusterRateLimitConfig();
+
+	/**
+	 * 内存保护配置
+	 */
+	private MemoryConfig memory = new MemoryConfig();
+
 	/**
 	 * 获取关键词列表
 	 */
@@ -125,6 +224,809 @@ public class CrawlerConfig {
 		 */
 		private int timeout = 60;
 
+		/**
+		 * 同时执行的关键词数量上限
+		 */
+		private int parallelKeywords = 3;
+
+	}
+
+	/**
+	 * 流水线配置（搜索 → 笔记详情 → 用户信息）
+	 */
+	@Data
+	public static class PipelineConfig {
+
+		/**
+		 * 阶段间队列容量
+		 */
+		private int queueCapacity = 100;
+
+		/**
+		 * 搜索翻页预取并发数（第一页确认有更多结果后生效）
+		 */
+		private int searchConcurrency = 2;
+
+		/**
+		 * 笔记详情阶段并发数
+		 */
+		private int detailConcurrency = 3;
+
+		/**
+		 * 用户信息阶段并发数
+		 */
+		private int userConcurrency = 2;
+
+	}
+
+	/**
+	 * 限流配置 按端点类别分别设置令牌桶，所有任务共享
+	 */
+	@Data
+	public static class RateLimitConfig {
+
+		/**
+		 * 等待令牌的最长时间（毫秒）
+		 */
+		private long acquireTimeout = 300000;
+
+		/**
+		 * 搜索接口
+		 */
+		private BucketConfig search = new BucketConfig();
+
+		/**
+		 * 笔记详情API
+		 */
+		private BucketConfig feedApi = new BucketConfig();
+
+		/**
+		 * 笔记详情页面
+		 */
+		private BucketConfig htmlDetail = new BucketConfig();
+
+		/**
+		 * 用户主页
+		 */
+		private BucketConfig userProfile = new BucketConfig();
+
+		/**
+		 * 获取指定端点类别的令牌桶配置
+		 */
+		public BucketConfig getBucket(EndpointType endpointType) {
+			return switch (endpointType) {
+				case SEARCH -> search;
+				case FEED_API -> feedApi;
+				case HTML_DETAIL -> htmlDetail;
+				case USER_PROFILE -> userProfile;
+			};
+		}
+
+	}
+
+	/**
+	 * 爬取I/O线程池配置
+	 */
+	@Data
+	public static class ExecutorConfig {
+
+		/**
+		 * JDK支持时是否使用虚拟线程
+		 */
+		private boolean virtualThreads = true;
+
+		/**
+		 * 不使用虚拟线程时的最大线程数，小于"并行关键词数×每条流水线的阶段线程数"时自动调大
+		 */
+		private int maxThreads = 64;
+
+		/**
+		 * 不使用虚拟线程时的等待队列容量
+		 */
+		private int queueCapacity = 1000;
+
+		/**
+		 * 空闲线程存活时间（秒）
+		 */
+		private int keepAliveSeconds = 60;
+
+	}
+
+	/**
+	 * 异步写入配置（爬取结果先进入内存队列，由后台线程批量写库）
+	 */
+	@Data
+	public static class WriteBehindConfig {
+
+		/**
+		 * 队列容量
+		 */
+		private int queueCapacity = 2000;
+
+		/**
+		 * 每批最多写入的记录数
+		 */
+		private int batchSize = 50;
+
+		/**
+		 * 攒批最长等待时间（毫秒）
+		 */
+		private long flushInterval = 1000;
+
+		/**
+		 * 写入线程数 每个线程一个队列，记录按主键分配，同一主键总由同一线程写入
+		 */
+		private int writers = 1;
+
+		/**
+		 * 队列满时爬取线程最长等待时间（毫秒），超时后改为同步写入
+		 */
+		private long offerTimeout = 5000;
+
+		/**
+		 * 关闭时等待队列排空的最长时间（毫秒）
+		 */
+		private long shutdownTimeout = 30000;
+
+		/**
+		 * 是否根据写入积压对爬取阶段施加背压
+		 */
+		private boolean backpressure = true;
+
+		/**
+		 * 积压水位线（占队列容量的比例），超过后按比例缩小爬取并发窗口，队列接近满时暂停爬取
+		 */
+		private double highWatermark = 0.5;
+
+		/**
+		 * 批次写入耗时阈值（毫秒），平滑后的写入耗时超过该值时按比例缩小爬取并发窗口
+		 */
+		private long slowFlushThreshold = 2000;
+
+	}
+
+	/**
+	 * 增量爬取水位线配置（仅对TIME_DESCENDING排序生效）
+	 */
+	@Data
+	public static class WatermarkConfig {
+
+		/**
+		 * 是否启用水位线
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 每个关键词保存的最新笔记ID数量
+		 */
+		private int topK = 50;
+
+		/**
+		 * 遇到多少个已知笔记后停止翻页（容忍置顶等少量乱序）
+		 */
+		private int stopAfterKnown = 3;
+
+	}
+
+	/**
+	 * 任务检查点配置（记录每个笔记的处理状态，中断的任务可以从断点恢复）
+	 */
+	@Data
+	public static class CheckpointConfig {
+
+		/**
+		 * 是否启用检查点
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 启动时是否自动恢复上次中断的任务
+		 */
+		private boolean recoverOnStartup = true;
+
+	}
+
+	/**
+	 * 持久化工作队列配置（笔记详情/用户信息保存在数据库中，由多个工作线程或节点共同领取处理）
+	 */
+	@Data
+	public static class WorkQueueConfig {
+
+		/**
+		 * 是否启用，未启用时使用进程内流水线
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 本节点的工作线程数
+		 */
+		private int workers = 3;
+
+		/**
+		 * 每次领取的工作项数量
+		 */
+		private int claimBatchSize = 1;
+
+		/**
+		 * 可见性超时（毫秒），领取后超过该时间未确认的工作项会被重新领取
+		 */
+		private long visibilityTimeout = 300000;
+
+		/**
+		 * 每个工作项最多领取次数
+		 */
+		private int maxAttempts = 3;
+
+		/**
+		 * 失败后重新入队的延迟（毫秒），按领取次数线性增加
+		 */
+		private long retryDelay = 30000;
+
+		/**
+		 * 队列为空时的轮询间隔（毫秒）
+		 */
+		private long pollInterval = 1000;
+
+	}
+
+	/**
+	 * 节点租约配置（多节点部署时每个关键词同一时间只由一个节点执行）
+	 */
+	@Data
+	public static class LeaseConfig {
+
+		/**
+		 * 是否启用，单节点部署无需启用
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 节点标识，为空时使用"进程号@主机名"
+		 */
+		private String nodeId = "";
+
+		/**
+		 * 租约有效期（毫秒），超过该时间未续约视为节点失联
+		 */
+		private long ttl = 60000;
+
+		/**
+		 * 心跳续约间隔（毫秒），应明显小于租约有效期
+		 */
+		private long heartbeatInterval = 15000;
+
+	}
+
+	/**
+	 * 关键词自适应刷新配置（按每个关键词的产出计算下次执行时间和翻页深度，启用后替代固定cron调度）
+	 */
+	@Data
+	public static class RefreshConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 检查到期关键词的间隔（毫秒）
+		 */
+		private long checkInterval = 60000;
+
+		/**
+		 * 最短执行间隔（分钟）
+		 */
+		private long minInterval = 30;
+
+		/**
+		 * 最长执行间隔（分钟）
+		 */
+		private long maxInterval = 1440;
+
+		/**
+		 * 每次执行期望发现的新笔记数，新增速度越快执行间隔越短
+		 */
+		private int targetNewNotes = 20;
+
+		/**
+		 * 翻页深度上限
+		 */
+		private int maxPages = 10;
+
+		/**
+		 * 全局每日请求预算，0表示不限制
+		 */
+		private long dailyRequestBudget = 0;
+
+		/**
+		 * 统计平滑系数（0-1），越大越偏向最近一次的结果
+		 */
+		private double smoothing = 0.5;
+
+	}
+
+	/**
+	 * 自适应并发限制配置 根据出错（被限流）和响应时间变长自动调整允许的在途请求数
+	 */
+	@Data
+	public static class ConcurrencyLimitConfig {
+
+		/**
+		 * 调整算法：AIMD(加性增乘性减), GRADIENT(延迟梯度)
+		 */
+		private LimitAlgorithm algorithm = LimitAlgorithm.GRADIENT;
+
+		/**
+		 * 初始并发数
+		 */
+		private int initialLimit = 3;
+
+		/**
+		 * 最小并发数
+		 */
+		private int minLimit = 1;
+
+		/**
+		 * 最大并发数
+		 */
+		private int maxLimit = 10;
+
+		/**
+		 * 出错时的收缩比例
+		 */
+		private double backoffRatio = 0.9;
+
+		/**
+		 * 响应时间容忍倍数，短期响应时间超过长期基准的该倍数时收缩
+		 */
+		private double rttTolerance = 1.5;
+
+		/**
+		 * 梯度算法的平滑系数（0-1），越大调整越快
+		 */
+		private double smoothing = 0.2;
+
+		/**
+		 * 长期响应时间基准的平滑窗口（采样数）
+		 */
+		private int longWindow = 100;
+
+	}
+
+	/**
+	 * 舱壁配置 每个端点类别拥有独立的并发上限、等待队列和自适应限制，慢端点不会占满其他端点的并发
+	 */
+	@Data
+	public static class BulkheadsConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 搜索接口
+		 */
+		private BulkheadConfig search = new BulkheadConfig();
+
+		/**
+		 * 笔记详情API
+		 */
+		private BulkheadConfig feedApi = new BulkheadConfig();
+
+		/**
+		 * 笔记详情页面
+		 */
+		private BulkheadConfig htmlDetail = new BulkheadConfig();
+
+		/**
+		 * 用户主页
+		 */
+		private BulkheadConfig userProfile = new BulkheadConfig();
+
+		/**
+		 * 获取端点类别对应的舱壁配置
+		 */
+		public BulkheadConfig getBulkhead(EndpointType endpointType) {
+			return switch (endpointType) {
+				case SEARCH -> search;
+				case FEED_API -> feedApi;
+				case HTML_DETAIL -> htmlDetail;
+				case USER_PROFILE -> userProfile;
+			};
+		}
+
+	}
+
+	/**
+	 * 单个端点类别的舱壁配置
+	 */
+	@Data
+	public static class BulkheadConfig {
+
+		/**
+		 * 最大并发数（自适应限制的上限）
+		 */
+		private int maxConcurrent = 3;
+
+		/**
+		 * 等待队列长度，已满时直接拒绝
+		 */
+		private int maxQueue = 20;
+
+		/**
+		 * 最长等待时间（毫秒）
+		 */
+		private long timeout = 60000;
+
+	}
+
+	/**
+	 * 熔断配置 按端点类别和登录会话分别熔断，遇到验证码/封禁响应（461/471）时暂停发送
+	 */
+	@Data
+	public static class CircuitBreakerConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 首次打开的冷却时间（毫秒），连续打开时翻倍
+		 */
+		private long cooldown = 60000;
+
+		/**
+		 * 最长冷却时间（毫秒）
+		 */
+		private long maxCooldown = 1800000;
+
+		/**
+		 * 半开状态同时放行的探测请求数
+		 */
+		private int halfOpenProbes = 1;
+
+		/**
+		 * 半开状态探测成功多少次后关闭
+		 */
+		private int closeAfterSuccesses = 2;
+
+		/**
+		 * 请求线程等待熔断器恢复的最长时间（毫秒），超过后放弃该请求
+		 */
+		private long maxWait = 600000;
+
+	}
+
+	/**
+	 * 重试预算配置 滑动窗口内的重试数不超过请求数的固定比例
+	 */
+	@Data
+	public static class RetryBudgetConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 重试数占窗口内请求数的最大比例
+		 */
+		private double ratio = 0.1;
+
+		/**
+		 * 窗口内不受比例限制的保底重试数（请求量很小时也允许少量重试）
+		 */
+		private int minRetries = 3;
+
+		/**
+		 * 统计窗口（毫秒）
+		 */
+		private long window = 60000;
+
+	}
+
+	/**
+	 * 延迟重试队列配置 获取失败的笔记详情/用户信息记录到数据库，由后台线程在配额空闲时按指数退避重试
+	 */
+	@Data
+	public static class RetryQueueConfig {
+
+		/**
+		 * 是否启用，启用后爬取流程不再就地重试
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 最多失败次数，达到后进入负缓存
+		 */
+		private int maxAttempts = 5;
+
+		/**
+		 * 首次重试延迟（毫秒），之后按倍数增长
+		 */
+		private long initialDelay = 60000;
+
+		/**
+		 * 重试延迟增长倍数
+		 */
+		private double multiplier = 2.0;
+
+		/**
+		 * 最大重试延迟（毫秒）
+		 */
+		private long maxDelay = 3600000;
+
+		/**
+		 * 负缓存有效期（毫秒），有效期内爬取流程直接跳过该笔记/用户
+		 */
+		private long negativeTtl = 86400000;
+
+		/**
+		 * 桶中至少积攒多少个令牌才认为有空闲配额
+		 */
+		private double spareTokens = 2;
+
+		/**
+		 * 每次领取的条目数量
+		 */
+		private int batchSize = 10;
+
+		/**
+		 * 领取超时（毫秒），超时未完成的条目可被重新领取
+		 */
+		private long claimTimeout = 600000;
+
+		/**
+		 * 轮询间隔（毫秒）
+		 */
+		private long pollInterval = 5000;
+
+	}
+
+	/**
+	 * 自适应请求节奏配置 按服务端反馈调整各端点类别的请求间隔，rateLimit中配置的间隔为下限
+	 */
+	@Data
+	public static class PacingConfig {
+
+		/**
+		 * 是否启用，未启用时使用固定间隔
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 最大请求间隔（毫秒）
+		 */
+		private long maxInterval = 60000;
+
+		/**
+		 * 收到限流/风控信号（429/461/471、限流错误码）时间隔放大的倍数
+		 */
+		private double backoffFactor = 2.0;
+
+		/**
+		 * 响应变慢或请求失败时间隔放大的倍数
+		 */
+		private double slowFactor = 1.25;
+
+		/**
+		 * 响应耗时超过该值（毫秒）视为变慢
+		 */
+		private long slowThreshold = 5000;
+
+		/**
+		 * 每次正常响应后与下限的差距保留的比例，越小恢复越快
+		 */
+		private double recovery = 0.9;
+
+	}
+
+	/**
+	 * 请求优先级配置 REST接口的交互式请求与后台批量爬取共享限流和并发控制，交互式请求有预留容量并按权重优先分配
+	 */
+	@Data
+	public static class PriorityConfig {
+
+		/**
+		 * 交互式请求的权重（两类请求都在等待令牌时的分配比例）
+		 */
+		private int interactiveWeight = 4;
+
+		/**
+		 * 批量请求的权重
+		 */
+		private int batchWeight = 1;
+
+		/**
+		 * 每个令牌桶为交互式请求预留的令牌数（不超过突发容量减1）
+		 */
+		private int reservedTokens = 1;
+
+		/**
+		 * 并发限制和每个舱壁为交互式请求预留的名额数（不超过限制值减1）
+		 */
+		private int reservedSlots = 1;
+
+	}
+
+	/**
+	 * REST接口准入控制配置 按接口限制并发和排队，按客户端限制请求速率，服务端过载时直接拒绝（429）
+	 */
+	@Data
+	public static class AdmissionConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * 单个REST请求的截止时间（毫秒），超过后限流等待等各阶段主动停止，0表示不限制
+		 */
+		private long requestTimeout = 300000;
+
+		/**
+		 * 未单独配置的接口使用的限制
+		 */
+		private AdmissionLimitConfig defaults = new AdmissionLimitConfig();
+
+		/**
+		 * 按接口路径模式单独配置的限制，如 /api/xhs/search-and-fetch
+		 */
+		private Map<String, AdmissionLimitConfig> endpoints = new LinkedHashMap<>();
+
+		/**
+		 * 每个客户端（按来源地址）每分钟的请求数，0表示不限制
+		 */
+		private int clientRequestsPerMinute = 60;
+
+		/**
+		 * 每个客户端的突发请求数
+		 */
+		private int clientBurst = 10;
+
+		/**
+		 * 堆内存使用率（启用内存保护时为GC后的占用率）超过该值时拒绝可丢弃的请求，0表示不检查
+		 */
+		private double shedHeapRatio = 0.9;
+
+		/**
+		 * 等待限流令牌的请求数超过该值时拒绝可丢弃的请求，0表示不检查
+		 */
+		private int shedQueueDepth = 50;
+
+		/**
+		 * 上游熔断器打开时是否拒绝可丢弃的请求
+		 */
+		private boolean shedOnCircuitOpen = true;
+
+		/**
+		 * 过载拒绝时返回的Retry-After（毫秒）
+		 */
+		private long retryAfter = 5000;
+
+		/**
+		 * 获取接口的准入限制
+		 * @param pattern 接口路径模式
+		 */
+		public AdmissionLimitConfig getLimit(String pattern) {
+			return endpoints.getOrDefault(pattern, defaults);
+		}
+
+	}
+
+	/**
+	 * 单个接口的准入限制
+	 */
+	@Data
+	public static class AdmissionLimitConfig {
+
+		/**
+		 * 最大并发请求数
+		 */
+		private int maxConcurrent = 4;
+
+		/**
+		 * 最多排队的请求数，已满时直接拒绝
+		 */
+		private int maxQueue = 8;
+
+		/**
+		 * 排队最长等待时间（毫秒）
+		 */
+		private long queueTimeout = 2000;
+
+		/**
+		 * 过载时是否可以丢弃
+		 */
+		private boolean sheddable = true;
+
+	}
+
+	/**
+	 * 集群限流配置（多个节点通过数据库共享每个端点类别的请求配额，rateLimit中的间隔和突发容量即为整个集群的限制）
+	 */
+	@Data
+	public static class ClusterRateLimitConfig {
+
+		/**
+		 * 是否启用，单节点部署无需启用
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 每次从数据库租用的令牌数，越大访问数据库越少，但节点之间的分配越不均匀；不超过接口的突发上限burst
+		 */
+		private int leaseSize = 5;
+
+		/**
+		 * 租用令牌的有效期（毫秒），过期未用完的令牌作废，避免节点囤积配额
+		 */
+		private long leaseTtl = 30000;
+
+		/**
+		 * 多个节点同时租用发生冲突时的最多重试次数
+		 */
+		private int maxConflictRetries = 3;
+
+		/**
+		 * 数据库不可用时是否退化为只按本节点限流，否则等待直到超时
+		 */
+		private boolean failOpen = true;
+
+	}
+
+	/**
+	 * 内存保护配置（按GC后的堆占用率分级降级，避免大批量爬取导致内存溢出）
+	 */
+	@Data
+	public static class MemoryConfig {
+
+		/**
+		 * 是否启用
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * GC后堆占用率超过该值时进入偏高等级：在途窗口减半，写入缓冲立即写出
+		 */
+		private double highRatio = 0.75;
+
+		/**
+		 * GC后堆占用率超过该值时进入危险等级：在途窗口降为1，拒绝新任务
+		 */
+		private double criticalRatio = 0.9;
+
+		/**
+		 * 占用率回落到阈值减去该值以下才恢复，避免在阈值附近反复切换
+		 */
+		private double hysteresis = 0.05;
+
+		/**
+		 * 危险等级时是否拒绝新任务
+		 */
+		private boolean rejectTasks = true;
+
+	}
+
+	/**
+	 * 令牌桶配置
+	 */
+	@Data
+	public static class BucketConfig {
+
+		/**
+		 * 令牌生成间隔（毫秒），0表示使用requestInterval
+		 */
+		private long interval = 0;
+
+		/**
+		 * 突发容量
+		 */
+		private int burst = 1;
+
 	}
 
 }
\ No newline at end of file
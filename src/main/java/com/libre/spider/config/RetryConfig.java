@@ -1,43 +1,79 @@
 package com.libre.spider.config;
 
-import com.libre.spider.exception.DataFetchException;
+import com.libre.spider.enums.ErrorType;
 import com.libre.spider.exception.IpBlockedException;
-import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.service.RetryBudgetService;
+import com.libre.spider.utils.ExceptionHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.retry.annotation.EnableRetry;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
 /**
- * 重试机制配置
+ * 重试机制配置 所有重试都经过RetryTemplate，按失败类型查重试策略表，等待时间带全抖动，并受全局重试预算约束
  */
 @Configuration
-@EnableRetry
 public class RetryConfig {
 
 	/**
 	 * 重试模板配置
 	 */
+	@Slf4j
 	@Component
+	@RequiredArgsConstructor
 	public static class RetryTemplate {
 
+		private final ExceptionHandler exceptionHandler;
+
+		private final RetryBudgetService retryBudgetService;
+
 		/**
-		 * 数据获取重试 - 针对网络异常和数据获取失败
+		 * 只执行一次，失败交给延迟重试队列处理 不占用并发许可等待重试
 		 */
-		@Retryable(retryFor = { DataFetchException.class, RuntimeException.class }, maxAttempts = 3,
-				backoff = @Backoff(delay = 1000, multiplier = 2))
-		public <T> T executeWithRetry(java.util.function.Supplier<T> operation) {
+		public <T> T executeOnce(java.util.function.Supplier<T> operation) {
+			retryBudgetService.recordOperation();
 			return operation.get();
 		}
 
 		/**
-		 * API限流重试 - 使用更长的退避时间
+		 * 数据获取重试 - 按失败类型查询重试策略表，不可重试的错误直接抛出
+		 * <p>
+		 * 服务端给出Retry-After时按其等待；等待时间超过任务剩余时间或重试预算用尽时不再重试
 		 */
-		@Retryable(retryFor = { RateLimitException.class }, maxAttempts = 5,
-				backoff = @Backoff(delay = 5000, multiplier = 1.5))
-		public <T> T executeWithRateLimitRetry(java.util.function.Supplier<T> operation) {
-			return operation.get();
+		public <T> T executeWithRetry(java.util.function.Supplier<T> operation) {
+			retryBudgetService.recordOperation();
+			int attempt = 0;
+			while (true) {
+				attempt++;
+				try {
+					return operation.get();
+				}
+				catch (RuntimeException e) {
+					ErrorType errorType = exceptionHandler.classify(e);
+					RetryPolicy policy = RetryPolicy.of(errorType);
+					if (attempt >= policy.getMaxAttempts()) {
+						throw e;
+					}
+					long delay = policy.delayFor(attempt, exceptionHandler.getRetryAfterMs(e));
+					if (delay >= CrawlContext.current().remainingMillis()) {
+						throw e;
+					}
+					if (!retryBudgetService.tryAcquireRetry()) {
+						log.debug("重试预算已用尽，不再重试: errorType={}, error={}", errorType, e.getMessage());
+						throw e;
+					}
+					log.debug("第{}次尝试失败，{}ms后重试: errorType={}, error={}", attempt, delay, errorType,
+							e.getMessage());
+					try {
+						Thread.sleep(delay);
+					}
+					catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw e;
+					}
+				}
+			}
 		}
 
 		/**
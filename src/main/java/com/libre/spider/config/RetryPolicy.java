@@ -0,0 +1,87 @@
+package com.libre.spider.config;
+
+import com.libre.spider.enums.ErrorType;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试策略表 按失败类型决定是否重试、最多尝试次数和退避时间
+ * <p>
+ * 验证码、封禁、登录失效、4xx、解析失败等重试也不会成功的错误直接失败，尽快释放并发许可
+ */
+@Getter
+public class RetryPolicy {
+
+	private static final Map<ErrorType, RetryPolicy> POLICIES = new EnumMap<>(ErrorType.class);
+
+	private static final RetryPolicy NO_RETRY = new RetryPolicy(1, 0, 1, 0);
+
+	static {
+		POLICIES.put(ErrorType.NETWORK, new RetryPolicy(3, 1000, 2, 10000));
+		POLICIES.put(ErrorType.SERVER_ERROR, new RetryPolicy(3, 2000, 2, 20000));
+		POLICIES.put(ErrorType.RATE_LIMITED, new RetryPolicy(5, 5000, 1.5, 60000));
+		POLICIES.put(ErrorType.API_ERROR, new RetryPolicy(2, 1000, 2, 5000));
+		POLICIES.put(ErrorType.UNKNOWN, new RetryPolicy(2, 1000, 2, 5000));
+		// VERIFICATION、IP_BLOCKED、LOGIN_REQUIRED、NOT_FOUND、CLIENT_ERROR、PARSE_ERROR、CIRCUIT_OPEN、TIMEOUT不重试
+	}
+
+	/**
+	 * 最多尝试次数（含首次）
+	 */
+	private final int maxAttempts;
+
+	/**
+	 * 首次重试前的等待时间（毫秒）
+	 */
+	private final long delay;
+
+	/**
+	 * 退避倍数
+	 */
+	private final double multiplier;
+
+	/**
+	 * 最长等待时间（毫秒）
+	 */
+	private final long maxDelay;
+
+	private RetryPolicy(int maxAttempts, long delay, double multiplier, long maxDelay) {
+		this.maxAttempts = maxAttempts;
+		this.delay = delay;
+		this.multiplier = multiplier;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * 获取失败类型对应的重试策略
+	 */
+	public static RetryPolicy of(ErrorType errorType) {
+		return POLICIES.getOrDefault(errorType, NO_RETRY);
+	}
+
+	/**
+	 * 是否重试
+	 */
+	public boolean isRetryable() {
+		return maxAttempts > 1;
+	}
+
+	/**
+	 * 第attempt次失败后的等待时间 在[0, min(maxDelay, delay * multiplier^(attempt-1))]内随机取值（全抖动），
+	 * 避免所有线程在同一时刻重试；服务端给出Retry-After时至少等待该时间（不超过maxDelay的两倍）
+	 * @param attempt 已尝试次数（从1开始）
+	 * @param retryAfterMs 服务端要求的等待时间，0表示未给出
+	 */
+	public long delayFor(int attempt, long retryAfterMs) {
+		double backoff = Math.min(delay * Math.pow(multiplier, Math.max(0, attempt - 1)), maxDelay);
+		long jittered = (long) (ThreadLocalRandom.current().nextDouble() * backoff);
+		if (retryAfterMs > 0) {
+			return Math.min(retryAfterMs, maxDelay * 2) + jittered / 10;
+		}
+		return jittered;
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.libre.spider.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.enums.RequestPriority;
+import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.service.AdmissionControlService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Web MVC配置
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+	/**
+	 * 交互式请求使用的流标识
+	 */
+	public static final String INTERACTIVE_FLOW = "interactive";
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final AdmissionControlService admissionControlService;
+
+	private final ObjectMapper objectMapper;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		// 准入控制在最前面，被拒绝的请求不再进入后续拦截器
+		registry.addInterceptor(new AdmissionInterceptor(admissionControlService, objectMapper))
+			.addPathPatterns("/api/xhs/**");
+		registry.addInterceptor(new InteractivePriorityInterceptor(crawlerConfig)).addPathPatterns("/api/xhs/**");
+	}
+
+	/**
+	 * REST接口准入控制 拒绝时直接返回429和Retry-After
+	 */
+	@Slf4j
+	@RequiredArgsConstructor
+	static class AdmissionInterceptor implements HandlerInterceptor {
+
+		private static final String TICKET_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".ticket";
+
+		private final AdmissionControlService admissionControlService;
+
+		private final ObjectMapper objectMapper;
+
+		@Override
+		public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+				throws IOException {
+			if (!admissionControlService.isEnabled()) {
+				return true;
+			}
+			Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			String endpoint = pattern != null ? pattern.toString() : request.getRequestURI();
+			try {
+				request.setAttribute(TICKET_ATTRIBUTE,
+						admissionControlService.admit(endpoint, request.getRemoteAddr()));
+				return true;
+			}
+			catch (RateLimitException e) {
+				log.warn("拒绝请求: endpoint={}, client={}, reason={}", endpoint, request.getRemoteAddr(),
+						e.getMessage());
+				reject(response, e);
+				return false;
+			}
+		}
+
+		private void reject(HttpServletResponse response, RateLimitException e) throws IOException {
+			long retryAfterSeconds = Math.max(1, (e.getRetryAfterMs() + 999) / 1000);
+			Map<String, Object> body = new LinkedHashMap<>();
+			body.put("success", false);
+			body.put("error", e.getMessage());
+			response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+			response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			objectMapper.writeValue(response.getOutputStream(), body);
+		}
+
+		@Override
+		public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+				Exception ex) {
+			Object ticket = request.getAttribute(TICKET_ATTRIBUTE);
+			if (ticket instanceof AdmissionControlService.Ticket admissionTicket) {
+				request.removeAttribute(TICKET_ATTRIBUTE);
+				admissionTicket.release();
+			}
+		}
+
+	}
+
+	/**
+	 * 把REST接口的请求线程标记为交互式优先级并设置请求截止时间，请求结束后恢复
+	 */
+	@RequiredArgsConstructor
+	static class InteractivePriorityInterceptor implements HandlerInterceptor {
+
+		private static final String SCOPE_ATTRIBUTE = InteractivePriorityInterceptor.class.getName() + ".scope";
+
+		private final CrawlerConfig crawlerConfig;
+
+		@Override
+		public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+			CrawlContext context = CrawlContext.of(INTERACTIVE_FLOW)
+				.withPriority(RequestPriority.INTERACTIVE)
+				.withTimeout(crawlerConfig.getAdmission().getRequestTimeout());
+			request.setAttribute(SCOPE_ATTRIBUTE, CrawlContext.open(context));
+			return true;
+		}
+
+		@Override
+		public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+				Exception ex) {
+			Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+			if (scope instanceof CrawlContext.Scope crawlScope) {
+				request.removeAttribute(SCOPE_ATTRIBUTE);
+				crawlScope.close();
+			}
+		}
+
+	}
+
+}
@@ -1,8 +1,27 @@
 package com.libre.spider.controller;
 
 import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.ConfigChangeLog;
+import com.libre.spider.model.RuntimeTuning;
 import com.libre.spider.service.ScheduledCrawlerService;
+import com.libre.spider.service.CrawlLeaseService;
+import com.libre.spider.service.ConcurrencyControlService;
+import com.libre.spider.service.BulkheadService;
+import com.libre.spider.service.CircuitBreakerService;
+import com.libre.spider.service.RetryBudgetService;
+import com.libre.spider.service.RetryQueueDrainerService;
+import com.libre.spider.service.AdmissionControlService;
+import com.libre.spider.service.ClusterRateLimitService;
+import com.libre.spider.service.RuntimeTuningService;
+import com.libre.spider.service.MemoryGovernorService;
+import com.libre.spider.service.WriteBehindService;
+import com.libre.spider.service.CrawlExecutorService;
 import com.libre.spider.service.CrawlerStatusService;
+import com.libre.spider.service.KeywordSchedulerService;
+import com.libre.spider.service.KeywordRefreshService;
+import com.libre.spider.service.RateLimiterService;
+import com.libre.spider.service.WorkQueueWorkerService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +45,38 @@ public class CrawlerController {
 
 	private final CrawlerStatusService crawlerStatusService;
 
+	private final RateLimiterService rateLimiterService;
+
+	private final CrawlExecutorService crawlExecutorService;
+
+	private final WriteBehindService writeBehindService;
+
+	private final KeywordSchedulerService keywordSchedulerService;
+
+	private final WorkQueueWorkerService workQueueWorkerService;
+
+	private final CrawlLeaseService crawlLeaseService;
+
+	private final KeywordRefreshService keywordRefreshService;
+
+	private final ConcurrencyControlService concurrencyControlService;
+
+	private final BulkheadService bulkheadService;
+
+	private final CircuitBreakerService circuitBreakerService;
+
+	private final RetryBudgetService retryBudgetService;
+
+	private final RetryQueueDrainerService retryQueueDrainerService;
+
+	private final AdmissionControlService admissionControlService;
+
+	private final ClusterRateLimitService clusterRateLimitService;
+
+	private final RuntimeTuningService runtimeTuningService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
 	/**
 	 * 手动触发全量爬虫任务
 	 */
@@ -78,6 +129,32 @@ public class CrawlerController {
 		return result;
 	}
 
+	/**
+	 * 恢复中断的任务 已完成详情的笔记不会重复获取
+	 */
+	@PostMapping("/tasks/{taskId}/resume")
+	public Map<String, Object> resumeTask(@PathVariable Long taskId) {
+		log.info("收到恢复任务请求: {}", taskId);
+
+		Map<String, Object> result = new HashMap<>();
+
+		try {
+			keywordSchedulerService.submitResume(taskId);
+
+			result.put("success", true);
+			result.put("message", "任务已提交恢复");
+			result.put("taskId", taskId);
+
+		}
+		catch (Exception e) {
+			log.error("恢复任务失败: {}", taskId, e);
+			result.put("success", false);
+			result.put("message", "恢复任务失败: " + e.getMessage());
+		}
+
+		return result;
+	}
+
 	/**
 	 * 获取爬虫配置信息
 	 */
@@ -107,7 +184,8 @@ public class CrawlerController {
 	 * 更新关键词配置
 	 */
 	@PostMapping("/config/keywords")
-	public Map<String, Object> updateKeywords(@RequestBody Map<String, Object> request) {
+	public Map<String, Object> updateKeywords(@RequestBody Map<String, Object> request,
+			HttpServletRequest httpRequest) {
 		Map<String, Object> result = new HashMap<>();
 
 		try {
@@ -116,7 +194,10 @@ public class CrawlerController {
 
 			if (keywords != null && !keywords.isEmpty()) {
 				String keywordString = String.join(",", keywords);
+				String oldKeywords = crawlerConfig.getKeywords();
 				crawlerConfig.setKeywords(keywordString);
+				runtimeTuningService.audit(httpRequest.getRemoteAddr(), null,
+						Map.of("keywords", Map.of("old", oldKeywords, "new", keywordString)));
 
 				result.put("success", true);
 				result.put("message", "关键词配置已更新");
@@ -137,6 +218,52 @@ public class CrawlerController {
 		return result;
 	}
 
+	/**
+	 * 获取可在运行时调整的配置
+	 */
+	@GetMapping("/config/runtime")
+	public Map<String, Object> getRuntimeConfig() {
+		return runtimeTuningService.getCurrent();
+	}
+
+	/**
+	 * 运行时调整并发、请求节奏和批量大小 所有参数校验通过后才一起生效，正在执行的任务不会中断
+	 */
+	@PostMapping("/config/runtime")
+	public Map<String, Object> updateRuntimeConfig(@RequestBody RuntimeTuning tuning,
+			HttpServletRequest httpRequest) {
+		Map<String, Object> result = new HashMap<>();
+
+		try {
+			Map<String, Object> changes = runtimeTuningService.apply(tuning, httpRequest.getRemoteAddr());
+
+			result.put("success", true);
+			result.put("message", changes.isEmpty() ? "配置没有变化" : "运行时配置已更新");
+			result.put("changes", changes);
+			result.put("config", runtimeTuningService.getCurrent());
+
+		}
+		catch (IllegalArgumentException e) {
+			result.put("success", false);
+			result.put("message", "参数不合法: " + e.getMessage());
+		}
+		catch (Exception e) {
+			log.error("更新运行时配置失败", e);
+			result.put("success", false);
+			result.put("message", "更新运行时配置失败: " + e.getMessage());
+		}
+
+		return result;
+	}
+
+	/**
+	 * 获取最近的配置变更记录
+	 */
+	@GetMapping("/config/changes")
+	public List<ConfigChangeLog> getConfigChanges(@RequestParam(defaultValue = "20") int limit) {
+		return runtimeTuningService.getRecentChanges(limit);
+	}
+
 	/**
 	 * 获取爬虫状态
 	 */
@@ -151,10 +278,38 @@ public class CrawlerController {
 
 		// 添加监控统计信息
 		status.put("stats", crawlerStatusService.getGlobalStats());
+		status.put("rateLimiter", rateLimiterService.getStats());
+		status.put("clusterRateLimit", clusterRateLimitService.getStats());
+		status.put("executor", crawlExecutorService.getStats());
+		status.put("writeBehind", writeBehindService.getStats());
+		status.put("keywordScheduler", keywordSchedulerService.getStats());
+		status.put("workQueue", workQueueWorkerService.getStats());
+		status.put("lease", crawlLeaseService.getStats());
+		status.put("concurrency", concurrencyControlService.getStats());
+		status.put("bulkhead", bulkheadService.getStats());
+		status.put("circuitBreaker", circuitBreakerService.getStats());
+		status.put("retryBudget", retryBudgetService.getStats());
+		status.put("retryQueue", retryQueueDrainerService.getStats());
+		status.put("admission", admissionControlService.getStats());
+		status.put("memory", memoryGovernorService.getStats());
 
 		return status;
 	}
 
+	/**
+	 * 获取各关键词的执行进度
+	 */
+	@GetMapping("/keywords")
+	public Map<String, Object> getKeywordProgress() {
+		Map<String, Object> result = new HashMap<>();
+
+		result.put("scheduler", keywordSchedulerService.getStats());
+		result.put("keywords", keywordSchedulerService.getProgress());
+		result.put("refresh", keywordRefreshService.getPlans());
+
+		return result;
+	}
+
 	/**
 	 * 获取所有任务状态
 	 */
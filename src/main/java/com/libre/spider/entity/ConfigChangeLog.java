@@ -0,0 +1,51 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 配置变更记录实体类 每次运行时调整配置记录一条
+ */
+@Data
+@TableName("config_change_log")
+public class ConfigChangeLog {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 应用变更的节点标识
+	 */
+	@TableField("node_id")
+	private String nodeId;
+
+	/**
+	 * 操作来源（客户端地址）
+	 */
+	@TableField("operator")
+	private String operator;
+
+	/**
+	 * 变更原因
+	 */
+	@TableField("reason")
+	private String reason;
+
+	/**
+	 * 变更内容（JSON，配置项 -> 旧值/新值）
+	 */
+	@TableField("changes")
+	private String changes;
+
+	/**
+	 * 变更时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+}
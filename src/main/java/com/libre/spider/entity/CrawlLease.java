@@ -0,0 +1,69 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 爬虫节点租约实体类 关键词在同一时间只租给一个节点，节点通过心跳续约
+ */
+@Data
+@TableName("crawl_lease")
+public class CrawlLease {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 租约标识（keyword:关键词 或 node:节点标识）
+	 */
+	@TableField("lease_key")
+	private String leaseKey;
+
+	/**
+	 * 持有节点标识
+	 */
+	@TableField("owner")
+	private String owner;
+
+	/**
+	 * 状态：HELD(持有中), DONE(本调度周期已执行完成), RELEASED(已释放)
+	 */
+	@TableField("state")
+	private String state;
+
+	/**
+	 * 租约过期时间
+	 */
+	@TableField("expires_at")
+	private LocalDateTime expiresAt;
+
+	/**
+	 * 最近一次续约时间
+	 */
+	@TableField("heartbeat_at")
+	private LocalDateTime heartbeatAt;
+
+	/**
+	 * 获得租约时间
+	 */
+	@TableField("acquired_at")
+	private LocalDateTime acquiredAt;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
@@ -0,0 +1,99 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 延迟重试队列实体类 获取失败的笔记详情/用户信息，由后台线程在限流配额空闲时重试
+ */
+@Data
+@TableName("crawl_retry_item")
+public class CrawlRetryItem {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 工作类型：NOTE_DETAIL(笔记详情), USER_INFO(用户信息)
+	 */
+	@TableField("work_type")
+	private String workType;
+
+	/**
+	 * 条目标识（笔记ID或用户ID）
+	 */
+	@TableField("item_key")
+	private String itemKey;
+
+	/**
+	 * 最近一次失败所属的任务ID
+	 */
+	@TableField("task_id")
+	private Long taskId;
+
+	/**
+	 * 关键词
+	 */
+	@TableField("keyword")
+	private String keyword;
+
+	/**
+	 * 条目数据（笔记详情为搜索结果项JSON）
+	 */
+	@TableField("payload")
+	private String payload;
+
+	/**
+	 * 状态：PENDING(等待重试), RUNNING(重试中), DONE(已成功), DEAD(已放弃)
+	 */
+	@TableField("state")
+	private String state;
+
+	/**
+	 * 已失败次数
+	 */
+	@TableField("attempts")
+	private Integer attempts;
+
+	/**
+	 * 下次重试时间（重试中为领取超时时间）
+	 */
+	@TableField("next_attempt_time")
+	private LocalDateTime nextAttemptTime;
+
+	/**
+	 * 最近一次失败的错误类型
+	 */
+	@TableField("last_error_type")
+	private String lastErrorType;
+
+	/**
+	 * 最近一次失败的错误信息
+	 */
+	@TableField("error_message")
+	private String errorMessage;
+
+	/**
+	 * 失败历史（JSON数组，保留最近若干次）
+	 */
+	@TableField("history")
+	private String history;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
@@ -31,7 +31,7 @@ public class CrawlTask {
 	private String keyword;
 
 	/**
-	 * 任务状态：PENDING(待执行), RUNNING(运行中), SUCCESS(成功), FAILED(失败)
+	 * 任务状态：PENDING(待执行), RUNNING(运行中), SUCCESS(成功), FAILED(失败), TIMEOUT(超时)
 	 */
 	@TableField("status")
 	private String status;
@@ -72,6 +72,12 @@ public class CrawlTask {
 	@TableField("error_message")
 	private String errorMessage;
 
+	/**
+	 * 搜索阶段是否已完成（用于中断后恢复）
+	 */
+	@TableField("search_completed")
+	private Boolean searchCompleted;
+
 	/**
 	 * 创建时间
 	 */
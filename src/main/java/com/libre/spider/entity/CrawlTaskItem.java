@@ -0,0 +1,87 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 爬取任务检查点明细实体类 记录任务搜索到的每个笔记及其处理状态，用于中断后恢复
+ */
+@Data
+@TableName("crawl_task_item")
+public class CrawlTaskItem {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 任务ID
+	 */
+	@TableField("task_id")
+	private Long taskId;
+
+	/**
+	 * 笔记ID
+	 */
+	@TableField("note_id")
+	private String noteId;
+
+	/**
+	 * 关键词
+	 */
+	@TableField("keyword")
+	private String keyword;
+
+	/**
+	 * 笔记访问令牌
+	 */
+	@TableField("xsec_token")
+	private String xsecToken;
+
+	/**
+	 * 笔记访问来源
+	 */
+	@TableField("xsec_source")
+	private String xsecSource;
+
+	/**
+	 * 作者用户ID
+	 */
+	@TableField("user_id")
+	private String userId;
+
+	/**
+	 * 搜索结果中的笔记卡片（JSON）
+	 */
+	@TableField("note_card")
+	private String noteCard;
+
+	/**
+	 * 状态：PENDING(待获取详情), DETAIL_DONE(详情已完成), USER_DONE(用户已完成), FAILED(失败)
+	 */
+	@TableField("state")
+	private String state;
+
+	/**
+	 * 错误信息
+	 */
+	@TableField("error_message")
+	private String errorMessage;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
@@ -0,0 +1,111 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 爬取工作队列实体类 多个工作线程或节点通过数据库领取并处理
+ */
+@Data
+@TableName("crawl_work_item")
+public class CrawlWorkItem {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 任务ID
+	 */
+	@TableField("task_id")
+	private Long taskId;
+
+	/**
+	 * 工作类型：NOTE_DETAIL(笔记详情), USER_INFO(用户信息)
+	 */
+	@TableField("work_type")
+	private String workType;
+
+	/**
+	 * 工作项标识（笔记ID或用户ID）
+	 */
+	@TableField("item_key")
+	private String itemKey;
+
+	/**
+	 * 关键词
+	 */
+	@TableField("keyword")
+	private String keyword;
+
+	/**
+	 * 工作项数据（JSON）
+	 */
+	@TableField("payload")
+	private String payload;
+
+	/**
+	 * 优先级，数值越大越先处理
+	 */
+	@TableField("priority")
+	private Integer priority;
+
+	/**
+	 * 状态：READY(待领取), CLAIMED(已领取), DONE(已完成), FAILED(失败)
+	 */
+	@TableField("state")
+	private String state;
+
+	/**
+	 * 已领取次数
+	 */
+	@TableField("attempts")
+	private Integer attempts;
+
+	/**
+	 * 最大领取次数
+	 */
+	@TableField("max_attempts")
+	private Integer maxAttempts;
+
+	/**
+	 * 可被领取的时间（领取后为可见性超时时间）
+	 */
+	@TableField("visible_at")
+	private LocalDateTime visibleAt;
+
+	/**
+	 * 领取者标识
+	 */
+	@TableField("claimed_by")
+	private String claimedBy;
+
+	/**
+	 * 领取时间
+	 */
+	@TableField("claimed_at")
+	private LocalDateTime claimedAt;
+
+	/**
+	 * 错误信息
+	 */
+	@TableField("error_message")
+	private String errorMessage;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
@@ -0,0 +1,112 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 关键词刷新统计实体类 记录每个关键词的产出情况，并据此计算下次执行时间和翻页深度
+ */
+@Data
+@TableName("keyword_refresh_stat")
+public class KeywordRefreshStat {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 关键词
+	 */
+	@TableField("keyword")
+	private String keyword;
+
+	/**
+	 * 累计执行次数
+	 */
+	@TableField("runs")
+	private Integer runs;
+
+	/**
+	 * 最近一次执行时间
+	 */
+	@TableField("last_run_time")
+	private LocalDateTime lastRunTime;
+
+	/**
+	 * 最近一次消耗的请求数
+	 */
+	@TableField("last_requests")
+	private Integer lastRequests;
+
+	/**
+	 * 最近一次发现的新笔记数
+	 */
+	@TableField("last_new_notes")
+	private Integer lastNewNotes;
+
+	/**
+	 * 每个请求发现的新笔记数（平滑值）
+	 */
+	@TableField("yield_rate")
+	private Double yieldRate;
+
+	/**
+	 * 每小时新增笔记数（平滑值）
+	 */
+	@TableField("new_notes_per_hour")
+	private Double newNotesPerHour;
+
+	/**
+	 * 每页新笔记数（平滑值）
+	 */
+	@TableField("new_notes_per_page")
+	private Double newNotesPerPage;
+
+	/**
+	 * 每次执行消耗的请求数（平滑值）
+	 */
+	@TableField("avg_requests")
+	private Double avgRequests;
+
+	/**
+	 * 下次执行时间
+	 */
+	@TableField("next_run_time")
+	private LocalDateTime nextRunTime;
+
+	/**
+	 * 下次最大翻页数
+	 */
+	@TableField("next_max_pages")
+	private Integer nextMaxPages;
+
+	/**
+	 * 当日请求统计日期
+	 */
+	@TableField("stat_date")
+	private LocalDate statDate;
+
+	/**
+	 * 当日消耗的请求数
+	 */
+	@TableField("requests_today")
+	private Integer requestsToday;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
@@ -0,0 +1,69 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 关键词水位线实体类 记录按时间排序搜索时已经见过的最新笔记，用于增量爬取时提前停止翻页
+ */
+@Data
+@TableName("keyword_watermark")
+public class KeywordWatermark {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 关键词
+	 */
+	@TableField("keyword")
+	private String keyword;
+
+	/**
+	 * 最近一次看到的最新笔记ID
+	 */
+	@TableField("newest_note_id")
+	private String newestNoteId;
+
+	/**
+	 * 最新的前K个笔记ID（JSON数组）
+	 */
+	@TableField("known_note_ids")
+	private String knownNoteIds;
+
+	/**
+	 * 最近一次执行时间
+	 */
+	@TableField("last_run_time")
+	private LocalDateTime lastRunTime;
+
+	/**
+	 * 最近一次翻页数
+	 */
+	@TableField("last_pages")
+	private Integer lastPages;
+
+	/**
+	 * 最近一次发现的新笔记数
+	 */
+	@TableField("last_new_notes")
+	private Integer lastNewNotes;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
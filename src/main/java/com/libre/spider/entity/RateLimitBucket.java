@@ -0,0 +1,69 @@
+package com.libre.spider.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 集群限流令牌桶实体类 多个节点按端点类别共享的请求配额，节点每次批量租用若干令牌
+ */
+@Data
+@TableName("rate_limit_bucket")
+public class RateLimitBucket {
+
+	@TableId(type = IdType.AUTO)
+	private Long id;
+
+	/**
+	 * 令牌桶标识（端点类别）
+	 */
+	@TableField("bucket_key")
+	private String bucketKey;
+
+	/**
+	 * 上次补充后剩余的令牌数
+	 */
+	@TableField("tokens")
+	private Double tokens;
+
+	/**
+	 * 令牌桶容量
+	 */
+	@TableField("capacity")
+	private Integer capacity;
+
+	/**
+	 * 生成一个令牌的间隔（毫秒）
+	 */
+	@TableField("interval_ms")
+	private Long intervalMs;
+
+	/**
+	 * 上次补充令牌的时间（毫秒时间戳）
+	 */
+	@TableField("refill_at")
+	private Long refillAt;
+
+	/**
+	 * 版本号，每次租用令牌加1，用于条件更新
+	 */
+	@TableField("version")
+	private Long version;
+
+	/**
+	 * 创建时间
+	 */
+	@TableField("create_time")
+	private LocalDateTime createTime;
+
+	/**
+	 * 更新时间
+	 */
+	@TableField("update_time")
+	private LocalDateTime updateTime;
+
+}
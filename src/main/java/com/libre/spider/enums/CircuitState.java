@@ -0,0 +1,33 @@
+package com.libre.spider.enums;
+
+/**
+ * 熔断器状态
+ */
+public enum CircuitState {
+
+	/**
+	 * 关闭：正常放行请求
+	 */
+	CLOSED("关闭"),
+
+	/**
+	 * 打开：冷却期内暂停发送请求
+	 */
+	OPEN("打开"),
+
+	/**
+	 * 半开：冷却结束，只放行少量探测请求，成功后关闭，再次被拦截则重新打开
+	 */
+	HALF_OPEN("半开");
+
+	private final String description;
+
+	CircuitState(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+}
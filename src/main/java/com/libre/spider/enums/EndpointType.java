@@ -0,0 +1,38 @@
+package com.libre.spider.enums;
+
+/**
+ * 小红书请求端点分类 用于按端点类别进行限流等控制
+ */
+public enum EndpointType {
+
+	/**
+	 * 搜索接口
+	 */
+	SEARCH("搜索接口"),
+
+	/**
+	 * 笔记详情API（feed接口）
+	 */
+	FEED_API("笔记详情API"),
+
+	/**
+	 * 笔记详情HTML页面
+	 */
+	HTML_DETAIL("笔记详情页面"),
+
+	/**
+	 * 用户主页HTML页面
+	 */
+	USER_PROFILE("用户主页");
+
+	private final String description;
+
+	EndpointType(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.libre.spider.enums;
+
+/**
+ * 请求失败类型 由HTTP状态码、小红书接口返回的code/success字段以及异常类型归类，用于决定重试和退避策略
+ */
+public enum ErrorType {
+
+	/**
+	 * 网络异常（连接失败、读取超时等）
+	 */
+	NETWORK("网络异常", true),
+
+	/**
+	 * 服务端错误（5xx）
+	 */
+	SERVER_ERROR("服务端错误", true),
+
+	/**
+	 * 被限流（429、访问频次异常）
+	 */
+	RATE_LIMITED("请求被限流", true),
+
+	/**
+	 * 出现验证码（461/471）
+	 */
+	VERIFICATION("出现验证码", true),
+
+	/**
+	 * IP被封禁
+	 */
+	IP_BLOCKED("IP被封禁", true),
+
+	/**
+	 * 登录失效
+	 */
+	LOGIN_REQUIRED("需要重新登录", false),
+
+	/**
+	 * 资源不存在（404、笔记已删除）
+	 */
+	NOT_FOUND("资源不存在", false),
+
+	/**
+	 * 其他客户端错误（4xx）
+	 */
+	CLIENT_ERROR("客户端错误", false),
+
+	/**
+	 * 接口返回success=false的其他错误
+	 */
+	API_ERROR("接口返回错误", false),
+
+	/**
+	 * 响应解析失败
+	 */
+	PARSE_ERROR("响应解析失败", false),
+
+	/**
+	 * 熔断器打开，请求未发送
+	 */
+	CIRCUIT_OPEN("熔断中", false),
+
+	/**
+	 * 任务超过截止时间
+	 */
+	TIMEOUT("任务超时", false),
+
+	/**
+	 * 未知错误
+	 */
+	UNKNOWN("未知错误", false);
+
+	private final String description;
+
+	/**
+	 * 是否说明服务端过载或在限制我们，并发限制应据此收缩
+	 */
+	private final boolean overload;
+
+	ErrorType(String description, boolean overload) {
+		this.description = description;
+		this.overload = overload;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public boolean isOverload() {
+		return overload;
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.libre.spider.enums;
+
+/**
+ * 自适应并发限制算法
+ */
+public enum LimitAlgorithm {
+
+	/**
+	 * 加性增、乘性减：请求成功时缓慢增加，出错或响应时间明显变长时按比例减少
+	 */
+	AIMD("加性增乘性减"),
+
+	/**
+	 * 延迟梯度：按长期响应时间与短期响应时间之比调整，响应时间上升即收缩（类似Vegas）
+	 */
+	GRADIENT("延迟梯度");
+
+	private final String description;
+
+	LimitAlgorithm(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+}
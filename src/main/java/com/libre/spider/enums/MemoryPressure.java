@@ -0,0 +1,33 @@
+package com.libre.spider.enums;
+
+/**
+ * 内存压力等级（按GC后的堆占用率划分）
+ */
+public enum MemoryPressure {
+
+	/**
+	 * 正常
+	 */
+	NORMAL("正常"),
+
+	/**
+	 * 偏高：缩小在途窗口，写入缓冲不再攒批
+	 */
+	HIGH("偏高"),
+
+	/**
+	 * 危险：在途窗口降为1，拒绝新任务，REST请求停止继续收集结果
+	 */
+	CRITICAL("危险");
+
+	private final String description;
+
+	MemoryPressure(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.libre.spider.enums;
+
+/**
+ * 请求优先级 限流令牌、并发名额和签名页面在不同优先级之间按权重分配，交互式请求有预留容量
+ */
+public enum RequestPriority {
+
+	/**
+	 * 交互式请求（REST接口调用，有人在等待结果）
+	 */
+	INTERACTIVE,
+
+	/**
+	 * 后台批量爬取（定时任务、工作队列、延迟重试）
+	 */
+	BATCH
+
+}
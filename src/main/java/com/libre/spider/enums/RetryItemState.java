@@ -0,0 +1,28 @@
+package com.libre.spider.enums;
+
+/**
+ * 延迟重试队列中的条目状态
+ */
+public enum RetryItemState {
+
+	/**
+	 * 等待下次重试
+	 */
+	PENDING,
+
+	/**
+	 * 正在重试（领取超时后可被重新领取）
+	 */
+	RUNNING,
+
+	/**
+	 * 重试成功
+	 */
+	DONE,
+
+	/**
+	 * 重试次数用尽或不可重试，进入负缓存
+	 */
+	DEAD
+
+}
@@ -0,0 +1,28 @@
+package com.libre.spider.enums;
+
+/**
+ * 任务检查点明细状态
+ */
+public enum TaskItemState {
+
+	/**
+	 * 已搜索到，待获取详情
+	 */
+	PENDING,
+
+	/**
+	 * 笔记详情已完成
+	 */
+	DETAIL_DONE,
+
+	/**
+	 * 作者用户信息已完成
+	 */
+	USER_DONE,
+
+	/**
+	 * 处理失败
+	 */
+	FAILED
+
+}
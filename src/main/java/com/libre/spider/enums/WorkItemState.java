@@ -0,0 +1,28 @@
+package com.libre.spider.enums;
+
+/**
+ * 工作队列中的工作项状态
+ */
+public enum WorkItemState {
+
+	/**
+	 * 等待领取
+	 */
+	READY,
+
+	/**
+	 * 已被领取（可见性超时后可被重新领取）
+	 */
+	CLAIMED,
+
+	/**
+	 * 已完成
+	 */
+	DONE,
+
+	/**
+	 * 重试次数用尽
+	 */
+	FAILED
+
+}
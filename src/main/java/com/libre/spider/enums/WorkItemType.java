@@ -0,0 +1,18 @@
+package com.libre.spider.enums;
+
+/**
+ * 工作队列中的工作类型
+ */
+public enum WorkItemType {
+
+	/**
+	 * 获取笔记详情
+	 */
+	NOTE_DETAIL,
+
+	/**
+	 * 获取作者用户信息
+	 */
+	USER_INFO
+
+}
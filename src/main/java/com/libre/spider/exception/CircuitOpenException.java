@@ -0,0 +1,23 @@
+package com.libre.spider.exception;
+
+import com.libre.spider.enums.ErrorType;
+
+/**
+ * 熔断异常 端点或会话的熔断器处于打开状态，请求未发送
+ */
+public class CircuitOpenException extends CrawlerException {
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+
+	public CircuitOpenException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	@Override
+	public ErrorType getErrorType() {
+		return ErrorType.CIRCUIT_OPEN;
+	}
+
+}
\ No newline at end of file
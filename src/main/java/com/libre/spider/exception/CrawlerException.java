@@ -1,5 +1,7 @@
 package com.libre.spider.exception;
 
+import com.libre.spider.enums.ErrorType;
+
 /**
  * 爬虫异常基类
  */
@@ -13,4 +15,18 @@ public class CrawlerException extends RuntimeException {
 		super(message, cause);
 	}
 
+	/**
+	 * 失败类型，无法确定时返回UNKNOWN（由原因异常继续判断）
+	 */
+	public ErrorType getErrorType() {
+		return ErrorType.UNKNOWN;
+	}
+
+	/**
+	 * 服务端要求的重试等待时间（毫秒），0表示未给出
+	 */
+	public long getRetryAfterMs() {
+		return 0;
+	}
+
 }
\ No newline at end of file
@@ -1,16 +1,42 @@
 package com.libre.spider.exception;
 
+import com.libre.spider.enums.ErrorType;
+
 /**
  * 数据获取异常
  */
 public class DataFetchException extends CrawlerException {
 
+	private final ErrorType errorType;
+
+	private final long retryAfterMs;
+
 	public DataFetchException(String message) {
-		super(message);
+		this(message, ErrorType.UNKNOWN, 0, null);
 	}
 
 	public DataFetchException(String message, Throwable cause) {
+		this(message, ErrorType.UNKNOWN, 0, cause);
+	}
+
+	public DataFetchException(String message, ErrorType errorType) {
+		this(message, errorType, 0, null);
+	}
+
+	public DataFetchException(String message, ErrorType errorType, long retryAfterMs, Throwable cause) {
 		super(message, cause);
+		this.errorType = errorType;
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	@Override
+	public ErrorType getErrorType() {
+		return errorType;
+	}
+
+	@Override
+	public long getRetryAfterMs() {
+		return retryAfterMs;
 	}
 
 }
\ No newline at end of file
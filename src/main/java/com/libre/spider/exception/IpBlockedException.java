@@ -1,5 +1,7 @@
 package com.libre.spider.exception;
 
+import com.libre.spider.enums.ErrorType;
+
 /**
  * IP被封禁异常
  */
@@ -13,4 +15,9 @@ public class IpBlockedException extends CrawlerException {
 		super(message, cause);
 	}
 
+	@Override
+	public ErrorType getErrorType() {
+		return ErrorType.IP_BLOCKED;
+	}
+
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.libre.spider.exception;
 
+import com.libre.spider.enums.ErrorType;
+
 /**
  * 需要登录异常
  */
@@ -13,4 +15,9 @@ public class LoginRequiredException extends CrawlerException {
 		super(message, cause);
 	}
 
+	@Override
+	public ErrorType getErrorType() {
+		return ErrorType.LOGIN_REQUIRED;
+	}
+
 }
\ No newline at end of file
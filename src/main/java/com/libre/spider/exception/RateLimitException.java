@@ -1,16 +1,36 @@
 package com.libre.spider.exception;
 
+import com.libre.spider.enums.ErrorType;
+
 /**
  * API限流异常
  */
 public class RateLimitException extends CrawlerException {
 
+	private final long retryAfterMs;
+
 	public RateLimitException(String message) {
-		super(message);
+		this(message, 0);
 	}
 
 	public RateLimitException(String message, Throwable cause) {
 		super(message, cause);
+		this.retryAfterMs = 0;
+	}
+
+	public RateLimitException(String message, long retryAfterMs) {
+		super(message);
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	@Override
+	public ErrorType getErrorType() {
+		return ErrorType.RATE_LIMITED;
+	}
+
+	@Override
+	public long getRetryAfterMs() {
+		return retryAfterMs;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.libre.spider.exception;
+
+import com.libre.spider.enums.ErrorType;
+
+/**
+ * 任务超时异常 任务的截止时间已到，不应再发起新的请求或继续等待
+ */
+public class TaskTimeoutException extends CrawlerException {
+
+	public TaskTimeoutException(String message) {
+		super(message);
+	}
+
+	public TaskTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	@Override
+	public ErrorType getErrorType() {
+		return ErrorType.TIMEOUT;
+	}
+
+}
\ No newline at end of file
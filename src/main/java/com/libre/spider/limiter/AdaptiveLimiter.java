@@ -0,0 +1,401 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.LimitAlgorithm;
+import com.libre.spider.enums.RequestPriority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制器 根据请求结果（出错/被限流）和响应时间的变化调整允许的在途请求数
+ * <p>
+ * 限制值只是一个数字，调整时不需要获取或归还许可，不会阻塞任何调用方；限制下调后，超出的在途请求自然完成即可
+ * <p>
+ * 可以限制等待队列长度，作为舱壁使用：队列已满时直接拒绝，不再排队
+ * <p>
+ * 可以为交互式请求预留名额：批量请求只能使用预留以外的名额，且有交互式请求等待时让行
+ */
+public class AdaptiveLimiter {
+
+	private final String name;
+
+	private final CrawlerConfig.ConcurrencyLimitConfig config;
+
+	/**
+	 * 限制值上限，0表示使用配置中的maxLimit
+	 */
+	private int maxLimit;
+
+	/**
+	 * 最多等待的请求数，小于0表示不限制
+	 */
+	private final int maxWaiting;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = lock.newCondition();
+
+	private double limit;
+
+	private int inFlight = 0;
+
+	private int waiting = 0;
+
+	private int interactiveWaiting = 0;
+
+	/**
+	 * 为交互式请求预留的名额
+	 */
+	private int reservedSlots = 0;
+
+	/**
+	 * 短期平滑响应时间（纳秒）
+	 */
+	private double shortRttNanos = 0;
+
+	/**
+	 * 长期平滑响应时间（纳秒），作为无排队时的基准
+	 */
+	private double longRttNanos = 0;
+
+	private long minRttNanos = Long.MAX_VALUE;
+
+	private final AtomicLong acquiredCount = new AtomicLong(0);
+
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+
+	private final AtomicLong queueFullCount = new AtomicLong(0);
+
+	private final AtomicLong successCount = new AtomicLong(0);
+
+	private final AtomicLong droppedCount = new AtomicLong(0);
+
+	private final AtomicLong maxInFlight = new AtomicLong(0);
+
+	/**
+	 * @param name 名称
+	 * @param config 限制参数，算法和调整参数在运行时读取
+	 */
+	public AdaptiveLimiter(String name, CrawlerConfig.ConcurrencyLimitConfig config) {
+		this(name, config, 0, -1);
+	}
+
+	/**
+	 * @param name 名称
+	 * @param config 限制参数，算法和调整参数在运行时读取
+	 * @param maxLimit 限制值上限，0表示使用配置中的maxLimit
+	 * @param maxWaiting 最多等待的请求数，小于0表示不限制
+	 */
+	public AdaptiveLimiter(String name, CrawlerConfig.ConcurrencyLimitConfig config, int maxLimit, int maxWaiting) {
+		this.name = name;
+		this.config = config;
+		this.maxLimit = maxLimit;
+		this.maxWaiting = maxWaiting;
+		this.limit = clamp(config.getInitialLimit());
+	}
+
+	/**
+	 * 设置为交互式请求预留的名额数（不超过限制值减1，批量请求始终至少有一个名额）
+	 */
+	public void setReservedSlots(int reservedSlots) {
+		lock.lock();
+		try {
+			this.reservedSlots = Math.max(0, reservedSlots);
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 获取一个在途名额（批量优先级），在途数达到限制时等待
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return 许可，超时或等待队列已满返回null
+	 */
+	public Permit acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		return acquire(timeout, unit, RequestPriority.BATCH);
+	}
+
+	/**
+	 * 获取一个在途名额，在途数达到限制时等待
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @param priority 请求优先级
+	 * @return 许可，超时或等待队列已满返回null
+	 */
+	public Permit acquire(long timeout, TimeUnit unit, RequestPriority priority) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+		boolean interactive = priority == RequestPriority.INTERACTIVE;
+		lock.lockInterruptibly();
+		try {
+			// 队列长度只限制批量请求，交互式请求数量少且有人在等待结果
+			if (!interactive && isBlocked(priority) && maxWaiting >= 0 && waiting >= maxWaiting) {
+				queueFullCount.incrementAndGet();
+				return null;
+			}
+			while (isBlocked(priority)) {
+				long remaining = deadlineNanos - System.nanoTime();
+				if (remaining <= 0) {
+					rejectedCount.incrementAndGet();
+					return null;
+				}
+				waiting++;
+				if (interactive) {
+					interactiveWaiting++;
+				}
+				try {
+					available.awaitNanos(remaining);
+				}
+				finally {
+					waiting--;
+					if (interactive && --interactiveWaiting == 0) {
+						// 唤醒让行中的批量请求
+						available.signalAll();
+					}
+				}
+			}
+			return grant();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 是否需要等待 交互式请求可以使用全部名额；批量请求不能使用预留名额，且有交互式请求等待时让行
+	 */
+	private boolean isBlocked(RequestPriority priority) {
+		if (priority == RequestPriority.INTERACTIVE) {
+			return inFlight >= (int) limit;
+		}
+		int reserved = Math.min(reservedSlots, (int) limit - 1);
+		return interactiveWaiting > 0 || inFlight >= (int) limit - Math.max(0, reserved);
+	}
+
+	/**
+	 * 尝试立即获取一个在途名额（批量优先级），不等待
+	 * @return 许可，在途数已达到限制时返回null
+	 */
+	public Permit tryAcquire() {
+		lock.lock();
+		try {
+			if (isBlocked(RequestPriority.BATCH)) {
+				rejectedCount.incrementAndGet();
+				return null;
+			}
+			return grant();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private Permit grant() {
+		inFlight++;
+		acquiredCount.incrementAndGet();
+		maxInFlight.accumulateAndGet(inFlight, Math::max);
+		return new Permit(inFlight);
+	}
+
+	/**
+	 * 手动设置限制值，立即生效
+	 */
+	public void setLimit(int newLimit) {
+		lock.lock();
+		try {
+			limit = clamp(newLimit);
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 修改限制值上限，当前限制值超出新的范围时立即收缩
+	 * @param maxLimit 限制值上限，0表示使用配置中的maxLimit
+	 */
+	public void setMaxLimit(int maxLimit) {
+		lock.lock();
+		try {
+			this.maxLimit = maxLimit;
+			limit = clamp(limit);
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 请求结束，更新响应时间估计和限制值
+	 * @param rttNanos 响应时间，小于0表示不采样（请求未真正发出）
+	 * @param inFlightAtStart 请求开始时的在途数
+	 * @param dropped 是否出错或被限流
+	 */
+	private void onComplete(long rttNanos, int inFlightAtStart, boolean dropped) {
+		lock.lock();
+		try {
+			inFlight--;
+			if (dropped) {
+				droppedCount.incrementAndGet();
+				limit = clamp(limit * config.getBackoffRatio());
+			}
+			else if (rttNanos >= 0) {
+				successCount.incrementAndGet();
+				updateRtt(rttNanos);
+				// 在途数远低于限制时说明需求不足，响应时间不能反映容量，不增加限制
+				boolean appLimited = inFlightAtStart * 2 < limit;
+				limit = clamp(config.getAlgorithm() == LimitAlgorithm.AIMD ? aimd(rttNanos, appLimited)
+						: gradient(appLimited));
+			}
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void updateRtt(long rttNanos) {
+		minRttNanos = Math.min(minRttNanos, rttNanos);
+		if (longRttNanos == 0) {
+			shortRttNanos = rttNanos;
+			longRttNanos = rttNanos;
+			return;
+		}
+		shortRttNanos = 0.2 * rttNanos + 0.8 * shortRttNanos;
+		double longAlpha = 1.0 / Math.max(1, config.getLongWindow());
+		longRttNanos = longAlpha * rttNanos + (1 - longAlpha) * longRttNanos;
+		if (longRttNanos > shortRttNanos * 2) {
+			// 排队消除后长期基准偏高，加快回落
+			longRttNanos *= 0.95;
+		}
+	}
+
+	/**
+	 * 响应时间超过基准的容忍倍数视为过载，按比例减少；否则每个限制周期增加1
+	 */
+	private double aimd(long rttNanos, boolean appLimited) {
+		if (rttNanos > longRttNanos * config.getRttTolerance()) {
+			return limit * config.getBackoffRatio();
+		}
+		return appLimited ? limit : limit + 1.0 / limit;
+	}
+
+	/**
+	 * 梯度 = 长期响应时间 / 短期响应时间，响应时间上升时梯度小于1，限制按比例收缩；再加上允许的排队余量sqrt(limit)
+	 */
+	private double gradient(boolean appLimited) {
+		double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRttNanos / shortRttNanos));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		if (appLimited && newLimit > limit) {
+			return limit;
+		}
+		double smoothing = config.getSmoothing();
+		return limit * (1 - smoothing) + newLimit * smoothing;
+	}
+
+	private double clamp(double value) {
+		int max = maxLimit > 0 ? maxLimit : config.getMaxLimit();
+		int min = Math.min(Math.max(1, config.getMinLimit()), Math.max(1, max));
+		max = Math.max(min, max);
+		return Math.max(min, Math.min(max, value));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 当前限制值
+	 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		lock.lock();
+		try {
+			stats.put("algorithm", config.getAlgorithm().name());
+			stats.put("limit", Math.floor(limit * 100) / 100);
+			stats.put("inFlight", inFlight);
+			stats.put("waiting", waiting);
+			stats.put("interactiveWaiting", interactiveWaiting);
+			stats.put("reservedSlots", Math.max(0, Math.min(reservedSlots, (int) limit - 1)));
+			stats.put("maxLimit", maxLimit > 0 ? maxLimit : config.getMaxLimit());
+			if (maxWaiting >= 0) {
+				stats.put("maxWaiting", maxWaiting);
+			}
+			stats.put("shortRttMs", TimeUnit.NANOSECONDS.toMillis((long) shortRttNanos));
+			stats.put("longRttMs", TimeUnit.NANOSECONDS.toMillis((long) longRttNanos));
+			stats.put("minRttMs", minRttNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(minRttNanos));
+		}
+		finally {
+			lock.unlock();
+		}
+		stats.put("maxInFlight", maxInFlight.get());
+		stats.put("acquired", acquiredCount.get());
+		stats.put("rejected", rejectedCount.get());
+		stats.put("queueFull", queueFullCount.get());
+		stats.put("success", successCount.get());
+		stats.put("dropped", droppedCount.get());
+		return stats;
+	}
+
+	/**
+	 * 在途名额 请求结束后必须调用success、dropped或release之一（重复调用无效）
+	 */
+	public class Permit {
+
+		private final long startNanos = System.nanoTime();
+
+		private final int inFlightAtStart;
+
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		private Permit(int inFlightAtStart) {
+			this.inFlightAtStart = inFlightAtStart;
+		}
+
+		/**
+		 * 请求成功，以本次响应时间作为采样
+		 */
+		public void success() {
+			complete(System.nanoTime() - startNanos, false);
+		}
+
+		/**
+		 * 请求出错或被限流，限制按比例下调
+		 */
+		public void dropped() {
+			complete(-1, true);
+		}
+
+		/**
+		 * 释放名额，不作为采样（用于未真正发出的请求）
+		 */
+		public void release() {
+			complete(-1, false);
+		}
+
+		private void complete(long rttNanos, boolean dropped) {
+			if (released.compareAndSet(false, true)) {
+				onComplete(rttNanos, inFlightAtStart, dropped);
+			}
+		}
+
+	}
+
+}
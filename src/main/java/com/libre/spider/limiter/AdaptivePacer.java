@@ -0,0 +1,146 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.config.CrawlerConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 自适应请求节奏 根据服务端的反馈调整单个端点类别的请求间隔
+ * <p>
+ * 收到限流/风控信号（429/461/471、限流错误码）时间隔成倍增加，响应变慢时小幅增加；响应正常时逐步回落到配置的最小间隔。
+ * 一个间隔内的多次退避信号只生效一次，避免并发请求同时失败时间隔被连续放大
+ */
+public class AdaptivePacer {
+
+	private final String name;
+
+	private final CrawlerConfig.PacingConfig config;
+
+	private long floorMs;
+
+	private double intervalMs;
+
+	private long lastIncreaseNanos;
+
+	private long backoffs = 0;
+
+	private long slowResponses = 0;
+
+	private long healthyResponses = 0;
+
+	/**
+	 * @param name 名称
+	 * @param config 节奏配置
+	 * @param floorMs 最小请求间隔（毫秒），即配置的限流间隔
+	 */
+	public AdaptivePacer(String name, CrawlerConfig.PacingConfig config, long floorMs) {
+		this.name = name;
+		this.config = config;
+		this.floorMs = Math.max(1, floorMs);
+		this.intervalMs = this.floorMs;
+	}
+
+	/**
+	 * 收到限流/风控信号
+	 * @return 调整后的请求间隔（毫秒）
+	 */
+	public synchronized long onThrottled() {
+		if (increase(config.getBackoffFactor())) {
+			backoffs++;
+		}
+		return getIntervalMs();
+	}
+
+	/**
+	 * 请求失败（连接失败、读取超时等），按响应变慢处理
+	 * @return 调整后的请求间隔（毫秒）
+	 */
+	public synchronized long onError() {
+		if (increase(config.getSlowFactor())) {
+			slowResponses++;
+		}
+		return getIntervalMs();
+	}
+
+	/**
+	 * 收到一次响应
+	 * @param latencyMs 响应耗时（毫秒）
+	 * @return 调整后的请求间隔（毫秒）
+	 */
+	public synchronized long onResponse(long latencyMs) {
+		if (latencyMs >= config.getSlowThreshold()) {
+			return onError();
+		}
+		else {
+			healthyResponses++;
+			// 与最小间隔的差距按比例缩小
+			intervalMs = floorMs + (intervalMs - floorMs) * config.getRecovery();
+			if (intervalMs - floorMs < 1) {
+				intervalMs = floorMs;
+			}
+		}
+		return getIntervalMs();
+	}
+
+	private boolean increase(double factor) {
+		long now = System.nanoTime();
+		if (lastIncreaseNanos != 0 && (now - lastIncreaseNanos) / 1_000_000 < (long) intervalMs) {
+			return false;
+		}
+		lastIncreaseNanos = now;
+		intervalMs = Math.min(Math.max(floorMs, config.getMaxInterval()), intervalMs * factor);
+		return true;
+	}
+
+	/**
+	 * 修改最小请求间隔 未退避时直接使用新的间隔，退避中时保留当前间隔（不低于新的最小间隔）
+	 */
+	public synchronized void setFloor(long floorMs) {
+		boolean atFloor = intervalMs <= this.floorMs;
+		this.floorMs = Math.max(1, floorMs);
+		if (atFloor || intervalMs < this.floorMs) {
+			intervalMs = this.floorMs;
+		}
+	}
+
+	/**
+	 * 回到最小请求间隔（停用自适应节奏时调用）
+	 */
+	public synchronized void reset() {
+		intervalMs = floorMs;
+		lastIncreaseNanos = 0;
+	}
+
+	/**
+	 * 当前请求间隔（毫秒）
+	 */
+	public synchronized long getIntervalMs() {
+		return Math.round(intervalMs);
+	}
+
+	/**
+	 * 是否已退避（间隔高于最小间隔），退避期间不允许突发
+	 */
+	public synchronized boolean isBackedOff() {
+		return intervalMs > floorMs;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("pacedIntervalMs", getIntervalMs());
+		stats.put("floorIntervalMs", floorMs);
+		stats.put("backoffs", backoffs);
+		stats.put("slowResponses", slowResponses);
+		stats.put("healthyResponses", healthyResponses);
+		return stats;
+	}
+
+}
@@ -0,0 +1,193 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.CircuitState;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 熔断器 遇到验证码/封禁响应时打开，冷却期内拒绝请求；冷却结束后进入半开状态，只放行少量探测请求，
+ * 探测成功足够次数后关闭，探测再次被拦截则重新打开并延长冷却时间
+ */
+public class CircuitBreaker {
+
+	private final String name;
+
+	private final CrawlerConfig.CircuitBreakerConfig config;
+
+	private CircuitState state = CircuitState.CLOSED;
+
+	/**
+	 * 打开状态的结束时间（毫秒时间戳）
+	 */
+	private long openUntil = 0;
+
+	/**
+	 * 连续打开次数，用于延长冷却时间，关闭后清零
+	 */
+	private int consecutiveOpens = 0;
+
+	private int probesInFlight = 0;
+
+	private int probeSuccesses = 0;
+
+	private long trips = 0;
+
+	private long rejected = 0;
+
+	private int lastCode = 0;
+
+	private long lastTripTime = 0;
+
+	public CircuitBreaker(String name, CrawlerConfig.CircuitBreakerConfig config) {
+		this.name = name;
+		this.config = config;
+	}
+
+	/**
+	 * 尝试获取放行许可，不等待
+	 * @return 许可，熔断器打开或半开状态的探测名额已满时返回null
+	 */
+	public synchronized Permission tryAcquire() {
+		long now = System.currentTimeMillis();
+		if (state == CircuitState.OPEN && now >= openUntil) {
+			state = CircuitState.HALF_OPEN;
+			probesInFlight = 0;
+			probeSuccesses = 0;
+		}
+		switch (state) {
+			case CLOSED:
+				return new Permission(false);
+			case HALF_OPEN:
+				if (probesInFlight < Math.max(1, config.getHalfOpenProbes())) {
+					probesInFlight++;
+					return new Permission(true);
+				}
+				rejected++;
+				return null;
+			default:
+				rejected++;
+				return null;
+		}
+	}
+
+	/**
+	 * 距离可以再次尝试的毫秒数，关闭或半开状态返回0
+	 */
+	public synchronized long getRetryAfterMillis() {
+		return state == CircuitState.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+	}
+
+	private void onComplete(boolean probe, Boolean blocked, int code) {
+		synchronized (this) {
+			if (probe) {
+				probesInFlight = Math.max(0, probesInFlight - 1);
+			}
+			if (Boolean.TRUE.equals(blocked)) {
+				open(code);
+			}
+			else if (Boolean.FALSE.equals(blocked) && probe && state == CircuitState.HALF_OPEN
+					&& ++probeSuccesses >= Math.max(1, config.getCloseAfterSuccesses())) {
+				state = CircuitState.CLOSED;
+				consecutiveOpens = 0;
+			}
+		}
+	}
+
+	private void open(int code) {
+		// 已经打开时只记录状态码，不重复延长冷却
+		if (state == CircuitState.OPEN && System.currentTimeMillis() < openUntil) {
+			lastCode = code;
+			return;
+		}
+		long cooldown = Math.min(config.getMaxCooldown(), config.getCooldown() * (1L << Math.min(consecutiveOpens, 10)));
+		state = CircuitState.OPEN;
+		openUntil = System.currentTimeMillis() + cooldown;
+		consecutiveOpens++;
+		trips++;
+		lastCode = code;
+		lastTripTime = System.currentTimeMillis();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized CircuitState getState() {
+		return state;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("state", state == CircuitState.OPEN && System.currentTimeMillis() >= openUntil
+				? CircuitState.HALF_OPEN.name() : state.name());
+		stats.put("retryAfterMs", getRetryAfterMillis());
+		stats.put("consecutiveOpens", consecutiveOpens);
+		stats.put("probesInFlight", probesInFlight);
+		stats.put("trips", trips);
+		stats.put("rejected", rejected);
+		stats.put("lastCode", lastCode);
+		stats.put("lastTripTime", lastTripTime > 0
+				? LocalDateTime.ofInstant(Instant.ofEpochMilli(lastTripTime), ZoneId.systemDefault()) : null);
+		return stats;
+	}
+
+	/**
+	 * 放行许可 请求结束后必须调用success、blocked或release之一（重复调用无效）
+	 */
+	public class Permission {
+
+		private final boolean probe;
+
+		private final AtomicBoolean completed = new AtomicBoolean(false);
+
+		private Permission(boolean probe) {
+			this.probe = probe;
+		}
+
+		/**
+		 * 是否为半开状态下的探测请求
+		 */
+		public boolean isProbe() {
+			return probe;
+		}
+
+		/**
+		 * 请求未被拦截
+		 */
+		public void success() {
+			if (completed.compareAndSet(false, true)) {
+				onComplete(probe, false, 0);
+			}
+		}
+
+		/**
+		 * 请求被验证码/封禁拦截，打开熔断器
+		 * @param code 状态码
+		 */
+		public void blocked(int code) {
+			if (completed.compareAndSet(false, true)) {
+				onComplete(probe, true, code);
+			}
+		}
+
+		/**
+		 * 请求结果无法说明是否被拦截（网络异常等），只归还探测名额
+		 */
+		public void release() {
+			if (completed.compareAndSet(false, true)) {
+				onComplete(probe, null, 0);
+			}
+		}
+
+	}
+
+}
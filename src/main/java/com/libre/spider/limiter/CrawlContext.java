@@ -0,0 +1,145 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.enums.RequestPriority;
+import com.libre.spider.exception.TaskTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 爬取上下文 绑定在当前线程上，用于标识请求所属的任务（限流器按任务公平排队）
+ * <p>
+ * 上下文可以携带任务的截止时间，限流等待、并发许可等待和HTTP调用超时都按剩余时间计算，截止时间到达后各阶段主动停止
+ * <p>
+ * 上下文还携带请求优先级，REST接口的交互式请求在限流和并发控制中优先于后台批量爬取
+ */
+public final class CrawlContext {
+
+	/**
+	 * 未绑定任务时使用的默认流标识
+	 */
+	public static final String DEFAULT_FLOW = "default";
+
+	private static final CrawlContext DEFAULT = new CrawlContext(DEFAULT_FLOW, 0, RequestPriority.BATCH);
+
+	private static final ThreadLocal<CrawlContext> CURRENT = new ThreadLocal<>();
+
+	private final String flow;
+
+	/**
+	 * 截止时间（System.nanoTime），0表示没有截止时间
+	 */
+	private final long deadlineNanos;
+
+	private final RequestPriority priority;
+
+	private CrawlContext(String flow, long deadlineNanos, RequestPriority priority) {
+		this.flow = flow;
+		this.deadlineNanos = deadlineNanos;
+		this.priority = priority;
+	}
+
+	/**
+	 * 创建指定流标识的上下文，优先级为后台批量
+	 * @param flow 流标识（通常为任务名称）
+	 */
+	public static CrawlContext of(String flow) {
+		return new CrawlContext(flow != null ? flow : DEFAULT_FLOW, 0, RequestPriority.BATCH);
+	}
+
+	/**
+	 * 创建指定优先级的上下文，流标识和截止时间不变
+	 */
+	public CrawlContext withPriority(RequestPriority priority) {
+		return new CrawlContext(flow, deadlineNanos, priority);
+	}
+
+	/**
+	 * 创建带截止时间的上下文，流标识不变
+	 * @param timeoutMillis 从现在起的超时时间（毫秒），小于等于0表示不设截止时间
+	 */
+	public CrawlContext withTimeout(long timeoutMillis) {
+		if (timeoutMillis <= 0) {
+			return new CrawlContext(flow, 0, priority);
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		// 避免与"没有截止时间"的0值冲突
+		return new CrawlContext(flow, deadline == 0 ? 1 : deadline, priority);
+	}
+
+	/**
+	 * 获取当前线程绑定的上下文，未绑定时返回默认上下文
+	 */
+	public static CrawlContext current() {
+		CrawlContext context = CURRENT.get();
+		return context != null ? context : DEFAULT;
+	}
+
+	/**
+	 * 把上下文绑定到当前线程，关闭返回的作用域时恢复之前的上下文
+	 */
+	public static Scope open(CrawlContext context) {
+		CrawlContext previous = CURRENT.get();
+		CURRENT.set(context);
+		return () -> {
+			if (previous != null) {
+				CURRENT.set(previous);
+			}
+			else {
+				CURRENT.remove();
+			}
+		};
+	}
+
+	public String getFlow() {
+		return flow;
+	}
+
+	public RequestPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * 是否设置了截止时间
+	 */
+	public boolean hasDeadline() {
+		return deadlineNanos != 0;
+	}
+
+	/**
+	 * 距截止时间的剩余毫秒数，没有截止时间时返回Long.MAX_VALUE，已超时返回0
+	 */
+	public long remainingMillis() {
+		if (!hasDeadline()) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+	}
+
+	/**
+	 * 是否已超过截止时间
+	 */
+	public boolean isExpired() {
+		return hasDeadline() && deadlineNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * 已超过截止时间时抛出异常
+	 * @throws TaskTimeoutException 已超时
+	 */
+	public void checkDeadline() {
+		if (isExpired()) {
+			throw new TaskTimeoutException("任务已超过截止时间: " + flow);
+		}
+	}
+
+	/**
+	 * 上下文作用域
+	 */
+	public interface Scope extends AutoCloseable {
+
+		@Override
+		void close();
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.enums.RequestPriority;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带优先级的互斥锁 锁释放时等待中的交互式请求先于批量请求获得锁，用于串行访问共享的浏览器页面（签名计算）
+ */
+public class PriorityLock {
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition released = lock.newCondition();
+
+	private boolean held = false;
+
+	private int interactiveWaiting = 0;
+
+	/**
+	 * 获取锁
+	 * @param priority 请求优先级
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return 是否在超时前获取到锁
+	 */
+	public boolean tryLock(RequestPriority priority, long timeout, TimeUnit unit) throws InterruptedException {
+		boolean interactive = priority == RequestPriority.INTERACTIVE;
+		long remaining = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			if (interactive) {
+				interactiveWaiting++;
+			}
+			try {
+				while (held || (!interactive && interactiveWaiting > 0)) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = released.awaitNanos(remaining);
+				}
+			}
+			finally {
+				if (interactive && --interactiveWaiting == 0) {
+					// 被中断或超时退出时唤醒让行中的批量请求
+					released.signalAll();
+				}
+			}
+			held = true;
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 释放锁
+	 */
+	public void unlock() {
+		lock.lock();
+		try {
+			held = false;
+			released.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.libre.spider.limiter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 重试预算 在滑动时间窗口内统计请求数和重试数，重试数不超过请求数的固定比例（另有少量保底），
+ * 部分故障时所有线程同时重试也不会把请求量放大数倍
+ */
+public class RetryBudget {
+
+	private static final long BUCKET_MILLIS = 1000;
+
+	private final long[] requests;
+
+	private final long[] retries;
+
+	private final long[] bucketStarts;
+
+	/**
+	 * @param windowMillis 统计窗口（毫秒）
+	 */
+	public RetryBudget(long windowMillis) {
+		int buckets = (int) Math.max(1, windowMillis / BUCKET_MILLIS);
+		this.requests = new long[buckets];
+		this.retries = new long[buckets];
+		this.bucketStarts = new long[buckets];
+	}
+
+	/**
+	 * 记录一次请求（包括重试发出的请求）
+	 */
+	public synchronized void recordRequest() {
+		requests[bucket(System.currentTimeMillis())]++;
+	}
+
+	/**
+	 * 尝试为一次重试支出预算
+	 * @param ratio 重试数占窗口内请求数的最大比例
+	 * @param minRetries 窗口内不受比例限制的保底重试数
+	 * @return 是否允许重试
+	 */
+	public synchronized boolean tryAcquire(double ratio, int minRetries) {
+		long now = System.currentTimeMillis();
+		long windowRequests = 0;
+		long windowRetries = 0;
+		for (int i = 0; i < requests.length; i++) {
+			if (now - bucketStarts[i] < (long) requests.length * BUCKET_MILLIS) {
+				windowRequests += requests[i];
+				windowRetries += retries[i];
+			}
+		}
+		if (windowRetries >= minRetries + ratio * windowRequests) {
+			return false;
+		}
+		retries[bucket(now)]++;
+		return true;
+	}
+
+	private int bucket(long now) {
+		long start = now - now % BUCKET_MILLIS;
+		int index = (int) ((now / BUCKET_MILLIS) % requests.length);
+		if (bucketStarts[index] != start) {
+			bucketStarts[index] = start;
+			requests[index] = 0;
+			retries[index] = 0;
+		}
+		return index;
+	}
+
+	/**
+	 * 获取窗口内的统计
+	 */
+	public synchronized Map<String, Object> getStats() {
+		long now = System.currentTimeMillis();
+		long windowRequests = 0;
+		long windowRetries = 0;
+		for (int i = 0; i < requests.length; i++) {
+			if (now - bucketStarts[i] < (long) requests.length * BUCKET_MILLIS) {
+				windowRequests += requests[i];
+				windowRetries += retries[i];
+			}
+		}
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("windowRequests", windowRequests);
+		stats.put("windowRetries", windowRetries);
+		return stats;
+	}
+
+}
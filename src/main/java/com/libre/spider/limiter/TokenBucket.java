@@ -0,0 +1,446 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.enums.RequestPriority;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 令牌桶限流器 支持突发容量，等待中的请求按流（任务）轮询分配令牌，避免并发数多的任务占满配额
+ * <p>
+ * 等待者按优先级分为多条通道，通道之间按权重平滑轮询分配令牌；桶中保留若干令牌只给交互式请求使用，
+ * 批量请求只能取走预留以外的令牌，交互式请求到达时通常不需要等待
+ */
+public class TokenBucket {
+
+	private final String name;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition changed = lock.newCondition();
+
+	/**
+	 * 各优先级的等待通道
+	 */
+	private final Map<RequestPriority, Lane> lanes = new EnumMap<>(RequestPriority.class);
+
+	private long intervalNanos;
+
+	private double capacity;
+
+	private double tokens;
+
+	private long lastRefillNanos;
+
+	/**
+	 * 为交互式请求预留的令牌数
+	 */
+	private int reservedTokens = 0;
+
+	private int waiting = 0;
+
+	private final AtomicLong acquiredCount = new AtomicLong(0);
+
+	private final AtomicLong timeoutCount = new AtomicLong(0);
+
+	private final AtomicLong totalWaitNanos = new AtomicLong(0);
+
+	private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+	/**
+	 * @param name 名称
+	 * @param intervalMs 每个令牌的生成间隔（毫秒）
+	 * @param burst 突发容量（桶中最多保存的令牌数）
+	 */
+	public TokenBucket(String name, long intervalMs, int burst) {
+		this.name = name;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMs));
+		this.capacity = Math.max(1, burst);
+		this.tokens = this.capacity;
+		this.lastRefillNanos = System.nanoTime();
+		for (RequestPriority priority : RequestPriority.values()) {
+			lanes.put(priority, new Lane(priority));
+		}
+	}
+
+	/**
+	 * 设置通道权重和预留令牌数
+	 * @param interactiveWeight 交互式通道的权重
+	 * @param batchWeight 批量通道的权重
+	 * @param reservedTokens 为交互式请求预留的令牌数（不超过突发容量减1）
+	 */
+	public void setLanes(int interactiveWeight, int batchWeight, int reservedTokens) {
+		lock.lock();
+		try {
+			lanes.get(RequestPriority.INTERACTIVE).weight = Math.max(1, interactiveWeight);
+			lanes.get(RequestPriority.BATCH).weight = Math.max(1, batchWeight);
+			this.reservedTokens = Math.max(0, reservedTokens);
+			changed.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 获取一个令牌（批量优先级）
+	 * @param flow 流标识，等待中的请求在不同流之间轮询
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return 是否在超时前获取到令牌
+	 */
+	public boolean acquire(String flow, long timeout, TimeUnit unit) throws InterruptedException {
+		return acquire(flow, RequestPriority.BATCH, timeout, unit);
+	}
+
+	/**
+	 * 获取一个令牌
+	 * @param flow 流标识，同一通道中等待的请求在不同流之间轮询
+	 * @param priority 请求优先级
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return 是否在超时前获取到令牌
+	 */
+	public boolean acquire(String flow, RequestPriority priority, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long startNanos = System.nanoTime();
+		long deadlineNanos = startNanos + unit.toNanos(timeout);
+		Lane lane = lanes.get(priority);
+
+		lock.lockInterruptibly();
+		try {
+			refill(startNanos);
+			if (canTakeImmediately(lane)) {
+				tokens -= 1;
+				recordAcquired(lane, 0);
+				return true;
+			}
+
+			Waiter waiter = enqueue(lane, flow);
+			try {
+				while (true) {
+					long now = System.nanoTime();
+					refill(now);
+					grantAvailable();
+					if (waiter.granted) {
+						recordAcquired(lane, now - startNanos);
+						return true;
+					}
+
+					long remaining = deadlineNanos - now;
+					if (remaining <= 0) {
+						remove(lane, waiter);
+						timeoutCount.incrementAndGet();
+						return false;
+					}
+					changed.awaitNanos(Math.min(remaining, nanosUntil(required(lane))));
+				}
+			}
+			catch (InterruptedException e) {
+				if (waiter.granted) {
+					// 已分配的令牌归还给桶
+					tokens = Math.min(capacity, tokens + 1);
+					changed.signalAll();
+				}
+				else {
+					remove(lane, waiter);
+				}
+				throw e;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 尝试立即获取一个令牌（批量优先级），不等待
+	 */
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			refill(System.nanoTime());
+			Lane lane = lanes.get(RequestPriority.BATCH);
+			if (canTakeImmediately(lane)) {
+				tokens -= 1;
+				recordAcquired(lane, 0);
+				return true;
+			}
+			return false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 是否有空闲配额：没有等待者且桶中至少有reserve个令牌（不超过突发容量），不消耗令牌
+	 */
+	public boolean hasSpare(double reserve) {
+		lock.lock();
+		try {
+			refill(System.nanoTime());
+			return waiting == 0 && tokens >= Math.min(reserve, capacity);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 调整令牌生成间隔和突发容量，对等待中的请求立即生效
+	 */
+	public void setRate(long intervalMs, int burst) {
+		lock.lock();
+		try {
+			refill(System.nanoTime());
+			this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMs));
+			this.capacity = Math.max(1, burst);
+			this.tokens = Math.min(tokens, capacity);
+			changed.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void refill(long now) {
+		long elapsed = now - lastRefillNanos;
+		if (elapsed > 0) {
+			tokens = Math.min(capacity, tokens + (double) elapsed / intervalNanos);
+			lastRefillNanos = now;
+		}
+	}
+
+	/**
+	 * 通道取走一个令牌所需的最少令牌数 批量通道不能动用预留令牌，预留数不超过突发容量减1，保证批量请求始终能获取令牌
+	 */
+	private double required(Lane lane) {
+		if (lane.priority == RequestPriority.INTERACTIVE) {
+			return 1;
+		}
+		return 1 + Math.min(reservedTokens, capacity - 1);
+	}
+
+	/**
+	 * 是否可以不排队直接取走令牌 本通道没有等待者且令牌足够；批量请求还要求没有交互式请求在等待
+	 */
+	private boolean canTakeImmediately(Lane lane) {
+		if (!lane.activeFlows.isEmpty() || tokens < required(lane)) {
+			return false;
+		}
+		return lane.priority == RequestPriority.INTERACTIVE || waiting == 0;
+	}
+
+	private long nanosUntil(double required) {
+		if (tokens >= required) {
+			return 1;
+		}
+		return Math.max(1, (long) ((required - tokens) * intervalNanos));
+	}
+
+	/**
+	 * 把可用令牌分配给等待者 通道之间按权重平滑轮询，通道内按流轮询
+	 */
+	private void grantAvailable() {
+		boolean granted = false;
+		while (true) {
+			Lane chosen = null;
+			int totalWeight = 0;
+			for (Lane lane : lanes.values()) {
+				if (lane.activeFlows.isEmpty() || tokens < required(lane)) {
+					continue;
+				}
+				lane.current += lane.weight;
+				totalWeight += lane.weight;
+				if (chosen == null || lane.current > chosen.current) {
+					chosen = lane;
+				}
+			}
+			if (chosen == null) {
+				break;
+			}
+			chosen.current -= totalWeight;
+
+			Flow flow = chosen.activeFlows.pollFirst();
+			Waiter head = flow.waiters.pollFirst();
+			head.granted = true;
+			tokens -= 1;
+			waiting--;
+			chosen.waiting--;
+			granted = true;
+
+			if (flow.waiters.isEmpty()) {
+				chosen.flows.remove(flow.key);
+			}
+			else {
+				chosen.activeFlows.addLast(flow);
+			}
+			if (chosen.activeFlows.isEmpty()) {
+				// 通道空闲后重新开始轮询计数，避免历史欠额影响下一轮
+				chosen.current = 0;
+			}
+		}
+		if (granted) {
+			changed.signalAll();
+		}
+	}
+
+	private Waiter enqueue(Lane lane, String flowKey) {
+		Flow flow = lane.flows.get(flowKey);
+		if (flow == null) {
+			flow = new Flow(flowKey);
+			lane.flows.put(flowKey, flow);
+			lane.activeFlows.addLast(flow);
+		}
+		Waiter waiter = new Waiter();
+		flow.waiters.addLast(waiter);
+		waiting++;
+		lane.waiting++;
+		return waiter;
+	}
+
+	private void remove(Lane lane, Waiter waiter) {
+		for (Flow flow : lane.activeFlows) {
+			if (flow.waiters.remove(waiter)) {
+				waiting--;
+				lane.waiting--;
+				if (flow.waiters.isEmpty()) {
+					lane.activeFlows.remove(flow);
+					lane.flows.remove(flow.key);
+				}
+				changed.signalAll();
+				return;
+			}
+		}
+	}
+
+	private void recordAcquired(Lane lane, long waitNanos) {
+		acquiredCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		lane.acquiredCount.incrementAndGet();
+		lane.totalWaitNanos.addAndGet(waitNanos);
+		lane.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 等待中的请求数
+	 */
+	public int getWaiting() {
+		lock.lock();
+		try {
+			return waiting;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		Map<String, Object> laneStats = new LinkedHashMap<>();
+		lock.lock();
+		try {
+			refill(System.nanoTime());
+			stats.put("intervalMs", TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+			stats.put("burst", (int) capacity);
+			stats.put("reservedTokens", (int) Math.min(reservedTokens, capacity - 1));
+			stats.put("availableTokens", Math.floor(tokens * 100) / 100);
+			stats.put("waiting", waiting);
+			int waitingFlows = 0;
+			for (Lane lane : lanes.values()) {
+				waitingFlows += lane.activeFlows.size();
+				Map<String, Object> single = new LinkedHashMap<>();
+				single.put("weight", lane.weight);
+				single.put("waiting", lane.waiting);
+				long acquired = lane.acquiredCount.get();
+				single.put("acquired", acquired);
+				single.put("avgWaitMs",
+						acquired > 0 ? TimeUnit.NANOSECONDS.toMillis(lane.totalWaitNanos.get() / acquired) : 0);
+				single.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(lane.maxWaitNanos.get()));
+				laneStats.put(lane.priority.name(), single);
+			}
+			stats.put("waitingFlows", waitingFlows);
+		}
+		finally {
+			lock.unlock();
+		}
+		long acquired = acquiredCount.get();
+		stats.put("acquired", acquired);
+		stats.put("timeouts", timeoutCount.get());
+		stats.put("avgWaitMs", acquired > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / acquired) : 0);
+		stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+		stats.put("lanes", laneStats);
+		return stats;
+	}
+
+	/**
+	 * 优先级通道
+	 */
+	private static class Lane {
+
+		private final RequestPriority priority;
+
+		/**
+		 * 有等待者的流，按轮询顺序排列
+		 */
+		private final Deque<Flow> activeFlows = new ArrayDeque<>();
+
+		private final Map<String, Flow> flows = new HashMap<>();
+
+		private int weight = 1;
+
+		/**
+		 * 平滑加权轮询的当前值
+		 */
+		private int current = 0;
+
+		private int waiting = 0;
+
+		private final AtomicLong acquiredCount = new AtomicLong(0);
+
+		private final AtomicLong totalWaitNanos = new AtomicLong(0);
+
+		private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+		Lane(RequestPriority priority) {
+			this.priority = priority;
+		}
+
+	}
+
+	private static class Flow {
+
+		private final String key;
+
+		private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+		Flow(String key) {
+			this.key = key;
+		}
+
+	}
+
+	private static class Waiter {
+
+		private boolean granted = false;
+
+	}
+
+}
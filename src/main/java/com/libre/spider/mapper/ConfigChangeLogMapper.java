@@ -0,0 +1,13 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.ConfigChangeLog;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 配置变更记录Mapper接口
+ */
+@Mapper
+public interface ConfigChangeLogMapper extends BaseMapper<ConfigChangeLog> {
+
+}
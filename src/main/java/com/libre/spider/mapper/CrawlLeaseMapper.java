@@ -0,0 +1,22 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.CrawlLease;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+
+/**
+ * 爬虫节点租约Mapper接口
+ */
+@Mapper
+public interface CrawlLeaseMapper extends BaseMapper<CrawlLease> {
+
+	/**
+	 * 数据库当前时间 租约的过期时间均按数据库时钟计算和比较，不受各节点本地时钟偏差的影响（PostgreSQL与H2均支持）
+	 */
+	@Select("SELECT LOCALTIMESTAMP")
+	LocalDateTime selectNow();
+
+}
@@ -0,0 +1,22 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.CrawlRetryItem;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+
+/**
+ * 延迟重试队列Mapper接口
+ */
+@Mapper
+public interface CrawlRetryItemMapper extends BaseMapper<CrawlRetryItem> {
+
+	/**
+	 * 数据库当前时间 重试时间和领取超时按数据库时钟计算和比较，不受各节点本地时钟偏差的影响（PostgreSQL与H2均支持）
+	 */
+	@Select("SELECT LOCALTIMESTAMP")
+	LocalDateTime selectNow();
+
+}
@@ -0,0 +1,13 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.CrawlTaskItem;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 爬取任务检查点明细Mapper接口
+ */
+@Mapper
+public interface CrawlTaskItemMapper extends BaseMapper<CrawlTaskItem> {
+
+}
@@ -0,0 +1,34 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.CrawlWorkItem;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 爬取工作队列Mapper接口
+ */
+@Mapper
+public interface CrawlWorkItemMapper extends BaseMapper<CrawlWorkItem> {
+
+	/**
+	 * 数据库当前时间 可见性超时按数据库时钟计算和比较，不受各节点本地时钟偏差的影响（PostgreSQL与H2均支持）
+	 */
+	@Select("SELECT LOCALTIMESTAMP")
+	LocalDateTime selectNow();
+
+	/**
+	 * 锁定一批可领取的工作项 已被其他事务锁定的行直接跳过，多个工作者之间不会互相阻塞（PostgreSQL与H2均支持）
+	 * @param now 数据库当前时间
+	 * @param limit 最多锁定的数量
+	 * @return 已锁定的工作项，需在同一事务内更新为已领取
+	 */
+	@Select("SELECT * FROM crawl_work_item WHERE state IN ('READY', 'CLAIMED') AND visible_at <= #{now} "
+			+ "AND attempts < max_attempts ORDER BY priority DESC, id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+	List<CrawlWorkItem> selectClaimableForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+}
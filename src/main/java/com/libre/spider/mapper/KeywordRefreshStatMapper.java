@@ -0,0 +1,13 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.KeywordRefreshStat;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 关键词刷新统计Mapper接口
+ */
+@Mapper
+public interface KeywordRefreshStatMapper extends BaseMapper<KeywordRefreshStat> {
+
+}
@@ -0,0 +1,13 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.KeywordWatermark;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 关键词水位线Mapper接口
+ */
+@Mapper
+public interface KeywordWatermarkMapper extends BaseMapper<KeywordWatermark> {
+
+}
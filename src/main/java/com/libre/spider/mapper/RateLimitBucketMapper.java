@@ -0,0 +1,59 @@
+package com.libre.spider.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.libre.spider.entity.RateLimitBucket;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 集群限流令牌桶Mapper接口
+ * <p>
+ * 令牌补充按数据库时钟计算，各节点的本地时钟不参与（PostgreSQL与H2均支持）
+ */
+@Mapper
+public interface RateLimitBucketMapper extends BaseMapper<RateLimitBucket> {
+
+	/**
+	 * 数据库当前时间（毫秒时间戳）
+	 */
+	String DB_NOW_MILLIS = "CAST(EXTRACT(EPOCH FROM CURRENT_TIMESTAMP) * 1000 AS BIGINT)";
+
+	/**
+	 * 按数据库时间补充后的可用令牌数
+	 */
+	String AVAILABLE = "LEAST(#{capacity}, tokens + CAST(GREATEST(0, " + DB_NOW_MILLIS
+			+ " - refill_at) AS DOUBLE PRECISION) / #{interval})";
+
+	/**
+	 * 数据库当前时间（毫秒时间戳）
+	 */
+	@Select("SELECT " + DB_NOW_MILLIS)
+	long selectNowMillis();
+
+	/**
+	 * 查询按数据库时间补充后的可用令牌数
+	 * @param key 令牌桶标识
+	 * @param capacity 令牌桶容量
+	 * @param interval 生成一个令牌的间隔（毫秒）
+	 * @return 可用令牌数，令牌桶不存在时返回null
+	 */
+	@Select("SELECT " + AVAILABLE + " FROM rate_limit_bucket WHERE bucket_key = #{key}")
+	Double selectAvailable(@Param("key") String key, @Param("capacity") int capacity, @Param("interval") long interval);
+
+	/**
+	 * 租用令牌 在同一条条件更新中按数据库时间补充并扣减，可用令牌不足（已被其他节点租走）时不更新
+	 * @param key 令牌桶标识
+	 * @param capacity 令牌桶容量
+	 * @param interval 生成一个令牌的间隔（毫秒）
+	 * @param tokens 租用的令牌数
+	 * @return 更新的行数，0表示可用令牌不足
+	 */
+	@Update("UPDATE rate_limit_bucket SET tokens = " + AVAILABLE + " - #{tokens}, refill_at = GREATEST(refill_at, "
+			+ DB_NOW_MILLIS + "), capacity = #{capacity}, interval_ms = #{interval}, version = version + 1, "
+			+ "update_time = LOCALTIMESTAMP WHERE bucket_key = #{key} AND " + AVAILABLE + " >= #{tokens}")
+	int grant(@Param("key") String key, @Param("capacity") int capacity, @Param("interval") long interval,
+			@Param("tokens") int tokens);
+
+}
@@ -65,7 +65,9 @@ public class CrawlerRequest {
 
 	/**
 	 * 请求间隔（毫秒，默认1000）
+	 * @deprecated 请求频率已由全局限流器（xhs.crawler.rateLimit）统一控制，该参数不再生效
 	 */
+	@Deprecated
 	@Builder.Default
 	private Long requestInterval = 1000L;
 
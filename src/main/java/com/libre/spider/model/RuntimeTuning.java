@@ -0,0 +1,107 @@
+package com.libre.spider.model;
+
+import com.libre.spider.enums.EndpointType;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 运行时配置调整参数 只修改不为null的项，所有项校验通过后才一起生效
+ */
+@Data
+public class RuntimeTuning {
+
+	/**
+	 * 全局并发数（之后仍会自适应调整）
+	 */
+	private Integer concurrency;
+
+	/**
+	 * 全局并发数下限
+	 */
+	private Integer minConcurrency;
+
+	/**
+	 * 全局并发数上限
+	 */
+	private Integer maxConcurrency;
+
+	/**
+	 * 默认请求间隔（毫秒），未单独配置间隔的端点类别使用
+	 */
+	private Long requestInterval;
+
+	/**
+	 * 每个关键词最大翻页数（对新任务生效）
+	 */
+	private Integer maxPages;
+
+	/**
+	 * 每个关键词最大笔记数量（对新任务生效）
+	 */
+	private Integer maxNotesPerKeyword;
+
+	/**
+	 * 按端点类别调整的限流和舱壁参数
+	 */
+	private Map<EndpointType, EndpointTuning> endpoints;
+
+	/**
+	 * 是否启用自适应节奏
+	 */
+	private Boolean pacingEnabled;
+
+	/**
+	 * 自适应节奏的最大请求间隔（毫秒）
+	 */
+	private Long pacingMaxInterval;
+
+	/**
+	 * 持久化写入的批量大小
+	 */
+	private Integer writeBehindBatchSize;
+
+	/**
+	 * 工作队列每次领取的数量
+	 */
+	private Integer workQueueClaimBatchSize;
+
+	/**
+	 * 延迟重试队列每次领取的数量
+	 */
+	private Integer retryQueueBatchSize;
+
+	/**
+	 * 变更原因，记入审计日志
+	 */
+	private String reason;
+
+	/**
+	 * 单个端点类别的调整参数
+	 */
+	@Data
+	public static class EndpointTuning {
+
+		/**
+		 * 令牌生成间隔（毫秒），0表示使用requestInterval
+		 */
+		private Long interval;
+
+		/**
+		 * 突发容量
+		 */
+		private Integer burst;
+
+		/**
+		 * 舱壁最大并发数
+		 */
+		private Integer maxConcurrent;
+
+		/**
+		 * 舱壁等待超时（毫秒）
+		 */
+		private Long timeout;
+
+	}
+
+}
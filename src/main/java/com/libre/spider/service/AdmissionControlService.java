@@ -0,0 +1,249 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.limiter.TokenBucket;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * REST接口准入控制服务 在请求进入控制器之前判断是否接收，拒绝时立即返回429，不占用服务线程和上游配额
+ * <p>
+ * 依次检查：过载丢弃（上游熔断、堆内存、限流排队深度）→ 客户端请求速率 → 接口并发数（可短暂排队）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdmissionControlService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final RateLimiterService rateLimiterService;
+
+	private final CircuitBreakerService circuitBreakerService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	private final Map<String, EndpointGate> gates = new ConcurrentHashMap<>();
+
+	private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+
+	private final AtomicLong shedUpstream = new AtomicLong(0);
+
+	private final AtomicLong shedHeap = new AtomicLong(0);
+
+	private final AtomicLong shedQueueDepth = new AtomicLong(0);
+
+	private final AtomicLong rejectedClientRate = new AtomicLong(0);
+
+	/**
+	 * 是否启用
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getAdmission().isEnabled();
+	}
+
+	/**
+	 * 申请处理一个请求
+	 * @param endpoint 接口路径模式
+	 * @param client 客户端标识（来源地址）
+	 * @return 准入凭证，请求结束后必须调用release
+	 * @throws RateLimitException 请求被拒绝，retryAfterMs为建议的重试等待时间
+	 */
+	public Ticket admit(String endpoint, String client) {
+		CrawlerConfig.AdmissionConfig config = crawlerConfig.getAdmission();
+		CrawlerConfig.AdmissionLimitConfig limit = config.getLimit(endpoint);
+		EndpointGate gate = gates.computeIfAbsent(endpoint, key -> new EndpointGate(limit.getMaxConcurrent()));
+
+		if (limit.isSheddable()) {
+			shedIfOverloaded(config, gate);
+		}
+
+		if (config.getClientRequestsPerMinute() > 0) {
+			long interval = Math.max(1, 60_000L / config.getClientRequestsPerMinute());
+			TokenBucket bucket = clients.computeIfAbsent(client,
+					key -> new TokenBucket(key, interval, Math.max(1, config.getClientBurst())));
+			if (!bucket.tryAcquire()) {
+				rejectedClientRate.incrementAndGet();
+				gate.rejectedRate.incrementAndGet();
+				throw new RateLimitException("请求过于频繁: client=" + client, interval);
+			}
+		}
+
+		if (gate.permits.tryAcquire()) {
+			gate.admitted.incrementAndGet();
+			return new Ticket(gate);
+		}
+		if (gate.queued.get() >= limit.getMaxQueue()) {
+			gate.rejectedQueueFull.incrementAndGet();
+			throw new RateLimitException("接口繁忙，排队已满: " + endpoint, 1000);
+		}
+
+		gate.queued.incrementAndGet();
+		gate.queuedTotal.incrementAndGet();
+		try {
+			if (gate.permits.tryAcquire(limit.getQueueTimeout(), TimeUnit.MILLISECONDS)) {
+				gate.admitted.incrementAndGet();
+				return new Ticket(gate);
+			}
+			gate.rejectedTimeout.incrementAndGet();
+			throw new RateLimitException("接口繁忙，排队超时: " + endpoint, 1000);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RateLimitException("排队被中断: " + endpoint, e);
+		}
+		finally {
+			gate.queued.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 服务端过载时直接拒绝
+	 */
+	private void shedIfOverloaded(CrawlerConfig.AdmissionConfig config, EndpointGate gate) {
+		if (config.isShedOnCircuitOpen()) {
+			long retryAfter = circuitBreakerService.getOpenRetryAfterMillis();
+			if (retryAfter > 0) {
+				shedUpstream.incrementAndGet();
+				gate.shed.incrementAndGet();
+				throw new RateLimitException("上游熔断中，暂停接收请求", retryAfter);
+			}
+		}
+		if (config.getShedHeapRatio() > 0) {
+			double heapRatio = getHeapRatio();
+			if (heapRatio >= config.getShedHeapRatio()) {
+				shedHeap.incrementAndGet();
+				gate.shed.incrementAndGet();
+				throw new RateLimitException(String.format("内存使用率过高(%.2f)，暂停接收请求", heapRatio),
+						config.getRetryAfter());
+			}
+		}
+		if (config.getShedQueueDepth() > 0) {
+			int waiting = rateLimiterService.getWaiting();
+			if (waiting >= config.getShedQueueDepth()) {
+				shedQueueDepth.incrementAndGet();
+				gate.shed.incrementAndGet();
+				throw new RateLimitException("限流排队过长(" + waiting + ")，暂停接收请求", config.getRetryAfter());
+			}
+		}
+	}
+
+	/**
+	 * 堆内存使用率 启用内存保护时使用GC后的占用率，否则使用当前占用率；无法获取最大值时返回0
+	 */
+	private double getHeapRatio() {
+		if (crawlerConfig.getMemory().isEnabled()) {
+			return memoryGovernorService.getOccupancy();
+		}
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		return heap.getMax() > 0 ? (double) heap.getUsed() / heap.getMax() : 0;
+	}
+
+	/**
+	 * 定期清理空闲客户端的速率状态（令牌已回满的客户端与新客户端没有区别）
+	 */
+	@Scheduled(fixedDelay = 60000)
+	public void evictIdleClients() {
+		int burst = Math.max(1, crawlerConfig.getAdmission().getClientBurst());
+		clients.values().removeIf(bucket -> bucket.hasSpare(burst));
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		stats.put("clients", clients.size());
+		stats.put("heapRatio", String.format("%.2f", getHeapRatio()));
+		stats.put("upstreamWaiting", rateLimiterService.getWaiting());
+		stats.put("shedUpstream", shedUpstream.get());
+		stats.put("shedHeap", shedHeap.get());
+		stats.put("shedQueueDepth", shedQueueDepth.get());
+		stats.put("rejectedClientRate", rejectedClientRate.get());
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		gates.forEach((endpoint, gate) -> endpoints.put(endpoint, gate.getStats()));
+		stats.put("endpoints", endpoints);
+		return stats;
+	}
+
+	/**
+	 * 单个接口的并发控制和计数
+	 */
+	private static class EndpointGate {
+
+		private final int maxConcurrent;
+
+		private final Semaphore permits;
+
+		private final AtomicInteger queued = new AtomicInteger(0);
+
+		private final AtomicLong admitted = new AtomicLong(0);
+
+		private final AtomicLong queuedTotal = new AtomicLong(0);
+
+		private final AtomicLong rejectedQueueFull = new AtomicLong(0);
+
+		private final AtomicLong rejectedTimeout = new AtomicLong(0);
+
+		private final AtomicLong rejectedRate = new AtomicLong(0);
+
+		private final AtomicLong shed = new AtomicLong(0);
+
+		EndpointGate(int maxConcurrent) {
+			this.maxConcurrent = Math.max(1, maxConcurrent);
+			this.permits = new Semaphore(this.maxConcurrent);
+		}
+
+		Map<String, Object> getStats() {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("maxConcurrent", maxConcurrent);
+			stats.put("inFlight", maxConcurrent - permits.availablePermits());
+			stats.put("queued", queued.get());
+			stats.put("admitted", admitted.get());
+			stats.put("queuedTotal", queuedTotal.get());
+			stats.put("rejectedQueueFull", rejectedQueueFull.get());
+			stats.put("rejectedTimeout", rejectedTimeout.get());
+			stats.put("rejectedRate", rejectedRate.get());
+			stats.put("shed", shed.get());
+			return stats;
+		}
+
+	}
+
+	/**
+	 * 准入凭证 请求结束后释放接口并发名额（重复调用无效）
+	 */
+	public static class Ticket {
+
+		private final EndpointGate gate;
+
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		private Ticket(EndpointGate gate) {
+			this.gate = gate;
+		}
+
+		public void release() {
+			if (released.compareAndSet(false, true)) {
+				gate.permits.release();
+			}
+		}
+
+	}
+
+}
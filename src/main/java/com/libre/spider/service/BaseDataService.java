@@ -2,13 +2,16 @@ package com.libre.spider.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.libre.spider.utils.ExceptionHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -115,6 +118,60 @@ public abstract class BaseDataService<T, M extends BaseMapper<T>> {
 		log.info("批量保存{}记录完成: 成功{}条, 失败{}条", getEntityName(), successCount, failCount);
 	}
 
+	/**
+	 * 按业务唯一键批量保存或更新实体 每批只执行一次IN查询确定已存在的记录，再分别批量插入和批量更新；
+	 * 同一批次中重复的键以最后一条为准
+	 * @param entities 实体列表
+	 * @param keyColumn 业务唯一键字段
+	 */
+	@Transactional
+	public void batchUpsert(List<T> entities, SFunction<T, ?> keyColumn) {
+		if (entities == null || entities.isEmpty()) {
+			return;
+		}
+
+		try {
+			Map<Object, T> latest = new LinkedHashMap<>();
+			for (T entity : entities) {
+				latest.put(keyColumn.apply(entity), entity);
+			}
+
+			LambdaQueryWrapper<T> condition = new LambdaQueryWrapper<>();
+			condition.in(keyColumn, latest.keySet());
+			Map<Object, T> existing = new LinkedHashMap<>();
+			for (T entity : mapper.selectList(condition)) {
+				existing.put(keyColumn.apply(entity), entity);
+			}
+
+			List<T> toInsert = new ArrayList<>();
+			List<T> toUpdate = new ArrayList<>();
+			latest.forEach((key, entity) -> {
+				T existingEntity = existing.get(key);
+				setUpdateTime(entity);
+				if (existingEntity != null) {
+					setId(entity, getId(existingEntity));
+					toUpdate.add(entity);
+				}
+				else {
+					setCreateTime(entity);
+					toInsert.add(entity);
+				}
+			});
+
+			if (!toInsert.isEmpty()) {
+				mapper.insert(toInsert);
+			}
+			if (!toUpdate.isEmpty()) {
+				mapper.updateById(toUpdate);
+			}
+			log.debug("批量写入{}记录完成: 插入{}条, 更新{}条", getEntityName(), toInsert.size(), toUpdate.size());
+		}
+		catch (Exception e) {
+			exceptionHandler.handleDatabaseException(e, "批量保存或更新", getEntityName());
+			throw e;
+		}
+	}
+
 	/**
 	 * 根据条件查询单个实体
 	 * @param condition 查询条件
@@ -2,6 +2,16 @@ package com.libre.spider.service;
 
 import com.libre.spider.config.CrawlerConfig;
 import com.libre.spider.config.RetryConfig;
+import com.libre.spider.entity.CrawlTask;
+import com.libre.spider.entity.CrawlTaskItem;
+import com.libre.spider.entity.CrawlRetryItem;
+import com.libre.spider.entity.CrawlWorkItem;
+import com.libre.spider.enums.ErrorType;
+import com.libre.spider.enums.TaskItemState;
+import com.libre.spider.enums.WorkItemState;
+import com.libre.spider.enums.WorkItemType;
+import com.libre.spider.limiter.AdaptiveLimiter;
+import com.libre.spider.limiter.CrawlContext;
 import com.libre.spider.exception.*;
 import com.libre.spider.model.*;
 import com.libre.spider.enums.SearchSortType;
@@ -13,8 +23,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -39,71 +50,180 @@ public class BatchCrawlerService {
 
 	private final ExceptionHandler exceptionHandler;
 
+	private final CrawlExecutorService crawlExecutorService;
+
+	private final WriteBehindService writeBehindService;
+
+	private final KeywordWatermarkService keywordWatermarkService;
+
+	private final CrawlCheckpointService crawlCheckpointService;
+
+	private final CrawlWorkQueueService crawlWorkQueueService;
+
+	private final KeywordRefreshService keywordRefreshService;
+
+	private final CrawlRetryQueueService crawlRetryQueueService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	/**
+	 * 正在执行的流水线，key为任务名称
+	 */
+	private final Map<String, CrawlPipeline> runningPipelines = new ConcurrentHashMap<>();
+
 	/**
 	 * 执行批量爬取任务
 	 */
 	@Async
 	public CompletableFuture<Void> executeBatchCrawl(String taskName, String keyword) {
+		crawlKeyword(taskName, keyword);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * 在当前线程同步执行单个关键词的批量爬取
+	 * @param taskName 任务名称
+	 * @param keyword 关键词
+	 * @return 流水线执行结果，流水线启动前失败时返回null
+	 */
+	public CrawlPipeline.PipelineResult crawlKeyword(String taskName, String keyword) {
 		log.info("开始执行批量爬取任务: taskName={}, keyword={}", taskName, keyword);
 
-		Long taskId = null;
+		Long taskId;
+		try {
+			// 创建任务记录
+			taskId = dataStorageService.createCrawlTask(taskName, keyword);
+		}
+		catch (Exception e) {
+			exceptionHandler.handleTaskException(e, "创建爬取任务失败: " + taskName);
+			crawlerStatusService.recordTaskFailure(taskName, e.getMessage());
+			return null;
+		}
+		return runTask(taskId, taskName, keyword, false);
+	}
+
+	/**
+	 * 在当前线程同步恢复一个中断或部分失败的任务 已完成详情的笔记不再重复获取，搜索阶段未完成时继续搜索
+	 * @param taskId 任务ID
+	 * @return 流水线执行结果，任务不存在或已成功完成时返回null
+	 */
+	public CrawlPipeline.PipelineResult resumeTask(Long taskId) {
+		CrawlTask task = dataStorageService.getCrawlTask(taskId);
+		if (task == null) {
+			log.warn("恢复任务失败，任务不存在: taskId={}", taskId);
+			return null;
+		}
+		if ("SUCCESS".equals(task.getStatus())) {
+			log.warn("任务已成功完成，无需恢复: taskId={}", taskId);
+			return null;
+		}
+
+		log.info("开始恢复批量爬取任务: taskId={}, taskName={}, keyword={}", taskId, task.getTaskName(), task.getKeyword());
+		return runTask(taskId, task.getTaskName(), task.getKeyword(), true);
+	}
+
+	/**
+	 * 执行任务 新任务和恢复的任务共用
+	 */
+	private CrawlPipeline.PipelineResult runTask(Long taskId, String taskName, String keyword, boolean resume) {
 		int totalNotes = 0;
 		int successNotes = 0;
 		int failedNotes = 0;
 		String errorMessage = null;
+		CrawlPipeline.PipelineResult result = null;
+		boolean checkpoint = crawlCheckpointService.isEnabled();
+		boolean timedOut = false;
+
+		// 任务截止时间随上下文传递到限流等待、并发许可等待和每个HTTP调用
+		CrawlContext context = CrawlContext.of(taskName)
+			.withTimeout(crawlerConfig.getSchedule().getTimeout() * 60_000L);
 
 		try {
-			// 创建任务记录
-			taskId = dataStorageService.createCrawlTask(taskName, keyword);
 			dataStorageService.startCrawlTask(taskId);
 
 			// 记录任务开始
 			crawlerStatusService.recordTaskStart(taskName, keyword);
 
-			// 使用边爬取边保存的方法
-			log.info("步骤1: 搜索笔记");
-			List<SearchItem> searchItems = searchNotes(keyword);
-			totalNotes = searchItems.size();
-
-			if (searchItems.isEmpty()) {
-				throw new RuntimeException("未搜索到任何笔记");
+			// 恢复任务时加载检查点
+			List<CrawlTaskItem> checkpointItems = resume && checkpoint ? crawlCheckpointService.findByTaskId(taskId)
+					: List.of();
+			boolean searchCompleted = resume && Boolean.TRUE.equals(dataStorageService.getCrawlTask(taskId).getSearchCompleted());
+			Set<String> checkpointed = ConcurrentHashMap.newKeySet();
+			checkpointItems.forEach(item -> checkpointed.add(item.getNoteId()));
+			AtomicInteger searchRequests = new AtomicInteger(0);
+
+			boolean enableUserInfo = crawlerConfig.isEnableUserInfo();
+			if (crawlWorkQueueService.isEnabled()) {
+				// 笔记详情和用户信息交给持久化工作队列，由所有节点的工作线程共同处理
+				result = runQueued(taskId, context, keyword, resume, checkpointItems, searchCompleted,
+						checkpointed, checkpoint, searchRequests);
 			}
-
-			// 去重处理
-			if (crawlerConfig.getStorage().isEnableDeduplication()) {
-				searchItems = deduplicateSearchItems(searchItems);
-				log.info("去重后笔记数量: {}", searchItems.size());
+			else {
+				// 搜索 → 笔记详情 → 用户信息 流水线执行，阶段之间不再互相等待
+				// 在途窗口同时受写入背压和内存压力限制
+				CrawlPipeline pipeline = new CrawlPipeline(context, crawlerConfig.getPipeline(),
+						crawlExecutorService,
+						concurrency -> memoryGovernorService.scaleWindow(writeBehindService.getWindow(concurrency)));
+				runningPipelines.put(taskName, pipeline);
+				try {
+					result = pipeline.run(sink -> {
+						if (resume) {
+							replayCheckpoint(checkpointItems, pipeline, sink, enableUserInfo);
+						}
+						if (!searchCompleted) {
+							// 新搜索到的笔记每页批量写检查点后再进入流水线
+							if (searchNotes(keyword, taskId, sink, checkpointRecorder(taskId, checkpoint, checkpointed),
+									checkpointed, searchRequests) && checkpoint) {
+								dataStorageService.markSearchCompleted(taskId);
+							}
+						}
+					}, item -> processCheckpointedNoteDetail(item, keyword, taskId, checkpoint),
+							enableUserInfo ? userId -> processCheckpointedUserInfo(userId, taskId, checkpoint) : null);
+				}
+				finally {
+					runningPipelines.remove(taskName);
+				}
 			}
 
-			// 设置taskId和keyword给每个SearchItem
-			for (SearchItem item : searchItems) {
-				item.setTaskId(taskId);
-				item.setKeyword(keyword);
+			if (checkpoint) {
+				// 笔记写入数据库后才会标记检查点，统计前先等待异步写入完成
+				if (!writeBehindService.awaitDrained(crawlerConfig.getWriteBehind().getShutdownTimeout())) {
+					log.warn("等待异步写入完成超时，检查点统计可能偏少: taskId={}", taskId);
+				}
+				// 以检查点统计为准，恢复的任务也能得到完整的计数
+				Map<TaskItemState, Integer> counts = crawlCheckpointService.countByState(taskId);
+				totalNotes = counts.values().stream().mapToInt(Integer::intValue).sum();
+				successNotes = counts.get(TaskItemState.DETAIL_DONE) + counts.get(TaskItemState.USER_DONE);
+			}
+			else {
+				totalNotes = result.getDiscovered();
+				successNotes = result.getDetailSuccess();
 			}
-
-			log.info("步骤2: 边爬取边保存笔记详情");
-			List<NoteCard> noteCards = processNoteDetailsWithSave(searchItems, keyword, taskId);
-			successNotes = noteCards.size();
 			failedNotes = totalNotes - successNotes;
 
-			// 步骤3: 批量获取用户信息（如果需要）
-			if (crawlerConfig.isEnableUserInfo()) {
-				log.info("步骤3: 获取用户信息");
-				processUserInfoWithSave(noteCards, taskId);
+			recordRefresh(keyword, result, searchRequests.get());
+
+			if (result.isTimedOut() || context.isExpired()) {
+				// 已完成的部分已经写入，任务标记为超时，之后可以恢复
+				throw new TaskTimeoutException(
+						String.format("任务执行超时: timeout=%d分钟", crawlerConfig.getSchedule().getTimeout()));
+			}
+
+			if (totalNotes == 0) {
+				throw new RuntimeException("未搜索到任何笔记");
 			}
 
 			log.info("批量爬取任务完成: taskName={}, total={}, success={}, failed={}", taskName, totalNotes, successNotes,
 					failedNotes);
 
 			// 记录任务完成
-			int userCount = crawlerConfig.isEnableUserInfo()
-					? noteCards.stream().mapToInt(note -> note.getUser() != null ? 1 : 0).sum() : 0;
-			crawlerStatusService.recordTaskComplete(taskName, successNotes, userCount, failedNotes);
+			crawlerStatusService.recordTaskComplete(taskName, successNotes, result.getUserSuccess(), failedNotes);
 
 		}
 		catch (Exception e) {
-			String context = String.format("批量爬取任务失败: taskName=%s, keyword=%s", taskName, keyword);
-			exceptionHandler.handleTaskException(e, context);
+			timedOut = e instanceof TaskTimeoutException;
+			String errorContext = String.format("批量爬取任务失败: taskName=%s, keyword=%s", taskName, keyword);
+			exceptionHandler.handleTaskException(e, errorContext);
 			errorMessage = e.getMessage();
 			failedNotes = totalNotes - successNotes;
 
@@ -111,389 +231,561 @@ public class BatchCrawlerService {
 			crawlerStatusService.recordTaskFailure(taskName, errorMessage);
 		}
 		finally {
-			if (taskId != null) {
+			if (timedOut) {
+				dataStorageService.timeoutCrawlTask(taskId, totalNotes, successNotes, failedNotes, errorMessage);
+			}
+			else {
 				dataStorageService.completeCrawlTask(taskId, totalNotes, successNotes, failedNotes, errorMessage);
 			}
 		}
 
-		return CompletableFuture.completedFuture(null);
+		return result;
 	}
 
 	/**
-	 * 搜索笔记
+	 * 以持久化工作队列方式执行任务 本线程只负责搜索并把笔记加入队列，然后等待队列中该任务的工作项全部结束
 	 */
-	private List<SearchItem> searchNotes(String keyword) {
-		List<SearchItem> allNotes = new ArrayList<>();
-		int maxPages = crawlerConfig.getMaxPages();
-		int maxNotesPerKeyword = crawlerConfig.getMaxNotesPerKeyword();
-
-		try {
-			for (int page = 1; page <= maxPages; page++) {
-				log.info("搜索第{}页，关键词: {}", page, keyword);
-
-				SearchResponse response = xhsCrawlerService.searchNotes(keyword, page,
-						SearchSortType.valueOf(crawlerConfig.getSortType()));
-
-				if (response == null || response.getData() == null || response.getData().getItems() == null
-						|| response.getData().getItems().isEmpty()) {
-					log.info("第{}页无更多数据，停止搜索", page);
-					break;
-				}
-
-				// 提取有效的笔记项（包含xsecToken和xsecSource）
-				List<SearchItem> pageNotes = xhsCrawlerService.extractValidNoteItems(response);
-
-				allNotes.addAll(pageNotes);
-				log.info("第{}页获取笔记数量: {}", page, pageNotes.size());
-
-				// 检查是否达到最大数量
-				if (allNotes.size() >= maxNotesPerKeyword) {
-					allNotes = allNotes.subList(0, maxNotesPerKeyword);
-					log.info("达到最大笔记数量限制: {}", maxNotesPerKeyword);
-					break;
+	private CrawlPipeline.PipelineResult runQueued(Long taskId, CrawlContext context, String keyword, boolean resume,
+			List<CrawlTaskItem> checkpointItems, boolean searchCompleted, Set<String> checkpointed, boolean checkpoint,
+			AtomicInteger searchRequests) throws InterruptedException {
+		long startedAt = System.currentTimeMillis();
+		boolean enableUserInfo = crawlerConfig.isEnableUserInfo();
+
+		try (CrawlContext.Scope ignored = CrawlContext.open(context)) {
+			if (resume) {
+				int requeued = crawlWorkQueueService.requeueFailed(taskId);
+				// 检查点中已记录但可能尚未入队的工作（入队前中断），重复的会被唯一约束忽略
+				for (CrawlTaskItem taskItem : checkpointItems) {
+					TaskItemState state = TaskItemState.valueOf(taskItem.getState());
+					if (state == TaskItemState.PENDING || state == TaskItemState.FAILED) {
+						crawlWorkQueueService.enqueueNoteDetail(taskId, crawlCheckpointService.toSearchItem(taskItem));
+					}
+					else if (state == TaskItemState.DETAIL_DONE && enableUserInfo) {
+						crawlWorkQueueService.enqueueUserInfo(taskId, taskItem.getUserId(), keyword);
+					}
 				}
+				log.info("恢复工作队列: taskId={}, requeued={}, checkpointItems={}", taskId, requeued,
+						checkpointItems.size());
+			}
 
-				// 页面间隔
-				if (page < maxPages) {
-					sleep(crawlerConfig.getRequestInterval());
+			if (!searchCompleted) {
+				CrawlPipeline.ItemSink queueSink = item -> crawlWorkQueueService.enqueueNoteDetail(taskId, item);
+				if (searchNotes(keyword, taskId, queueSink, checkpointRecorder(taskId, checkpoint, checkpointed),
+						checkpointed, searchRequests) && checkpoint) {
+					dataStorageService.markSearchCompleted(taskId);
 				}
 			}
 		}
-		catch (Exception e) {
-			log.error("搜索笔记失败: keyword={}", keyword, e);
+
+		// 等待所有节点处理完该任务的工作项
+		CrawlerConfig.WorkQueueConfig config = crawlerConfig.getWorkQueue();
+		boolean timedOut = false;
+		long open;
+		while ((open = crawlWorkQueueService.countOpen(taskId)) > 0) {
+			if (context.isExpired()) {
+				log.warn("等待工作队列超时，剩余工作项由工作线程继续处理: taskId={}, open={}", taskId, open);
+				timedOut = true;
+				break;
+			}
+			Thread.sleep(Math.min(config.getPollInterval(), Math.max(1, context.remainingMillis())));
 		}
 
-		return allNotes;
+		Map<WorkItemType, Map<WorkItemState, Integer>> counts = crawlWorkQueueService.countByTypeAndState(taskId);
+		Map<WorkItemState, Integer> notes = counts.get(WorkItemType.NOTE_DETAIL);
+		Map<WorkItemState, Integer> users = counts.get(WorkItemType.USER_INFO);
+		CrawlPipeline.PipelineResult result = new CrawlPipeline.PipelineResult();
+		result.setDiscovered(notes.values().stream().mapToInt(Integer::intValue).sum());
+		result.setDetailSuccess(notes.get(WorkItemState.DONE));
+		result.setDetailFailed(notes.get(WorkItemState.FAILED));
+		result.setUserSuccess(users.get(WorkItemState.DONE));
+		result.setUserFailed(users.get(WorkItemState.FAILED));
+		result.setFirstStoredLatencyMs(-1);
+		result.setElapsedMs(System.currentTimeMillis() - startedAt);
+		result.setTimedOut(timedOut);
+		return result;
 	}
 
 	/**
-	 * 去重处理 - 针对SearchItem
+	 * 记录本次执行的产出，用于自适应刷新调度 请求数为搜索翻页数加上笔记详情和用户信息的请求数
 	 */
-	private List<SearchItem> deduplicateSearchItems(List<SearchItem> searchItems) {
-		return searchItems.stream()
-			.filter(item -> item.getId() != null)
-			.filter(item -> !dataStorageService.isNoteExists(item.getId()))
-			.toList();
+	private void recordRefresh(String keyword, CrawlPipeline.PipelineResult result, int searchPages) {
+		if (result == null) {
+			return;
+		}
+		int detailRequests = crawlerConfig.isEnableNoteDetail() ? result.getDetailSuccess() + result.getDetailFailed()
+				: 0;
+		int requests = searchPages + detailRequests + result.getUserSuccess() + result.getUserFailed();
+		try {
+			keywordRefreshService.recordRun(keyword, requests, searchPages, result.getDiscovered());
+		}
+		catch (Exception e) {
+			log.warn("记录关键词刷新统计失败: keyword={}, error={}", keyword, e.getMessage());
+		}
 	}
 
 	/**
-	 * 睡眠等待
+	 * 处理一个从持久化工作队列领取的工作项 笔记详情成功后把作者加入用户信息工作项
+	 * @param workItem 工作项
+	 * @return 是否处理成功
 	 */
-	private void sleep(long milliseconds) {
-		try {
-			TimeUnit.MILLISECONDS.sleep(milliseconds);
+	public boolean processWorkItem(CrawlWorkItem workItem) {
+		boolean checkpoint = crawlCheckpointService.isEnabled();
+		Long taskId = workItem.getTaskId();
+
+		if (WorkItemType.valueOf(workItem.getWorkType()) == WorkItemType.USER_INFO) {
+			return processCheckpointedUserInfo(workItem.getItemKey(), taskId, checkpoint) != null;
 		}
-		catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			log.warn("睡眠被中断");
+
+		SearchItem item = crawlWorkQueueService.toSearchItem(workItem);
+		NoteCard noteCard = processCheckpointedNoteDetail(item, workItem.getKeyword(), taskId, checkpoint);
+		if (noteCard == null) {
+			return false;
 		}
+		String userId = noteCard.getUser() != null ? noteCard.getUser().getUserId() : null;
+		if (crawlerConfig.isEnableUserInfo() && userId != null) {
+			crawlWorkQueueService.enqueueUserInfo(taskId, userId, workItem.getKeyword());
+		}
+		return true;
 	}
 
 	/**
-	 * 异步保存笔记信息
+	 * 按页批量写检查点的回调 未启用检查点时返回null
 	 */
-	@Async
-	public CompletableFuture<Void> saveNoteAsync(NoteCard noteCard, String keyword, Long taskId) {
-		try {
-			dataStorageService.saveNoteInfos(List.of(noteCard), keyword, taskId);
-			log.debug("异步保存笔记成功: noteId={}", noteCard.getNoteId());
+	private Consumer<List<SearchItem>> checkpointRecorder(Long taskId, boolean checkpoint, Set<String> checkpointed) {
+		if (!checkpoint) {
+			return null;
 		}
-		catch (Exception e) {
-			log.error("异步保存笔记失败: noteId={}, error={}", noteCard.getNoteId(), e.getMessage());
+		return items -> crawlCheckpointService.recordDiscovered(taskId,
+				items.stream().filter(item -> checkpointed.add(item.getId())).toList());
+	}
+
+	/**
+	 * 把检查点中未完成的工作重新放入流水线 待处理/失败的笔记重新获取详情，已完成详情但未获取用户信息的笔记只补用户信息
+	 */
+	private void replayCheckpoint(List<CrawlTaskItem> checkpointItems, CrawlPipeline pipeline,
+			CrawlPipeline.ItemSink sink, boolean enableUserInfo) throws InterruptedException {
+		int replayedNotes = 0;
+		int replayedUsers = 0;
+		for (CrawlTaskItem taskItem : checkpointItems) {
+			TaskItemState state = TaskItemState.valueOf(taskItem.getState());
+			if (state == TaskItemState.PENDING || state == TaskItemState.FAILED) {
+				if (sink.emit(crawlCheckpointService.toSearchItem(taskItem))) {
+					replayedNotes++;
+				}
+			}
+			else if (state == TaskItemState.DETAIL_DONE && enableUserInfo && pipeline.emitUser(taskItem.getUserId())) {
+				replayedUsers++;
+			}
 		}
-		return CompletableFuture.completedFuture(null);
+		log.info("恢复检查点: total={}, replayedNotes={}, replayedUsers={}", checkpointItems.size(), replayedNotes,
+				replayedUsers);
 	}
 
 	/**
-	 * 异步保存用户信息
+	 * 获取笔记详情并更新检查点 笔记真正写入数据库后才标记详情完成，写入前进程中断时恢复任务会重新处理该笔记
 	 */
-	@Async
-	public CompletableFuture<Void> saveUserAsync(User user, Long taskId) {
+	private NoteCard processCheckpointedNoteDetail(SearchItem item, String keyword, Long taskId, boolean checkpoint) {
+		Consumer<NoteCard> onSaved = checkpoint ? saved -> markDetailDone(taskId, item.getId(), saved) : null;
+		NoteCard noteCard = processNoteDetailWithSave(item, keyword, taskId, onSaved);
+		if (checkpoint && noteCard == null) {
+			try {
+				crawlCheckpointService.markFailed(taskId, item.getId(), "获取笔记详情失败");
+			}
+			catch (Exception e) {
+				log.warn("更新检查点失败: taskId={}, noteId={}, error={}", taskId, item.getId(), e.getMessage());
+			}
+		}
+		return noteCard;
+	}
+
+	private void markDetailDone(Long taskId, String noteId, NoteCard noteCard) {
 		try {
-			dataStorageService.saveUserInfo(user, taskId);
-			log.debug("异步保存用户成功: userId={}", user.getUserId());
+			String userId = noteCard.getUser() != null ? noteCard.getUser().getUserId() : null;
+			crawlCheckpointService.markDetailDone(taskId, noteId, userId);
 		}
 		catch (Exception e) {
-			log.error("异步保存用户失败: userId={}, error={}", user.getUserId(), e.getMessage());
+			log.warn("更新检查点失败: taskId={}, noteId={}, error={}", taskId, noteId, e.getMessage());
 		}
-		return CompletableFuture.completedFuture(null);
 	}
 
 	/**
-	 * 处理爬虫异常，转换为具体的异常类型 使用统一的异常处理工具类
+	 * 获取用户信息并更新检查点
 	 */
-	private RuntimeException handleCrawlerException(Exception e, String context) {
-		exceptionHandler.handleTaskException(e, context);
-
-		String message = Optional.ofNullable(e.getMessage()).orElse(e.getClass().getSimpleName());
-
-		// 根据异常消息判断异常类型
-		if (message.contains("IP") || message.contains("blocked") || message.contains("封禁")) {
-			return new IpBlockedException(context + ": " + message, e);
-		}
-		else if (message.contains("rate limit") || message.contains("限流") || message.contains("too many requests")) {
-			return new RateLimitException(context + ": " + message, e);
-		}
-		else if (message.contains("login") || message.contains("登录") || message.contains("unauthorized")) {
-			return new LoginRequiredException(context + ": " + message, e);
-		}
-		else {
-			return new DataFetchException(context + ": " + message, e);
+	private User processCheckpointedUserInfo(String userId, Long taskId, boolean checkpoint) {
+		User user = processUserInfoWithSave(userId, taskId);
+		if (checkpoint && user != null) {
+			try {
+				crawlCheckpointService.markUserDone(taskId, userId);
+			}
+			catch (Exception e) {
+				log.warn("更新检查点失败: taskId={}, userId={}, error={}", taskId, userId, e.getMessage());
+			}
 		}
+		return user;
 	}
 
-	// ================== 新增的辅助方法 ==================
-
 	/**
-	 * 初始化任务
+	 * 获取正在执行的任务的实时进度
+	 * @param taskName 任务名称
+	 * @return 进度快照，任务未在执行时返回null
 	 */
-	private Long initializeTask(String taskName, String keyword) {
-		Long taskId = dataStorageService.createCrawlTask(taskName, keyword);
-		dataStorageService.startCrawlTask(taskId);
-		crawlerStatusService.recordTaskStart(taskName, keyword);
-		return taskId;
+	public CrawlPipeline.PipelineResult getRunningProgress(String taskName) {
+		CrawlPipeline pipeline = runningPipelines.get(taskName);
+		return pipeline != null ? pipeline.snapshot() : null;
 	}
 
 	/**
-	 * 搜索并准备搜索项
+	 * 搜索笔记，每获取一页就把笔记推送给流水线 同一关键词共用一个搜索会话，第一页确认有更多结果后并发预取后续页
+	 * <p>
+	 * 按最新排序搜索且启用水位线时，遇到上次已见过的笔记即停止翻页（增量爬取）
+	 * @param onPage 每页的新笔记推送前的回调（批量写检查点），可以为null
+	 * @param alreadyDiscovered 恢复任务时检查点中已有的笔记，计入数量上限且不再重复推送
+	 * @param searchRequests 累加本次发出的搜索请求数
+	 * @return 搜索是否正常结束（未因异常中止）
 	 */
-	private List<SearchItem> searchAndPrepareItems(String keyword, Long taskId) {
-		log.info("步骤1: 搜索笔记");
-		List<SearchItem> searchItems = searchNotes(keyword);
-
-		// 去重处理
-		if (crawlerConfig.getStorage().isEnableDeduplication()) {
-			searchItems = deduplicateSearchItems(searchItems);
-			log.info("去重后笔记数量: {}", searchItems.size());
+	private boolean searchNotes(String keyword, Long taskId, CrawlPipeline.ItemSink sink,
+			Consumer<List<SearchItem>> onPage, Set<String> alreadyDiscovered, AtomicInteger searchRequests)
+			throws InterruptedException {
+		int maxNotesPerKeyword = crawlerConfig.getMaxNotesPerKeyword();
+		boolean enableDeduplication = crawlerConfig.getStorage().isEnableDeduplication();
+		SearchSortType sortType = SearchSortType.valueOf(crawlerConfig.getSortType());
+		CrawlerConfig.WatermarkConfig watermarkConfig = crawlerConfig.getWatermark();
+		boolean incremental = watermarkConfig.isEnabled() && sortType == SearchSortType.TIME_DESCENDING;
+
+		Set<String> knownNoteIds = incremental ? keywordWatermarkService.getKnownNoteIds(keyword) : Set.of();
+		List<String> seenInOrder = new ArrayList<>();
+		int[] accepted = { alreadyDiscovered.size() };
+		int[] knownHits = { 0 };
+		boolean[] reachedKnown = { false };
+
+		// 已有水位线时大概率很快停止翻页，不做预取以免浪费请求
+		int fanOut = knownNoteIds.isEmpty() ? crawlerConfig.getPipeline().getSearchConcurrency() : 1;
+
+		if (accepted[0] >= maxNotesPerKeyword) {
+			log.info("检查点中已达到最大笔记数量限制: {}", maxNotesPerKeyword);
+			return true;
 		}
 
-		// 设置任务信息
-		searchItems.forEach(item -> {
-			item.setTaskId(taskId);
-			item.setKeyword(keyword);
-		});
+		// 启用自适应刷新时按关键词的产出决定翻页深度
+		int maxPages = keywordRefreshService.getMaxPages(keyword);
+
+		SearchSession session = xhsCrawlerService.openSearchSession(keyword, sortType);
+		try {
+			session.fetchPages(maxPages, fanOut, crawlExecutorService, pageResult -> {
+				List<SearchItem> fresh = new ArrayList<>();
+				boolean limitReached = false;
+				for (SearchItem item : pageResult.getItems()) {
+					seenInOrder.add(item.getId());
+
+					// 已在水位线内的笔记上次已经处理过
+					if (knownNoteIds.contains(item.getId())) {
+						if (++knownHits[0] >= watermarkConfig.getStopAfterKnown()) {
+							reachedKnown[0] = true;
+						}
+						continue;
+					}
+
+					// 去重处理
+					if (alreadyDiscovered.contains(item.getId())
+							|| enableDeduplication && dataStorageService.isNoteExists(item.getId())) {
+						continue;
+					}
+
+					item.setTaskId(taskId);
+					item.setKeyword(keyword);
+					fresh.add(item);
+
+					// 检查是否达到最大数量
+					if (accepted[0] + fresh.size() >= maxNotesPerKeyword) {
+						limitReached = true;
+						break;
+					}
+				}
 
-		return searchItems;
+				if (onPage != null && !fresh.isEmpty()) {
+					onPage.accept(fresh);
+				}
+				for (SearchItem item : fresh) {
+					if (sink.emit(item)) {
+						accepted[0]++;
+					}
+				}
+				if (limitReached) {
+					log.info("达到最大笔记数量限制: {}", maxNotesPerKeyword);
+					return false;
+				}
+				if (reachedKnown[0]) {
+					log.info("已到达上次的水位线，停止翻页: keyword={}, page={}", keyword, pageResult.getPage());
+					return false;
+				}
+				return true;
+			});
+			log.info("搜索完成: keyword={}, searchId={}, lastPage={}, hasMore={}, requestedPages={}, duplicates={}",
+					keyword, session.getSearchId(), session.getLastPage(), session.isHasMore(),
+					session.getRequestedPages(), session.getDuplicateItems());
+
+			// 只有衔接上原有水位线（或首次执行、结果已翻完）时才推进，避免中间留下未爬取的空洞
+			if (incremental && (reachedKnown[0] || knownNoteIds.isEmpty() || !session.isHasMore())) {
+				keywordWatermarkService.advance(keyword, seenInOrder, knownNoteIds, session.getLastPage(),
+						accepted[0]);
+			}
+			return true;
+		}
+		catch (InterruptedException e) {
+			throw e;
+		}
+		catch (TaskTimeoutException e) {
+			log.warn("搜索笔记超时，停止翻页: keyword={}", keyword);
+			return false;
+		}
+		catch (Exception e) {
+			log.error("搜索笔记失败: keyword={}", keyword, e);
+			return false;
+		}
+		finally {
+			searchRequests.addAndGet(session.getRequestedPages());
+		}
 	}
 
 	/**
-	 * 处理笔记详情（边爬取边保存）
+	 * 处理爬虫异常，转换为具体的异常类型 使用统一的异常处理工具类按失败类型归类
 	 */
-	private List<NoteCard> processNoteDetailsWithSave(List<SearchItem> searchItems, String keyword, Long taskId) {
-		log.info("步骤2: 边爬取边保存笔记详情");
+	private RuntimeException handleCrawlerException(Exception e, String context) {
+		exceptionHandler.handleTaskException(e, context);
+
+		// 客户端已经按状态码和接口code给出类型的异常直接抛出，保留Retry-After
+		if (e instanceof CrawlerException crawlerException && crawlerException.getErrorType() != ErrorType.UNKNOWN) {
+			return crawlerException;
+		}
 
-		return processBatch(searchItems, "笔记详情", item -> processNoteDetailWithSave(item, keyword, taskId));
+		String message = context + ": " + Optional.ofNullable(e.getMessage()).orElse(e.getClass().getSimpleName());
+		ErrorType errorType = exceptionHandler.classify(e);
+		return switch (errorType) {
+			case VERIFICATION, IP_BLOCKED -> new IpBlockedException(message, e);
+			case RATE_LIMITED -> new RateLimitException(message, e);
+			case LOGIN_REQUIRED -> new LoginRequiredException(message, e);
+			default -> new DataFetchException(message, errorType, exceptionHandler.getRetryAfterMs(e), e);
+		};
 	}
 
+	// ================== 新增的辅助方法 ==================
+
 	/**
-	 * 处理用户信息（边爬取边保存）
+	 * 处理单个笔记详情（边爬取边保存） 获取失败时先保存搜索结果中的基础信息，并记入延迟重试队列由后台补齐
+	 * @param onSaved 笔记写入数据库后的回调，获取详情失败时不执行，可以为null
+	 * @return 笔记卡片，获取详情失败时返回null
 	 */
-	private void processUserInfoWithSave(List<NoteCard> noteCards, Long taskId) {
-		log.info("步骤3: 获取用户信息（边爬取边保存）");
-
-		// 提取唯一的用户ID
-		List<String> userIds = extractUniqueUserIds(noteCards);
-		log.info("需要获取用户信息数量: {}", userIds.size());
+	private NoteCard processNoteDetailWithSave(SearchItem searchItem, String keyword, Long taskId,
+			Consumer<NoteCard> onSaved) {
+		if (!crawlerConfig.isEnableNoteDetail()) {
+			return saveBasicNoteCard(searchItem, keyword, taskId, onSaved);
+		}
 
-		processBatch(userIds, "用户信息", userId -> processUserInfoWithSave(userId, taskId));
+		// 近期反复失败或已删除的笔记不再请求详情
+		if (crawlRetryQueueService.isSuppressed(WorkItemType.NOTE_DETAIL, searchItem.getId())) {
+			return saveBasicNoteCard(searchItem, keyword, taskId, onSaved);
+		}
 
-		log.info("批量获取用户信息完成（边爬取边保存）");
+		return executeWithConcurrencyControl(searchItem.getId(),
+				() -> fetchNoteDetail(searchItem, keyword, taskId, onSaved), e -> {
+					if (crawlRetryQueueService.isEnabled() && searchItem.getId() != null) {
+						crawlRetryQueueService.deferNoteDetail(taskId, searchItem, classifyFailure(e),
+								failureMessage(e));
+					}
+					// 基础信息照常保存，但本次仍按失败处理
+					saveBasicNoteCard(searchItem, keyword, taskId, null);
+					return null;
+				});
 	}
 
 	/**
-	 * 通用批处理方法 - 减少重复代码
+	 * 获取笔记详情并提交保存
 	 */
-	private <T, R> List<R> processBatch(List<T> items, String batchType, Function<T, CompletableFuture<R>> processor) {
-		List<R> results = new ArrayList<>();
-		int batchSize = crawlerConfig.getConcurrency();
-
-		for (int i = 0; i < items.size(); i += batchSize) {
-			int endIndex = Math.min(i + batchSize, items.size());
-			List<T> batch = items.subList(i, endIndex);
-
-			log.info("处理{}批次: {}-{}/{}", batchType, i + 1, endIndex, items.size());
+	private NoteCard fetchNoteDetail(SearchItem searchItem, String keyword, Long taskId,
+			Consumer<NoteCard> onSaved) {
+		if (searchItem.getId() == null) {
+			return null;
+		}
 
-			// 并行处理当前批次
-			List<CompletableFuture<R>> futures = batch.stream().map(processor).toList();
+		// 获取笔记详情
+		String xsecSource = Optional.ofNullable(searchItem.getXsecSource()).orElse("pc_search");
+		String xsecToken = Optional.ofNullable(searchItem.getXsecToken()).orElse("");
 
-			// 等待当前批次完成
-			List<R> batchResults = futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+		Map<String, Object> noteDetailMap = fetchWithRetry(() -> {
+			try {
+				return xhsCrawlerService.getNoteDetail(searchItem.getId(), xsecSource, xsecToken);
+			}
+			catch (Exception e) {
+				throw handleCrawlerException(e, "获取笔记详情失败: " + searchItem.getId());
+			}
+		});
 
-			results.addAll(batchResults);
+		// 使用获取的详细数据更新NoteCard
+		NoteCard noteCard = searchItem.getNoteCard();
+		if (noteCard != null) {
+			// 确保NoteCard有正确的noteId
+			if (noteCard.getNoteId() == null && searchItem.getId() != null) {
+				noteCard.setNoteId(searchItem.getId());
+			}
 
-			// 批次间隔
-			if (endIndex < items.size()) {
-				sleep(crawlerConfig.getRequestInterval());
+			// 使用API返回的详细数据更新NoteCard
+			if (noteDetailMap != null && !noteDetailMap.isEmpty()) {
+				updateNoteCardWithDetailData(noteCard, noteDetailMap);
 			}
+
+			writeBehindService.submitNote(noteCard, keyword, taskId, toCallback(onSaved, noteCard));
 		}
 
-		log.info("批量获取{}完成（边爬取边保存）: success={}/{}", batchType, results.size(), items.size());
-		return results;
+		return noteCard;
 	}
 
 	/**
-	 * 处理单个笔记详情（边爬取边保存）
+	 * 保存搜索结果中的基础笔记信息（不获取详情或获取详情失败时使用）
 	 */
-	private CompletableFuture<NoteCard> processNoteDetailWithSave(SearchItem searchItem, String keyword, Long taskId) {
-		return CompletableFuture.supplyAsync(() -> {
-			return executeWithConcurrencyControl(searchItem.getId(), () -> {
-				if (searchItem.getId() == null) {
-					return null;
-				}
-
-				// 获取笔记详情
-				String xsecSource = Optional.ofNullable(searchItem.getXsecSource()).orElse("pc_search");
-				String xsecToken = Optional.ofNullable(searchItem.getXsecToken()).orElse("");
+	private NoteCard saveBasicNoteCard(SearchItem searchItem, String keyword, Long taskId,
+			Consumer<NoteCard> onSaved) {
+		NoteCard noteCard = searchItem.getNoteCard();
+		if (noteCard != null) {
+			// 确保NoteCard有正确的noteId
+			if (noteCard.getNoteId() == null && searchItem.getId() != null) {
+				noteCard.setNoteId(searchItem.getId());
+			}
+			writeBehindService.submitNote(noteCard, keyword, taskId, toCallback(onSaved, noteCard));
+		}
+		return noteCard;
+	}
 
-				Map<String, Object> noteDetailMap = retryTemplate.executeWithRetry(() -> {
-					try {
-						return xhsCrawlerService.getNoteDetail(searchItem.getId(), xsecSource, xsecToken);
-					}
-					catch (Exception e) {
-						throw handleCrawlerException(e, "获取笔记详情失败: " + searchItem.getId());
-					}
-				});
+	private Runnable toCallback(Consumer<NoteCard> onSaved, NoteCard noteCard) {
+		return onSaved != null ? () -> onSaved.accept(noteCard) : null;
+	}
 
-				// 使用获取的详细数据更新NoteCard
-				NoteCard noteCard = searchItem.getNoteCard();
-				if (noteCard != null) {
-					// 确保NoteCard有正确的noteId
-					if (noteCard.getNoteId() == null && searchItem.getId() != null) {
-						noteCard.setNoteId(searchItem.getId());
-					}
+	/**
+	 * 处理单个用户信息（边爬取边保存） 获取失败时记入延迟重试队列由后台补齐
+	 */
+	private User processUserInfoWithSave(String userId, Long taskId) {
+		if (crawlRetryQueueService.isSuppressed(WorkItemType.USER_INFO, userId)) {
+			return null;
+		}
+		return executeWithConcurrencyControl(userId, () -> fetchUserInfo(userId, taskId), e -> {
+			if (crawlRetryQueueService.isEnabled()) {
+				crawlRetryQueueService.deferUserInfo(taskId, userId, classifyFailure(e), failureMessage(e));
+			}
+			return null;
+		});
+	}
 
-					// 使用API返回的详细数据更新NoteCard
-					if (noteDetailMap != null && !noteDetailMap.isEmpty()) {
-						updateNoteCardWithDetailData(noteCard, noteDetailMap);
-					}
+	/**
+	 * 获取用户信息并提交保存
+	 * @return 用户信息，解析失败时返回null
+	 */
+	private User fetchUserInfo(String userId, Long taskId) {
+		Map<String, Object> userInfo = fetchWithRetry(() -> {
+			try {
+				return xhsCrawlerService.getUserInfo(userId);
+			}
+			catch (Exception e) {
+				throw handleCrawlerException(e, "获取用户信息失败: " + userId);
+			}
+		});
 
-					saveNoteAsync(noteCard, keyword, taskId);
-				}
+		// 将Map转换为User对象并提交异步写入
+		User user = convertMapToUser(userInfo, userId);
+		if (user != null) {
+			writeBehindService.submitUser(user, taskId);
+			return user;
+		}
 
-				return noteCard;
-			}, () -> {
-				// 失败时也尝试保存基础信息
-				NoteCard noteCard = searchItem.getNoteCard();
-				if (noteCard != null) {
-					// 确保NoteCard有正确的noteId
-					if (noteCard.getNoteId() == null && searchItem.getId() != null) {
-						noteCard.setNoteId(searchItem.getId());
-					}
-					saveNoteAsync(noteCard, keyword, taskId);
-				}
-				return noteCard;
-			});
-		});
+		return null;
 	}
 
 	/**
-	 * 处理单个用户信息（边爬取边保存）
+	 * 重试延迟重试队列中的一个条目 只请求一次，由调用方记录结果
+	 * @return 是否成功
+	 * @throws RuntimeException 请求失败
 	 */
-	private CompletableFuture<User> processUserInfoWithSave(String userId, Long taskId) {
-		return CompletableFuture.supplyAsync(() -> executeWithConcurrencyControl(userId, () -> {
-			Map<String, Object> userInfo = retryTemplate.executeWithRetry(() -> {
+	public boolean processRetryItem(CrawlRetryItem item) {
+		Long taskId = item.getTaskId();
+		if (WorkItemType.valueOf(item.getWorkType()) == WorkItemType.USER_INFO) {
+			User user = fetchUserInfo(item.getItemKey(), taskId);
+			if (user != null && taskId != null) {
 				try {
-					return xhsCrawlerService.getUserInfo(userId);
+					crawlCheckpointService.markUserDone(taskId, item.getItemKey());
 				}
 				catch (Exception e) {
-					throw handleCrawlerException(e, "获取用户信息失败: " + userId);
+					log.warn("更新检查点失败: taskId={}, userId={}, error={}", taskId, item.getItemKey(), e.getMessage());
 				}
-			});
-
-			// 将Map转换为User对象并立即异步保存
-			User user = convertMapToUser(userInfo, userId);
-			if (user != null) {
-				saveUserAsync(user, taskId);
-				return user;
 			}
-
-			return null;
-		}, () -> null));
+			return user != null;
+		}
+		Consumer<NoteCard> onSaved = taskId != null ? saved -> markDetailRecovered(taskId, item.getItemKey(), saved)
+				: null;
+		fetchNoteDetail(crawlRetryQueueService.toSearchItem(item), item.getKeyword(), taskId, onSaved);
+		return true;
 	}
 
 	/**
-	 * 通用的并发控制执行方法 - 减少重复代码
+	 * 延迟重试补齐的笔记写入后，把任务中失败的检查点改为完成，任务已结束时同步修正任务计数
 	 */
-	private <T> T executeWithConcurrencyControl(String identifier, java.util.function.Supplier<T> successAction,
-			java.util.function.Supplier<T> failureAction) {
-
-		// 获取并发许可证
-		if (!concurrencyControlService.acquirePermit(5000)) {
-			log.warn("获取并发许可证超时: {}", identifier);
-			concurrencyControlService.recordFailure();
-			return failureAction.get();
-		}
-
+	private void markDetailRecovered(Long taskId, String noteId, NoteCard noteCard) {
 		try {
-			T result = successAction.get();
-			concurrencyControlService.recordSuccess();
-			return result;
+			String userId = noteCard.getUser() != null ? noteCard.getUser().getUserId() : null;
+			if (crawlCheckpointService.markDetailRecovered(taskId, noteId, userId)) {
+				dataStorageService.recoverFailedNote(taskId);
+			}
 		}
 		catch (Exception e) {
-			concurrencyControlService.recordFailure();
-			log.warn("处理失败: identifier={}, error={}", identifier, e.getMessage());
-			return failureAction.get();
-		}
-		finally {
-			concurrencyControlService.releasePermit();
+			log.warn("更新检查点失败: taskId={}, noteId={}, error={}", taskId, noteId, e.getMessage());
 		}
 	}
 
 	/**
-	 * 检查响应是否为空
+	 * 启用延迟重试队列时只请求一次，失败的条目由后台重试，并发许可留给新的工作；否则按重试策略就地重试
 	 */
-	private boolean isEmptyResponse(SearchResponse response) {
-		return response == null || response.getData() == null || response.getData().getItems() == null
-				|| response.getData().getItems().isEmpty();
+	private <T> T fetchWithRetry(java.util.function.Supplier<T> operation) {
+		return crawlRetryQueueService.isEnabled() ? retryTemplate.executeOnce(operation)
+				: retryTemplate.executeWithRetry(operation);
 	}
 
 	/**
-	 * 提取唯一的用户ID
+	 * 失败类型 未获取到并发许可证（异常为null）视为限流
 	 */
-	private List<String> extractUniqueUserIds(List<NoteCard> noteCards) {
-		return noteCards.stream()
-			.map(NoteCard::getUser)
-			.filter(Objects::nonNull)
-			.map(User::getUserId)
-			.filter(Objects::nonNull)
-			.distinct()
-			.toList();
+	private ErrorType classifyFailure(Exception e) {
+		return e == null ? ErrorType.RATE_LIMITED : exceptionHandler.classify(e);
 	}
 
-	/**
-	 * 完成任务处理
-	 */
-	private void completeTask(String taskName, TaskMetrics metrics, List<NoteCard> noteCards) {
-		log.info("批量爬取任务完成: taskName={}, total={}, success={}, failed={}", taskName, metrics.totalNotes,
-				metrics.successNotes, metrics.failedNotes);
-
-		int userCount = crawlerConfig.isEnableUserInfo()
-				? (int) noteCards.stream().map(NoteCard::getUser).filter(Objects::nonNull).count() : 0;
-
-		crawlerStatusService.recordTaskComplete(taskName, metrics.successNotes, userCount, metrics.failedNotes);
+	private String failureMessage(Exception e) {
+		return e == null ? "获取并发许可证超时" : e.getMessage();
 	}
 
 	/**
-	 * 处理任务失败
+	 * 通用的并发控制执行方法 - 减少重复代码
+	 * @param failureAction 失败处理，参数为失败原因，未获取到并发许可证时为null
 	 */
-	private String handleTaskFailure(Exception e, String taskName, String keyword, TaskMetrics metrics) {
-		String context = String.format("批量爬取任务失败: taskName=%s, keyword=%s", taskName, keyword);
-		exceptionHandler.handleTaskException(e, context);
-
-		String errorMessage = e.getMessage();
-		metrics.failedNotes = metrics.totalNotes - metrics.successNotes;
+	private <T> T executeWithConcurrencyControl(String identifier, java.util.function.Supplier<T> successAction,
+			java.util.function.Function<Exception, T> failureAction) {
 
-		crawlerStatusService.recordTaskFailure(taskName, errorMessage);
-		return errorMessage;
-	}
+		// 获取并发许可证
+		AdaptiveLimiter.Permit permit = concurrencyControlService.acquirePermit(5000);
+		if (permit == null) {
+			log.warn("获取并发许可证超时: {}", identifier);
+			return failureAction.apply(null);
+		}
 
-	/**
-	 * 完成任务清理
-	 */
-	private void finalizeTask(Long taskId, TaskMetrics metrics, String errorMessage) {
-		if (taskId != null) {
-			dataStorageService.completeCrawlTask(taskId, metrics.totalNotes, metrics.successNotes, metrics.failedNotes,
-					errorMessage);
+		try {
+			T result = successAction.get();
+			permit.success();
+			return result;
+		}
+		catch (Exception e) {
+			// 只有过载类错误才收缩并发，404、解析失败等与服务端负载无关，由finally归还名额
+			if (exceptionHandler.classify(e).isOverload()) {
+				permit.dropped();
+			}
+			log.warn("处理失败: identifier={}, error={}", identifier, e.getMessage());
+			return failureAction.apply(e);
+		}
+		finally {
+			permit.release();
 		}
 	}
 
@@ -798,17 +1090,4 @@ public class BatchCrawlerService {
 		}
 	}
 
-	/**
-	 * 任务指标内部类
-	 */
-	private static class TaskMetrics {
-
-		int totalNotes = 0;
-
-		int successNotes = 0;
-
-		int failedNotes = 0;
-
-	}
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.exception.TaskTimeoutException;
+import com.libre.spider.limiter.AdaptiveLimiter;
+import com.libre.spider.limiter.CrawlContext;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 舱壁服务 按端点类别隔离在途请求，每个类别拥有独立的自适应并发限制、等待队列和等待超时
+ * <p>
+ * 用户主页等慢端点占满自己的并发后只会在自己的队列中排队，不影响搜索等其他端点
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkheadService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final Map<EndpointType, AdaptiveLimiter> bulkheads = new EnumMap<>(EndpointType.class);
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.BulkheadsConfig config = crawlerConfig.getBulkhead();
+		for (EndpointType endpointType : EndpointType.values()) {
+			CrawlerConfig.BulkheadConfig bulkheadConfig = config.getBulkhead(endpointType);
+			AdaptiveLimiter bulkhead = new AdaptiveLimiter(endpointType.name(), crawlerConfig.getConcurrencyLimit(),
+					Math.max(1, bulkheadConfig.getMaxConcurrent()), Math.max(0, bulkheadConfig.getMaxQueue()));
+			bulkhead.setReservedSlots(crawlerConfig.getPriority().getReservedSlots());
+			bulkheads.put(endpointType, bulkhead);
+			log.info("初始化舱壁: endpoint={}, maxConcurrent={}, maxQueue={}, timeout={}ms", endpointType,
+					bulkheadConfig.getMaxConcurrent(), bulkheadConfig.getMaxQueue(), bulkheadConfig.getTimeout());
+		}
+	}
+
+	/**
+	 * 是否启用
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getBulkhead().isEnabled();
+	}
+
+	/**
+	 * 获取指定端点类别的在途名额 等待时间不超过任务的剩余时间
+	 * @param endpointType 端点类别
+	 * @return 许可，未启用时返回null；请求结束后按结果调用success/dropped/release
+	 * @throws RateLimitException 等待队列已满或等待超时
+	 * @throws TaskTimeoutException 任务已超过截止时间
+	 */
+	public AdaptiveLimiter.Permit acquire(EndpointType endpointType) {
+		if (!isEnabled()) {
+			return null;
+		}
+		CrawlContext context = CrawlContext.current();
+		context.checkDeadline();
+		long timeout = Math.min(crawlerConfig.getBulkhead().getBulkhead(endpointType).getTimeout(),
+				context.remainingMillis());
+
+		try {
+			AdaptiveLimiter.Permit permit = bulkheads.get(endpointType)
+				.acquire(timeout, TimeUnit.MILLISECONDS, context.getPriority());
+			if (permit == null) {
+				context.checkDeadline();
+				throw new RateLimitException(
+						String.format("舱壁已满或等待超时: endpoint=%s, timeout=%dms", endpointType, timeout));
+			}
+			return permit;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RateLimitException("等待舱壁名额被中断: endpoint=" + endpointType, e);
+		}
+	}
+
+	/**
+	 * 按当前配置更新各舱壁的并发上限（运行时调整配置后调用）
+	 */
+	public void reconfigure() {
+		bulkheads.forEach((endpointType, bulkhead) -> bulkhead
+			.setMaxLimit(Math.max(1, crawlerConfig.getBulkhead().getBulkhead(endpointType).getMaxConcurrent())));
+	}
+
+	/**
+	 * 获取各端点类别的舱壁统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		bulkheads.forEach((endpointType, bulkhead) -> stats.put(endpointType.name(), bulkhead.getStats()));
+		return stats;
+	}
+
+}
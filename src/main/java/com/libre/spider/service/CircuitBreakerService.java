@@ -0,0 +1,199 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.CircuitState;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.exception.CircuitOpenException;
+import com.libre.spider.exception.TaskTimeoutException;
+import com.libre.spider.limiter.CircuitBreaker;
+import com.libre.spider.limiter.CrawlContext;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 熔断服务 按端点类别和登录会话分别维护熔断器，出现验证码/封禁响应（461/471）时打开
+ * <p>
+ * 熔断器打开期间请求线程在发送前等待冷却结束（不超过maxWait和任务剩余时间），避免继续发送请求加重封禁；
+ * 冷却结束后先放行少量探测请求，探测成功再恢复正常发送
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CircuitBreakerService {
+
+	/**
+	 * 半开状态探测名额已满时的轮询间隔
+	 */
+	private static final long PROBE_POLL_MS = 1000;
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final CookieService cookieService;
+
+	private final Map<EndpointType, CircuitBreaker> endpointBreakers = new EnumMap<>(EndpointType.class);
+
+	private final Map<String, CircuitBreaker> sessionBreakers = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.CircuitBreakerConfig config = crawlerConfig.getCircuitBreaker();
+		for (EndpointType endpointType : EndpointType.values()) {
+			endpointBreakers.put(endpointType, new CircuitBreaker(endpointType.name(), config));
+		}
+		log.info("初始化熔断器完成: enabled={}, cooldown={}ms, maxCooldown={}ms, halfOpenProbes={}", config.isEnabled(),
+				config.getCooldown(), config.getMaxCooldown(), config.getHalfOpenProbes());
+	}
+
+	/**
+	 * 是否启用
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getCircuitBreaker().isEnabled();
+	}
+
+	/**
+	 * 获取发送许可 端点或当前会话的熔断器打开时等待冷却结束
+	 * @param endpointType 端点类别
+	 * @return 许可，请求结束后按结果调用success/blocked/release
+	 * @throws CircuitOpenException 等待超过maxWait仍未恢复
+	 * @throws TaskTimeoutException 任务已超过截止时间
+	 */
+	public Pass acquire(EndpointType endpointType) {
+		if (!isEnabled()) {
+			return new Pass(null, null);
+		}
+		CircuitBreaker endpoint = endpointBreakers.get(endpointType);
+		CircuitBreaker session = currentSessionBreaker();
+		CrawlContext context = CrawlContext.current();
+		long deadline = System.currentTimeMillis()
+				+ Math.min(crawlerConfig.getCircuitBreaker().getMaxWait(), context.remainingMillis());
+
+		while (true) {
+			context.checkDeadline();
+			CircuitBreaker.Permission sessionPermission = session.tryAcquire();
+			if (sessionPermission != null) {
+				CircuitBreaker.Permission endpointPermission = endpoint.tryAcquire();
+				if (endpointPermission != null) {
+					return new Pass(endpointPermission, sessionPermission);
+				}
+				sessionPermission.release();
+			}
+
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				context.checkDeadline();
+				throw new CircuitOpenException(String.format("熔断器打开，暂停发送请求: endpoint=%s(%s), session=%s(%s)",
+						endpointType, endpoint.getState(), session.getName(), session.getState()));
+			}
+			long wait = Math.max(endpoint.getRetryAfterMillis(), session.getRetryAfterMillis());
+			try {
+				Thread.sleep(Math.max(1, Math.min(wait > 0 ? wait : PROBE_POLL_MS, remaining)));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CircuitOpenException("等待熔断器恢复被中断: endpoint=" + endpointType, e);
+			}
+		}
+	}
+
+	/**
+	 * 打开中的端点熔断器的最长剩余冷却时间
+	 * @return 毫秒，没有打开的熔断器时返回0
+	 */
+	public long getOpenRetryAfterMillis() {
+		if (!isEnabled()) {
+			return 0;
+		}
+		long retryAfter = 0;
+		for (CircuitBreaker breaker : endpointBreakers.values()) {
+			if (breaker.getState() == CircuitState.OPEN) {
+				retryAfter = Math.max(retryAfter, Math.max(1, breaker.getRetryAfterMillis()));
+			}
+		}
+		return retryAfter;
+	}
+
+	/**
+	 * 当前登录会话的熔断器 以web_session（未登录时以a1）区分会话，统计中只显示摘要
+	 */
+	private CircuitBreaker currentSessionBreaker() {
+		String session = cookieService.getWebSession();
+		if (session == null || session.isEmpty()) {
+			session = cookieService.getA1();
+		}
+		String key = session == null || session.isEmpty() ? "anonymous"
+				: "session-" + Integer.toHexString(session.hashCode());
+		return sessionBreakers.computeIfAbsent(key,
+				name -> new CircuitBreaker(name, crawlerConfig.getCircuitBreaker()));
+	}
+
+	/**
+	 * 获取熔断器状态
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		endpointBreakers.forEach((endpointType, breaker) -> endpoints.put(endpointType.name(), breaker.getStats()));
+		stats.put("endpoints", endpoints);
+		Map<String, Object> sessions = new LinkedHashMap<>();
+		sessionBreakers.forEach((key, breaker) -> sessions.put(key, breaker.getStats()));
+		stats.put("sessions", sessions);
+		return stats;
+	}
+
+	/**
+	 * 一次请求的发送许可，同时持有端点和会话两个熔断器的许可
+	 */
+	public static class Pass {
+
+		private final CircuitBreaker.Permission endpoint;
+
+		private final CircuitBreaker.Permission session;
+
+		private Pass(CircuitBreaker.Permission endpoint, CircuitBreaker.Permission session) {
+			this.endpoint = endpoint;
+			this.session = session;
+		}
+
+		/**
+		 * 请求未被拦截
+		 */
+		public void success() {
+			if (endpoint != null) {
+				endpoint.success();
+				session.success();
+			}
+		}
+
+		/**
+		 * 请求被验证码/封禁拦截，端点和会话的熔断器都打开
+		 * @param code 状态码
+		 */
+		public void blocked(int code) {
+			if (endpoint != null) {
+				endpoint.blocked(code);
+				session.blocked(code);
+			}
+		}
+
+		/**
+		 * 结果无法说明是否被拦截，只归还探测名额
+		 */
+		public void release() {
+			if (endpoint != null) {
+				endpoint.release();
+				session.release();
+			}
+		}
+
+	}
+
+}
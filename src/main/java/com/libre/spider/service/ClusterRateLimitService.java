@@ -0,0 +1,312 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.RateLimitBucket;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.mapper.RateLimitBucketMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 集群限流服务 多个节点通过数据库中的令牌桶共享每个端点类别的请求配额，整个集群的请求速率不随节点数增长
+ * <p>
+ * 节点不为每个请求访问数据库，而是一次租用leaseSize个令牌在本地使用，用完或过期后再租下一批；
+ * 令牌桶按"上次补充时间+剩余令牌数"存储，租用时在同一条条件更新中按经过的时间补充并扣减，
+ * 可用令牌不足时不更新，因此多个节点不会重复租用同一批令牌。补充时间和经过的时间都按数据库时钟计算，与各节点的本地时钟无关
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterRateLimitService extends BaseDataService<RateLimitBucket, RateLimitBucketMapper> {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final Map<EndpointType, LocalLease> leases = new EnumMap<>(EndpointType.class);
+
+	@Override
+	protected String getEntityName() {
+		return "集群限流令牌桶";
+	}
+
+	@Override
+	protected Object getId(RateLimitBucket entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(RateLimitBucket entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(RateLimitBucket entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(RateLimitBucket entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	@PostConstruct
+	public void init() {
+		for (EndpointType endpointType : EndpointType.values()) {
+			leases.put(endpointType, new LocalLease(endpointType));
+		}
+		CrawlerConfig.ClusterRateLimitConfig config = crawlerConfig.getClusterRateLimit();
+		if (config.isEnabled()) {
+			log.info("初始化集群限流服务完成: leaseSize={}, leaseTtl={}ms", config.getLeaseSize(), config.getLeaseTtl());
+		}
+	}
+
+	/**
+	 * 是否启用集群限流
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getClusterRateLimit().isEnabled();
+	}
+
+	/**
+	 * 获取一个集群令牌 本节点租用的令牌用完时从数据库租用一批，集群配额不足时等待到下一个令牌生成
+	 * @param endpointType 端点类别
+	 * @param timeoutMs 最长等待时间（毫秒）
+	 * @return 是否获得，未启用时总是成功
+	 */
+	public boolean acquire(EndpointType endpointType, long timeoutMs) throws InterruptedException {
+		if (!isEnabled()) {
+			return true;
+		}
+		LocalLease lease = leases.get(endpointType);
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (true) {
+			long waitMs = lease.take();
+			if (waitMs <= 0) {
+				return true;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			Thread.sleep(Math.min(waitMs, remaining));
+		}
+	}
+
+	/**
+	 * 从数据库租用令牌
+	 * @return 租用结果，没有令牌时包含到下一个令牌生成的等待时间
+	 */
+	private Grant lease(EndpointType endpointType, LocalLease lease) {
+		CrawlerConfig.ClusterRateLimitConfig config = crawlerConfig.getClusterRateLimit();
+		CrawlerConfig.BucketConfig bucketConfig = crawlerConfig.getRateLimit().getBucket(endpointType);
+		long interval = resolveInterval(endpointType);
+		// 容量即突发上限，一次租用的数量不超过容量，不能借租用放大集群的突发量
+		int capacity = Math.max(1, bucketConfig.getBurst());
+		int leaseSize = Math.min(Math.max(1, config.getLeaseSize()), capacity);
+
+		String key = endpointType.name();
+		ensureExists(key, capacity, interval);
+		for (int attempt = 0; attempt <= config.getMaxConflictRetries(); attempt++) {
+			Double available = mapper.selectAvailable(key, capacity, interval);
+			double tokens = available != null ? available : 0;
+			int granted = (int) Math.min(leaseSize, Math.floor(tokens));
+			if (granted == 0) {
+				return new Grant(0, (long) Math.ceil((1 - tokens) * interval));
+			}
+			if (mapper.grant(key, capacity, interval, granted) > 0) {
+				return new Grant(granted, 0);
+			}
+			// 其他节点同时租用，重新计算后再试
+			lease.conflicts++;
+		}
+		return new Grant(0, ThreadLocalRandom.current().nextLong(10, 100));
+	}
+
+	private long resolveInterval(EndpointType endpointType) {
+		long interval = crawlerConfig.getRateLimit().getBucket(endpointType).getInterval();
+		return Math.max(1, interval > 0 ? interval : crawlerConfig.getRequestInterval());
+	}
+
+	private void ensureExists(String key, int capacity, long interval) {
+		LambdaQueryWrapper<RateLimitBucket> query = new LambdaQueryWrapper<>();
+		query.eq(RateLimitBucket::getBucketKey, key);
+		if (mapper.selectCount(query) > 0) {
+			return;
+		}
+		RateLimitBucket bucket = new RateLimitBucket();
+		bucket.setBucketKey(key);
+		bucket.setTokens((double) capacity);
+		bucket.setCapacity(capacity);
+		bucket.setIntervalMs(interval);
+		bucket.setRefillAt(mapper.selectNowMillis());
+		bucket.setVersion(0L);
+		setCreateTime(bucket);
+		setUpdateTime(bucket);
+		try {
+			mapper.insert(bucket);
+		}
+		catch (DuplicateKeyException e) {
+			// 其他节点同时创建，忽略
+		}
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		CrawlerConfig.ClusterRateLimitConfig config = crawlerConfig.getClusterRateLimit();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", config.isEnabled());
+		stats.put("leaseSize", config.getLeaseSize());
+		stats.put("leaseTtl", config.getLeaseTtl());
+		leases.forEach((endpointType, lease) -> stats.put(endpointType.name(), lease.getStats()));
+		return stats;
+	}
+
+	/**
+	 * 关闭时把未用完且未过期的令牌还回数据库，供其他节点使用
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (!isEnabled()) {
+			return;
+		}
+		for (LocalLease lease : leases.values()) {
+			int unused = lease.drain();
+			if (unused <= 0) {
+				continue;
+			}
+			try {
+				LambdaUpdateWrapper<RateLimitBucket> wrapper = new LambdaUpdateWrapper<>();
+				wrapper.eq(RateLimitBucket::getBucketKey, lease.endpointType.name())
+					.setSql("tokens = LEAST(capacity, tokens + " + unused + ")")
+					.setSql("version = version + 1")
+					.set(RateLimitBucket::getUpdateTime, LocalDateTime.now());
+				mapper.update(wrapper);
+			}
+			catch (Exception e) {
+				log.warn("归还集群限流令牌失败: endpoint={}, tokens={}, error={}", lease.endpointType, unused,
+						e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 租用结果
+	 * @param tokens 租到的令牌数
+	 * @param waitMs 没有租到时建议的等待时间（毫秒）
+	 */
+	private record Grant(int tokens, long waitMs) {
+	}
+
+	/**
+	 * 本节点从某个端点类别租用的令牌 同一时间只有一个线程访问数据库，其他线程等待其租用结果
+	 */
+	private class LocalLease {
+
+		private final EndpointType endpointType;
+
+		private int tokens;
+
+		private long expiresAt;
+
+		private long leases;
+
+		private long leasedTokens;
+
+		private long used;
+
+		private long expired;
+
+		private long conflicts;
+
+		private long waits;
+
+		private long dbErrors;
+
+		private long bypassed;
+
+		LocalLease(EndpointType endpointType) {
+			this.endpointType = endpointType;
+		}
+
+		/**
+		 * 取一个令牌
+		 * @return 0表示已取得，否则为建议的等待时间（毫秒）
+		 */
+		synchronized long take() {
+			long now = System.currentTimeMillis();
+			if (tokens > 0 && now >= expiresAt) {
+				expired += tokens;
+				tokens = 0;
+			}
+			if (tokens > 0) {
+				tokens--;
+				used++;
+				return 0;
+			}
+
+			Grant grant;
+			try {
+				grant = lease(endpointType, this);
+			}
+			catch (Exception e) {
+				dbErrors++;
+				if (crawlerConfig.getClusterRateLimit().isFailOpen()) {
+					bypassed++;
+					log.warn("租用集群限流令牌失败，仅按本节点限流: endpoint={}, error={}", endpointType, e.getMessage());
+					return 0;
+				}
+				log.warn("租用集群限流令牌失败: endpoint={}, error={}", endpointType, e.getMessage());
+				waits++;
+				return resolveInterval(endpointType);
+			}
+			if (grant.tokens() <= 0) {
+				waits++;
+				return Math.max(1, grant.waitMs());
+			}
+			leases++;
+			leasedTokens += grant.tokens();
+			tokens = grant.tokens() - 1;
+			expiresAt = now + crawlerConfig.getClusterRateLimit().getLeaseTtl();
+			used++;
+			return 0;
+		}
+
+		/**
+		 * 取出全部未过期的令牌
+		 */
+		synchronized int drain() {
+			int unused = System.currentTimeMillis() < expiresAt ? tokens : 0;
+			tokens = 0;
+			return unused;
+		}
+
+		synchronized Map<String, Object> getStats() {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("localTokens", System.currentTimeMillis() < expiresAt ? tokens : 0);
+			stats.put("leases", leases);
+			stats.put("leasedTokens", leasedTokens);
+			stats.put("used", used);
+			stats.put("expired", expired);
+			stats.put("conflicts", conflicts);
+			stats.put("waits", waits);
+			stats.put("dbErrors", dbErrors);
+			stats.put("bypassed", bypassed);
+			return stats;
+		}
+
+	}
+
+}
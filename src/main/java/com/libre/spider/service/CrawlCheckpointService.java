@@ -0,0 +1,212 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlTaskItem;
+import com.libre.spider.enums.TaskItemState;
+import com.libre.spider.mapper.CrawlTaskItemMapper;
+import com.libre.spider.model.NoteCard;
+import com.libre.spider.model.SearchItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务检查点数据服务 记录任务搜索到的笔记（含xsec令牌）及每个笔记的处理状态，进程中断后可据此恢复任务
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlCheckpointService extends BaseDataService<CrawlTaskItem, CrawlTaskItemMapper> {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ObjectMapper objectMapper;
+
+	@Override
+	protected String getEntityName() {
+		return "任务检查点";
+	}
+
+	@Override
+	protected Object getId(CrawlTaskItem entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(CrawlTaskItem entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(CrawlTaskItem entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(CrawlTaskItem entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 是否启用检查点
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getCheckpoint().isEnabled();
+	}
+
+	/**
+	 * 批量记录搜索到的笔记 每页一次插入
+	 * @param taskId 任务ID
+	 * @param items 搜索结果项
+	 */
+	public void recordDiscovered(Long taskId, List<SearchItem> items) {
+		if (items.isEmpty()) {
+			return;
+		}
+		List<CrawlTaskItem> taskItems = new ArrayList<>(items.size());
+		for (SearchItem item : items) {
+			taskItems.add(toTaskItem(taskId, item));
+		}
+		mapper.insert(taskItems);
+	}
+
+	private CrawlTaskItem toTaskItem(Long taskId, SearchItem item) {
+		CrawlTaskItem taskItem = new CrawlTaskItem();
+		taskItem.setTaskId(taskId);
+		taskItem.setNoteId(item.getId());
+		taskItem.setKeyword(item.getKeyword());
+		taskItem.setXsecToken(item.getXsecToken());
+		taskItem.setXsecSource(item.getXsecSource());
+		taskItem.setState(TaskItemState.PENDING.name());
+		if (item.getNoteCard() != null) {
+			if (item.getNoteCard().getUser() != null) {
+				taskItem.setUserId(item.getNoteCard().getUser().getUserId());
+			}
+			try {
+				taskItem.setNoteCard(objectMapper.writeValueAsString(item.getNoteCard()));
+			}
+			catch (Exception e) {
+				log.warn("序列化笔记卡片失败: noteId={}, error={}", item.getId(), e.getMessage());
+			}
+		}
+		setCreateTime(taskItem);
+		setUpdateTime(taskItem);
+		return taskItem;
+	}
+
+	/**
+	 * 标记笔记详情已完成
+	 * @param userId 作者用户ID（详情中可能比搜索结果更准确）
+	 */
+	public void markDetailDone(Long taskId, String noteId, String userId) {
+		LambdaUpdateWrapper<CrawlTaskItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlTaskItem::getTaskId, taskId)
+			.eq(CrawlTaskItem::getNoteId, noteId)
+			.set(CrawlTaskItem::getState, TaskItemState.DETAIL_DONE.name())
+			.set(userId != null, CrawlTaskItem::getUserId, userId)
+			.set(CrawlTaskItem::getUpdateTime, LocalDateTime.now());
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 标记失败后由延迟重试补齐的笔记详情已完成
+	 * @return 检查点是否由失败转为完成，条目不存在或已是其他状态时返回false
+	 */
+	public boolean markDetailRecovered(Long taskId, String noteId, String userId) {
+		LambdaUpdateWrapper<CrawlTaskItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlTaskItem::getTaskId, taskId)
+			.eq(CrawlTaskItem::getNoteId, noteId)
+			.eq(CrawlTaskItem::getState, TaskItemState.FAILED.name())
+			.set(CrawlTaskItem::getState, TaskItemState.DETAIL_DONE.name())
+			.set(userId != null, CrawlTaskItem::getUserId, userId)
+			.set(CrawlTaskItem::getErrorMessage, null)
+			.set(CrawlTaskItem::getUpdateTime, LocalDateTime.now());
+		return mapper.update(wrapper) > 0;
+	}
+
+	/**
+	 * 标记笔记处理失败
+	 */
+	public void markFailed(Long taskId, String noteId, String errorMessage) {
+		LambdaUpdateWrapper<CrawlTaskItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlTaskItem::getTaskId, taskId)
+			.eq(CrawlTaskItem::getNoteId, noteId)
+			.set(CrawlTaskItem::getState, TaskItemState.FAILED.name())
+			.set(CrawlTaskItem::getErrorMessage, errorMessage)
+			.set(CrawlTaskItem::getUpdateTime, LocalDateTime.now());
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 标记该任务中此用户的所有笔记的用户信息已完成
+	 */
+	public void markUserDone(Long taskId, String userId) {
+		LambdaUpdateWrapper<CrawlTaskItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlTaskItem::getTaskId, taskId)
+			.eq(CrawlTaskItem::getUserId, userId)
+			.eq(CrawlTaskItem::getState, TaskItemState.DETAIL_DONE.name())
+			.set(CrawlTaskItem::getState, TaskItemState.USER_DONE.name())
+			.set(CrawlTaskItem::getUpdateTime, LocalDateTime.now());
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 查询任务的所有检查点明细
+	 */
+	public List<CrawlTaskItem> findByTaskId(Long taskId) {
+		LambdaQueryWrapper<CrawlTaskItem> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(CrawlTaskItem::getTaskId, taskId).orderByAsc(CrawlTaskItem::getId);
+		return findList(wrapper);
+	}
+
+	/**
+	 * 按状态统计任务的检查点明细数量
+	 */
+	public Map<TaskItemState, Integer> countByState(Long taskId) {
+		Map<TaskItemState, Integer> counts = new EnumMap<>(TaskItemState.class);
+		for (TaskItemState state : TaskItemState.values()) {
+			counts.put(state, 0);
+		}
+		// 只在数据库中按状态分组计数，不读取明细（含笔记卡片JSON）
+		QueryWrapper<CrawlTaskItem> wrapper = new QueryWrapper<>();
+		wrapper.select("state", "COUNT(*) AS total").eq("task_id", taskId).groupBy("state");
+		for (Map<String, Object> row : mapper.selectMaps(wrapper)) {
+			counts.put(TaskItemState.valueOf(String.valueOf(row.get("state"))),
+					((Number) row.get("total")).intValue());
+		}
+		return counts;
+	}
+
+	/**
+	 * 把检查点明细还原为搜索结果项
+	 */
+	public SearchItem toSearchItem(CrawlTaskItem taskItem) {
+		SearchItem item = new SearchItem();
+		item.setId(taskItem.getNoteId());
+		item.setModelType("note");
+		item.setXsecToken(taskItem.getXsecToken());
+		item.setXsecSource(taskItem.getXsecSource());
+		item.setTaskId(taskItem.getTaskId());
+		item.setKeyword(taskItem.getKeyword());
+		if (taskItem.getNoteCard() != null) {
+			try {
+				item.setNoteCard(objectMapper.readValue(taskItem.getNoteCard(), NoteCard.class));
+			}
+			catch (Exception e) {
+				log.warn("解析笔记卡片失败: noteId={}, error={}", taskItem.getNoteId(), e.getMessage());
+			}
+		}
+		return item;
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 爬取I/O线程池 流水线工作线程及所有扇出的阻塞请求都在这里执行，避免占用ForkJoinPool.commonPool
+ * <p>
+ * 运行在支持虚拟线程的JDK上时每个任务使用一个虚拟线程，否则使用有界的弹性线程池（空闲线程会被回收）。
+ * 流水线各阶段的工作线程会长时间阻塞，有界线程池的大小至少为"并行关键词数×每条流水线的阶段线程数"，
+ * 避免阶段线程排在队列中等待导致流水线停滞。关键词调度器的工作线程使用单独的线程池，不与流水线争用
+ * <p>
+ * 注意：该类只实现{@link Executor}而不是TaskExecutor，避免影响@Async默认线程池的解析
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlExecutorService implements Executor {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final AtomicInteger queued = new AtomicInteger(0);
+
+	private final AtomicInteger active = new AtomicInteger(0);
+
+	private final AtomicLong completed = new AtomicLong(0);
+
+	private final AtomicLong rejected = new AtomicLong(0);
+
+	private ExecutorService delegate;
+
+	/**
+	 * 关键词调度器工作线程使用的线程池 线程数由调度器按并行关键词数限制
+	 */
+	private ExecutorService workerDelegate;
+
+	private boolean virtualThreads;
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.ExecutorConfig config = crawlerConfig.getExecutor();
+		if (config.isVirtualThreads()) {
+			delegate = newVirtualThreadExecutor();
+			virtualThreads = delegate != null;
+		}
+		if (delegate == null) {
+			delegate = newElasticExecutor(config);
+		}
+		CustomizableThreadFactory workerThreadFactory = new CustomizableThreadFactory("keyword-worker-");
+		workerDelegate = Executors.newCachedThreadPool(workerThreadFactory);
+		log.info("初始化爬取I/O线程池完成: virtualThreads={}, maxThreads={}, queueCapacity={}", virtualThreads,
+				resolveMaxThreads(config), config.getQueueCapacity());
+	}
+
+	/**
+	 * 有界线程池的线程数 不小于所有并行关键词的流水线阶段线程数之和
+	 */
+	private int resolveMaxThreads(CrawlerConfig.ExecutorConfig config) {
+		CrawlerConfig.PipelineConfig pipeline = crawlerConfig.getPipeline();
+		int perPipeline = Math.max(1, pipeline.getDetailConcurrency()) + Math.max(1, pipeline.getUserConcurrency())
+				+ Math.max(1, pipeline.getSearchConcurrency());
+		int required = Math.max(1, crawlerConfig.getSchedule().getParallelKeywords()) * perPipeline;
+		return Math.max(Math.max(1, config.getMaxThreads()), required);
+	}
+
+	/**
+	 * 通过反射创建虚拟线程执行器，JDK不支持时返回null
+	 */
+	private ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			log.info("当前JDK不支持虚拟线程，使用弹性线程池: {}", Runtime.version());
+			return null;
+		}
+	}
+
+	private ExecutorService newElasticExecutor(CrawlerConfig.ExecutorConfig config) {
+		int maxThreads = resolveMaxThreads(config);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, config.getKeepAliveSeconds(),
+				TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+				new CustomizableThreadFactory("crawl-io-"), new ThreadPoolExecutor.AbortPolicy());
+		// 核心线程空闲后也回收，线程数随负载伸缩
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * 提交任务，线程池已满时抛出RejectedExecutionException
+	 */
+	@Override
+	public void execute(Runnable command) {
+		queued.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				queued.decrementAndGet();
+				active.incrementAndGet();
+				try {
+					command.run();
+				}
+				finally {
+					active.decrementAndGet();
+					completed.incrementAndGet();
+				}
+			});
+		}
+		catch (RuntimeException e) {
+			queued.decrementAndGet();
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * 启动关键词调度器的工作线程 使用单独的线程池，流水线占满I/O线程池时仍能启动
+	 */
+	public void executeWorker(Runnable command) {
+		workerDelegate.execute(command);
+	}
+
+	/**
+	 * 等待执行的任务数
+	 */
+	public int getQueued() {
+		return queued.get();
+	}
+
+	/**
+	 * 正在执行的任务数
+	 */
+	public int getActive() {
+		return active.get();
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("virtualThreads", virtualThreads);
+		stats.put("queued", queued.get());
+		stats.put("active", active.get());
+		stats.put("completed", completed.get());
+		stats.put("rejected", rejected.get());
+		if (delegate instanceof ThreadPoolExecutor pool) {
+			stats.put("poolSize", pool.getPoolSize());
+			stats.put("maxThreads", pool.getMaximumPoolSize());
+		}
+		return stats;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("关闭爬取I/O线程池: active={}, queued={}", active.get(), queued.get());
+		workerDelegate.shutdownNow();
+		delegate.shutdownNow();
+	}
+
+}
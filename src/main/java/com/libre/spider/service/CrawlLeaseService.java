@@ -0,0 +1,377 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlLease;
+import com.libre.spider.mapper.CrawlLeaseMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 节点租约服务 多个爬虫节点共用一个数据库时，每个关键词同一时间只租给一个节点
+ * <p>
+ * 节点通过独立的心跳线程续约自己持有的租约，并以node:前缀的租约登记自身存活；
+ * 节点宕机后租约过期，其他节点在心跳时发现并接管。定时任务按存活节点数计算每个节点应领取的关键词份额，使关键词在节点之间均匀分配。
+ * 关键词执行完成后租约保持到本调度周期结束，触发时间稍晚的节点不会在同一周期内重复执行。
+ * 过期时间均按数据库时钟计算和比较，节点之间的时钟偏差不会导致提前接管或重复持有
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlLeaseService extends BaseDataService<CrawlLease, CrawlLeaseMapper> {
+
+	private static final String KEYWORD_PREFIX = "keyword:";
+
+	private static final String NODE_PREFIX = "node:";
+
+	private static final String STATE_HELD = "HELD";
+
+	private static final String STATE_DONE = "DONE";
+
+	private static final String STATE_RELEASED = "RELEASED";
+
+	private final CrawlerConfig crawlerConfig;
+
+	/**
+	 * 本节点持有的关键词租约
+	 */
+	private final Set<String> heldKeys = ConcurrentHashMap.newKeySet();
+
+	private volatile Consumer<String> takeoverHandler;
+
+	private ScheduledExecutorService heartbeatExecutor;
+
+	private String nodeId;
+
+	@Override
+	protected String getEntityName() {
+		return "节点租约";
+	}
+
+	@Override
+	protected Object getId(CrawlLease entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(CrawlLease entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(CrawlLease entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(CrawlLease entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.LeaseConfig config = crawlerConfig.getLease();
+		nodeId = StringUtils.hasText(config.getNodeId()) ? config.getNodeId()
+				: ManagementFactory.getRuntimeMXBean().getName();
+		if (!config.isEnabled()) {
+			return;
+		}
+
+		// 使用独立线程心跳，避免被长时间执行的定时任务阻塞导致租约过期
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lease-heartbeat-");
+		threadFactory.setDaemon(true);
+		heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, config.getHeartbeatInterval(),
+				TimeUnit.MILLISECONDS);
+		log.info("初始化节点租约服务完成: nodeId={}, ttl={}ms, heartbeatInterval={}ms", nodeId, config.getTtl(),
+				config.getHeartbeatInterval());
+	}
+
+	/**
+	 * 是否启用节点租约
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getLease().isEnabled();
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * 注册租约过期的处理器 心跳发现其他节点的关键词租约过期时回调，参数为关键词
+	 */
+	public void onExpired(Consumer<String> handler) {
+		this.takeoverHandler = handler;
+	}
+
+	/**
+	 * 获取关键词租约 未启用租约时总是成功
+	 * @return 是否获得（本节点已持有时视为获得）
+	 */
+	public boolean acquireKeyword(String keyword) {
+		if (!isEnabled()) {
+			return true;
+		}
+		String key = KEYWORD_PREFIX + keyword;
+		if (tryAcquire(key)) {
+			heldKeys.add(key);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 释放关键词租约 本节点未持有时忽略
+	 */
+	public void releaseKeyword(String keyword) {
+		if (!isEnabled()) {
+			return;
+		}
+		String key = KEYWORD_PREFIX + keyword;
+		if (heldKeys.remove(key)) {
+			release(key);
+		}
+	}
+
+	/**
+	 * 关键词本周期已执行完成 租约保持holdMillis，到期前包括本节点在内的所有节点都不会再次获得该关键词；
+	 * holdMillis不大于0时直接释放。本节点未持有时忽略
+	 * @param keyword 关键词
+	 * @param holdMillis 保持时间（毫秒），一般为到下一调度周期开始的时间
+	 */
+	public void completeKeyword(String keyword, long holdMillis) {
+		if (!isEnabled()) {
+			return;
+		}
+		String key = KEYWORD_PREFIX + keyword;
+		if (!heldKeys.remove(key)) {
+			return;
+		}
+		if (holdMillis <= 0) {
+			release(key);
+			return;
+		}
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlLease> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlLease::getLeaseKey, key)
+			.eq(CrawlLease::getOwner, nodeId)
+			.set(CrawlLease::getState, STATE_DONE)
+			.set(CrawlLease::getExpiresAt, now.plus(holdMillis, ChronoUnit.MILLIS))
+			.set(CrawlLease::getUpdateTime, now);
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 从关键词列表中领取本节点的份额 份额为关键词数除以存活节点数（向上取整），已被其他节点持有的关键词跳过
+	 * @param keywords 关键词列表
+	 * @return 本节点获得租约的关键词
+	 */
+	public List<String> acquireShare(List<String> keywords) {
+		if (!isEnabled()) {
+			return keywords;
+		}
+
+		int nodes = countActiveNodes();
+		int share = (keywords.size() + nodes - 1) / nodes;
+		List<String> acquired = new ArrayList<>();
+		for (String raw : keywords) {
+			if (acquired.size() >= share) {
+				break;
+			}
+			String keyword = raw == null ? "" : raw.trim();
+			if (!keyword.isEmpty() && acquireKeyword(keyword)) {
+				acquired.add(keyword);
+			}
+		}
+		log.info("领取关键词份额: nodeId={}, nodes={}, share={}, acquired={}", nodeId, nodes, share, acquired);
+		return acquired;
+	}
+
+	/**
+	 * 存活节点数（至少为1）
+	 */
+	public int countActiveNodes() {
+		LambdaQueryWrapper<CrawlLease> wrapper = new LambdaQueryWrapper<>();
+		wrapper.likeRight(CrawlLease::getLeaseKey, NODE_PREFIX)
+			.eq(CrawlLease::getState, STATE_HELD)
+			.gt(CrawlLease::getExpiresAt, mapper.selectNow());
+		return (int) Math.max(1, mapper.selectCount(wrapper));
+	}
+
+	/**
+	 * 尝试获取租约 租约不存在、已释放、已过期或本节点正持有时获取成功，由数据库的条件更新保证只有一个节点成功；
+	 * 本周期已执行完成（DONE）的租约在过期前对所有节点都不可获取
+	 */
+	private boolean tryAcquire(String key) {
+		LocalDateTime now = mapper.selectNow();
+		ensureExists(key, now);
+
+		LambdaUpdateWrapper<CrawlLease> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlLease::getLeaseKey, key)
+			.and(w -> w.nested(held -> held.eq(CrawlLease::getOwner, nodeId).eq(CrawlLease::getState, STATE_HELD))
+				.or()
+				.eq(CrawlLease::getState, STATE_RELEASED)
+				.or()
+				.lt(CrawlLease::getExpiresAt, now))
+			.set(CrawlLease::getOwner, nodeId)
+			.set(CrawlLease::getState, STATE_HELD)
+			.set(CrawlLease::getExpiresAt, now.plus(crawlerConfig.getLease().getTtl(), ChronoUnit.MILLIS))
+			.set(CrawlLease::getHeartbeatAt, now)
+			.set(CrawlLease::getAcquiredAt, now)
+			.set(CrawlLease::getUpdateTime, now);
+		return mapper.update(wrapper) > 0;
+	}
+
+	private void ensureExists(String key, LocalDateTime now) {
+		LambdaQueryWrapper<CrawlLease> query = new LambdaQueryWrapper<>();
+		query.eq(CrawlLease::getLeaseKey, key);
+		if (mapper.selectCount(query) > 0) {
+			return;
+		}
+		CrawlLease lease = new CrawlLease();
+		lease.setLeaseKey(key);
+		lease.setState(STATE_RELEASED);
+		lease.setExpiresAt(now);
+		setCreateTime(lease);
+		setUpdateTime(lease);
+		try {
+			mapper.insert(lease);
+		}
+		catch (DuplicateKeyException e) {
+			// 其他节点同时创建，忽略
+		}
+	}
+
+	/**
+	 * 续约本节点持有的租约
+	 * @return 是否续约成功（租约已被其他节点接管时返回false）
+	 */
+	private boolean renew(String key) {
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlLease> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlLease::getLeaseKey, key)
+			.eq(CrawlLease::getOwner, nodeId)
+			.eq(CrawlLease::getState, STATE_HELD)
+			.set(CrawlLease::getExpiresAt, now.plus(crawlerConfig.getLease().getTtl(), ChronoUnit.MILLIS))
+			.set(CrawlLease::getHeartbeatAt, now)
+			.set(CrawlLease::getUpdateTime, now);
+		return mapper.update(wrapper) > 0;
+	}
+
+	private void release(String key) {
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlLease> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlLease::getLeaseKey, key)
+			.eq(CrawlLease::getOwner, nodeId)
+			.set(CrawlLease::getState, STATE_RELEASED)
+			.set(CrawlLease::getExpiresAt, now)
+			.set(CrawlLease::getUpdateTime, now);
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 心跳 登记本节点存活、续约持有的关键词租约，并接管其他节点过期的关键词租约
+	 */
+	private void heartbeat() {
+		try {
+			tryAcquire(NODE_PREFIX + nodeId);
+
+			for (String key : heldKeys) {
+				if (!renew(key)) {
+					// 续约不及时已被其他节点接管，本节点正在执行的任务不再受租约保护
+					heldKeys.remove(key);
+					log.warn("关键词租约已丢失: nodeId={}, key={}", nodeId, key);
+				}
+			}
+
+			Consumer<String> handler = takeoverHandler;
+			if (handler != null) {
+				for (String keyword : findExpiredKeywords()) {
+					handler.accept(keyword);
+				}
+			}
+		}
+		catch (Exception e) {
+			log.error("节点租约心跳失败: nodeId={}", nodeId, e);
+		}
+	}
+
+	/**
+	 * 查询持有节点已失联（未释放且已过期）的关键词租约
+	 */
+	private List<String> findExpiredKeywords() {
+		LambdaQueryWrapper<CrawlLease> wrapper = new LambdaQueryWrapper<>();
+		wrapper.likeRight(CrawlLease::getLeaseKey, KEYWORD_PREFIX)
+			.eq(CrawlLease::getState, STATE_HELD)
+			.lt(CrawlLease::getExpiresAt, mapper.selectNow());
+		return findList(wrapper).stream()
+			.map(lease -> lease.getLeaseKey().substring(KEYWORD_PREFIX.length()))
+			.toList();
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		stats.put("nodeId", nodeId);
+		if (isEnabled()) {
+			stats.put("activeNodes", countActiveNodes());
+			stats.put("heldKeywords",
+					heldKeys.stream().map(key -> key.substring(KEYWORD_PREFIX.length())).sorted().toList());
+		}
+		return stats;
+	}
+
+	/**
+	 * 关闭时停止心跳 持有的关键词租约立即过期（任务尚未完成，由其他节点接管恢复），节点租约直接释放
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (heartbeatExecutor == null) {
+			return;
+		}
+		heartbeatExecutor.shutdownNow();
+		try {
+			LocalDateTime now = mapper.selectNow();
+			for (String key : heldKeys) {
+				LambdaUpdateWrapper<CrawlLease> wrapper = new LambdaUpdateWrapper<>();
+				wrapper.eq(CrawlLease::getLeaseKey, key)
+					.eq(CrawlLease::getOwner, nodeId)
+					.set(CrawlLease::getExpiresAt, now)
+					.set(CrawlLease::getUpdateTime, now);
+				mapper.update(wrapper);
+			}
+			heldKeys.clear();
+			release(NODE_PREFIX + nodeId);
+			log.info("节点租约已释放: nodeId={}", nodeId);
+		}
+		catch (Exception e) {
+			log.warn("释放节点租约失败: nodeId={}, error={}", nodeId, e.getMessage());
+		}
+	}
+
+}
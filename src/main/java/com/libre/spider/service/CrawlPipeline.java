@@ -0,0 +1,457 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.exception.TaskTimeoutException;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.model.NoteCard;
+import com.libre.spider.model.SearchItem;
+import com.libre.spider.model.User;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 分阶段流式爬取流水线 搜索 → 笔记详情 → 用户信息，阶段之间通过有界队列衔接，每个阶段拥有独立的并发数
+ * <p>
+ * 请求频率由全局限流器按端点类别控制，流水线内所有线程都以流水线名称作为限流流标识
+ * <p>
+ * 上下文带有截止时间时，各阶段在截止时间到达后停止领取新的工作，流水线最多等待到截止时间（加少量宽限）即返回部分结果
+ * <p>
+ * 详情和用户阶段的在途窗口由背压函数决定：持久化积压时窗口缩小，工作线程暂停领取，阶段队列填满后搜索阶段也随之阻塞
+ */
+@Slf4j
+public class CrawlPipeline {
+
+	private static final long POLL_TIMEOUT_MS = 200;
+
+	/**
+	 * 截止时间到达后等待工作线程退出的宽限时间
+	 */
+	private static final long DEADLINE_GRACE_MS = 5000;
+
+	private final String name;
+
+	private final CrawlContext context;
+
+	private final CrawlerConfig.PipelineConfig config;
+
+	private final Executor executor;
+
+	private final IntUnaryOperator window;
+
+	private final BlockingQueue<SearchItem> detailQueue;
+
+	private final BlockingQueue<String> userQueue;
+
+	private final Set<String> seenNoteIds = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> seenUserIds = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger activeDetailWorkers = new AtomicInteger(0);
+
+	private final AtomicInteger detailInFlight = new AtomicInteger(0);
+
+	private final AtomicInteger userInFlight = new AtomicInteger(0);
+
+	private final AtomicLong throttled = new AtomicLong(0);
+
+	private final AtomicInteger discovered = new AtomicInteger(0);
+
+	private final AtomicInteger detailSuccess = new AtomicInteger(0);
+
+	private final AtomicInteger detailFailed = new AtomicInteger(0);
+
+	private final AtomicInteger userSuccess = new AtomicInteger(0);
+
+	private final AtomicInteger userFailed = new AtomicInteger(0);
+
+	private final AtomicLong firstStoredAt = new AtomicLong(0);
+
+	private volatile boolean searchDone = false;
+
+	private volatile boolean detailDone = false;
+
+	private volatile boolean aborted = false;
+
+	private volatile boolean userStageEnabled = false;
+
+	private volatile boolean timedOut = false;
+
+	private long startedAt;
+
+	/**
+	 * @param context 爬取上下文，流标识作为流水线名称，截止时间约束所有阶段
+	 * @param config 流水线配置
+	 * @param executor 运行各阶段工作线程的线程池
+	 * @param window 背压函数，输入阶段配置的并发数，返回当前允许的在途数量
+	 */
+	public CrawlPipeline(CrawlContext context, CrawlerConfig.PipelineConfig config, Executor executor,
+			IntUnaryOperator window) {
+		this.name = context.getFlow();
+		this.context = context;
+		this.config = config;
+		this.executor = executor;
+		this.window = window;
+		this.startedAt = System.currentTimeMillis();
+		this.detailQueue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+		this.userQueue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+	}
+
+	/**
+	 * 执行流水线，阻塞直到所有阶段完成
+	 * @param searchStage 搜索阶段，负责把搜索到的笔记推送到流水线
+	 * @param detailStage 笔记详情阶段，返回null表示失败
+	 * @param userStage 用户信息阶段，为null时跳过该阶段
+	 * @return 执行结果
+	 */
+	public PipelineResult run(SearchStage searchStage, Function<SearchItem, NoteCard> detailStage,
+			Function<String, User> userStage) {
+		startedAt = System.currentTimeMillis();
+
+		int detailWorkers = Math.max(1, config.getDetailConcurrency());
+		int userWorkers = userStage != null ? Math.max(1, config.getUserConcurrency()) : 0;
+		userStageEnabled = userStage != null;
+
+		List<CompletableFuture<Void>> detailFutures = new ArrayList<>();
+		List<CompletableFuture<Void>> userFutures = new ArrayList<>();
+		boolean completed = false;
+
+		try {
+			activeDetailWorkers.set(detailWorkers);
+			for (int i = 0; i < detailWorkers; i++) {
+				detailFutures.add(CompletableFuture
+					.runAsync(() -> detailLoop(detailStage, userStage != null, detailWorkers), executor));
+			}
+			for (int i = 0; i < userWorkers; i++) {
+				userFutures.add(CompletableFuture.runAsync(() -> userLoop(userStage, userWorkers), executor));
+			}
+
+			try (CrawlContext.Scope ignored = CrawlContext.open(context)) {
+				searchStage.search(this::emit);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.warn("流水线搜索阶段被中断: {}", name);
+			}
+			catch (TaskTimeoutException e) {
+				log.warn("流水线搜索阶段超时: {}", name);
+			}
+			catch (Exception e) {
+				log.error("流水线搜索阶段失败: {}", name, e);
+			}
+			finally {
+				searchDone = true;
+			}
+
+			completed = awaitWorkers(detailFutures) && awaitWorkers(userFutures);
+		}
+		finally {
+			if (!completed) {
+				// 异常退出时通知已启动的工作线程尽快结束，线程池是共享的，不能直接关闭
+				aborted = true;
+				searchDone = true;
+				detailDone = true;
+			}
+		}
+
+		if (context.isExpired()) {
+			timedOut = true;
+		}
+		PipelineResult result = snapshot();
+		log.info("流水线执行完成: name={}, discovered={}, detail={}/{}, user={}/{}, firstStoredMs={}, elapsedMs={}, timedOut={}",
+				name, result.getDiscovered(), result.getDetailSuccess(), result.getDetailFailed(),
+				result.getUserSuccess(), result.getUserFailed(), result.getFirstStoredLatencyMs(), result.getElapsedMs(),
+				result.isTimedOut());
+		return result;
+	}
+
+	/**
+	 * 等待一个阶段的工作线程结束 有截止时间时最多等待到截止时间加宽限时间，超时后放弃等待（工作线程会自行退出）
+	 * @return 是否全部正常结束
+	 */
+	private boolean awaitWorkers(List<CompletableFuture<Void>> futures) {
+		CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+		if (!context.hasDeadline()) {
+			all.join();
+			return true;
+		}
+		try {
+			all.get(context.remainingMillis() + DEADLINE_GRACE_MS, TimeUnit.MILLISECONDS);
+			return true;
+		}
+		catch (TimeoutException e) {
+			log.warn("流水线超过截止时间，放弃等待仍在执行的工作线程: {}", name);
+			timedOut = true;
+			return false;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException e) {
+			log.error("流水线工作线程异常: {}", name, e.getCause());
+			return false;
+		}
+	}
+
+	/**
+	 * 放入阶段队列，队列满时等待，流水线中止或超过截止时间时放弃
+	 * @return 是否放入
+	 */
+	private <T> boolean offer(BlockingQueue<T> queue, T value) throws InterruptedException {
+		while (!queue.offer(value, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+			if (aborted || context.isExpired()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 进入阶段的在途窗口 窗口已满时等待一个轮询周期后返回false，由调用方重新检查
+	 * @param inFlight 阶段在途计数
+	 * @param concurrency 阶段配置的并发数
+	 * @return 是否进入，进入后调用方必须在处理完成后递减在途计数
+	 */
+	private boolean enterWindow(AtomicInteger inFlight, int concurrency) throws InterruptedException {
+		int allowed = window != null ? window.applyAsInt(concurrency) : concurrency;
+		int current = inFlight.get();
+		if (current < allowed && inFlight.compareAndSet(current, current + 1)) {
+			return true;
+		}
+		if (current >= allowed) {
+			throttled.incrementAndGet();
+		}
+		Thread.sleep(POLL_TIMEOUT_MS);
+		return false;
+	}
+
+	/**
+	 * 是否应停止领取新的工作
+	 */
+	private boolean shouldStop() {
+		return aborted || context.isExpired();
+	}
+
+	/**
+	 * 接收搜索阶段推送的笔记，队列满时阻塞搜索阶段
+	 * @return 是否被接收（重复的笔记会被丢弃）
+	 */
+	private boolean emit(SearchItem item) throws InterruptedException {
+		if (item == null || item.getId() == null || !seenNoteIds.add(item.getId())) {
+			return false;
+		}
+		if (!offer(detailQueue, item)) {
+			// 截止时间已到，通知搜索阶段停止
+			context.checkDeadline();
+			return false;
+		}
+		discovered.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * 直接向用户信息阶段推送用户（用于恢复任务时补齐已完成详情但未获取用户信息的笔记），队列满时阻塞
+	 * @return 是否被接收（用户阶段未启用或重复的用户返回false）
+	 */
+	public boolean emitUser(String userId) throws InterruptedException {
+		if (!userStageEnabled || userId == null || !seenUserIds.add(userId)) {
+			return false;
+		}
+		return offer(userQueue, userId);
+	}
+
+	/**
+	 * 笔记详情阶段工作循环
+	 */
+	private void detailLoop(Function<SearchItem, NoteCard> detailStage, boolean userStageEnabled, int concurrency) {
+		try (CrawlContext.Scope ignored = CrawlContext.open(context)) {
+			while (true) {
+				if (shouldStop()) {
+					break;
+				}
+				if (!enterWindow(detailInFlight, concurrency)) {
+					continue;
+				}
+				try {
+					SearchItem item = detailQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+					if (item == null) {
+						if (searchDone && detailQueue.isEmpty()) {
+							break;
+						}
+						continue;
+					}
+
+					NoteCard noteCard = applySafely(detailStage, item, item.getId());
+					if (noteCard == null) {
+						detailFailed.incrementAndGet();
+						continue;
+					}
+
+					detailSuccess.incrementAndGet();
+					firstStoredAt.compareAndSet(0, System.currentTimeMillis());
+
+					String userId = noteCard.getUser() != null ? noteCard.getUser().getUserId() : null;
+					if (userStageEnabled && userId != null && seenUserIds.add(userId)) {
+						offer(userQueue, userId);
+					}
+				}
+				finally {
+					detailInFlight.decrementAndGet();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("笔记详情阶段被中断: {}", name);
+		}
+		finally {
+			if (activeDetailWorkers.decrementAndGet() == 0) {
+				detailDone = true;
+			}
+		}
+	}
+
+	/**
+	 * 用户信息阶段工作循环
+	 */
+	private void userLoop(Function<String, User> userStage, int concurrency) {
+		try (CrawlContext.Scope ignored = CrawlContext.open(context)) {
+			while (true) {
+				if (shouldStop()) {
+					break;
+				}
+				if (!enterWindow(userInFlight, concurrency)) {
+					continue;
+				}
+				try {
+					String userId = userQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+					if (userId == null) {
+						if (detailDone && userQueue.isEmpty()) {
+							break;
+						}
+						continue;
+					}
+
+					if (applySafely(userStage, userId, userId) != null) {
+						userSuccess.incrementAndGet();
+					}
+					else {
+						userFailed.incrementAndGet();
+					}
+				}
+				finally {
+					userInFlight.decrementAndGet();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("用户信息阶段被中断: {}", name);
+		}
+	}
+
+	private <T, R> R applySafely(Function<T, R> stage, T input, String identifier) {
+		try {
+			return stage.apply(input);
+		}
+		catch (Exception e) {
+			log.warn("流水线处理失败: name={}, identifier={}, error={}", name, identifier, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 获取当前执行结果快照
+	 */
+	public PipelineResult snapshot() {
+		PipelineResult result = new PipelineResult();
+		result.setDiscovered(discovered.get());
+		result.setDetailSuccess(detailSuccess.get());
+		result.setDetailFailed(detailFailed.get());
+		result.setUserSuccess(userSuccess.get());
+		result.setUserFailed(userFailed.get());
+		long first = firstStoredAt.get();
+		result.setFirstStoredLatencyMs(first > 0 ? first - startedAt : -1);
+		result.setElapsedMs(System.currentTimeMillis() - startedAt);
+		result.setTimedOut(timedOut || context.isExpired());
+		result.setThrottled(throttled.get());
+		return result;
+	}
+
+	/**
+	 * 搜索阶段
+	 */
+	@FunctionalInterface
+	public interface SearchStage {
+
+		/**
+		 * 执行搜索，并把搜索到的笔记逐个推送给流水线
+		 * @param sink 笔记接收器
+		 */
+		void search(ItemSink sink) throws Exception;
+
+	}
+
+	/**
+	 * 笔记接收器
+	 */
+	@FunctionalInterface
+	public interface ItemSink {
+
+		/**
+		 * 推送一个笔记，队列满时阻塞
+		 * @return 是否被接收（重复的笔记返回false）
+		 */
+		boolean emit(SearchItem item) throws InterruptedException;
+
+	}
+
+	/**
+	 * 流水线执行结果
+	 */
+	@Data
+	public static class PipelineResult {
+
+		private int discovered;
+
+		private int detailSuccess;
+
+		private int detailFailed;
+
+		private int userSuccess;
+
+		private int userFailed;
+
+		private long firstStoredLatencyMs;
+
+		private long elapsedMs;
+
+		/**
+		 * 是否因超过截止时间而提前结束
+		 */
+		private boolean timedOut;
+
+		/**
+		 * 因持久化背压而暂停领取的次数
+		 */
+		private long throttled;
+
+	}
+
+}
@@ -0,0 +1,344 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlRetryItem;
+import com.libre.spider.enums.ErrorType;
+import com.libre.spider.enums.RetryItemState;
+import com.libre.spider.enums.WorkItemType;
+import com.libre.spider.mapper.CrawlRetryItemMapper;
+import com.libre.spider.model.SearchItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 延迟重试队列服务 获取失败的笔记详情/用户信息记录在数据库中，按指数退避安排下次重试时间，由后台线程在配额空闲时重试
+ * <p>
+ * 每个笔记/用户只保留一条记录，跨任务累计失败次数；重试次数用尽或不可重试（如笔记已删除）的条目进入负缓存，
+ * 负缓存有效期内爬取流程直接跳过，不再占用请求配额
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlRetryQueueService extends BaseDataService<CrawlRetryItem, CrawlRetryItemMapper> {
+
+	private static final int MAX_HISTORY = 10;
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * 负缓存，key为工作类型:条目标识，value为过期时间
+	 */
+	private final Map<String, LocalDateTime> negativeCache = new ConcurrentHashMap<>();
+
+	private volatile LocalDateTime negativeCacheLoadedAt;
+
+	@Override
+	protected String getEntityName() {
+		return "延迟重试队列";
+	}
+
+	@Override
+	protected Object getId(CrawlRetryItem entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(CrawlRetryItem entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(CrawlRetryItem entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(CrawlRetryItem entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 是否启用延迟重试队列
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getRetryQueue().isEnabled();
+	}
+
+	/**
+	 * 条目是否在负缓存中（近期反复失败或不可重试，应直接跳过）
+	 */
+	public boolean isSuppressed(WorkItemType type, String itemKey) {
+		if (!isEnabled() || itemKey == null) {
+			return false;
+		}
+		String key = cacheKey(type, itemKey);
+		LocalDateTime expireAt = negativeCache.get(key);
+		if (expireAt == null) {
+			return false;
+		}
+		if (expireAt.isBefore(LocalDateTime.now())) {
+			negativeCache.remove(key, expireAt);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 记录一次笔记详情获取失败
+	 * @param taskId 任务ID
+	 * @param item 搜索结果项
+	 * @param errorType 错误类型
+	 * @param errorMessage 错误信息
+	 */
+	public void deferNoteDetail(Long taskId, SearchItem item, ErrorType errorType, String errorMessage) {
+		String payload;
+		try {
+			payload = objectMapper.writeValueAsString(item);
+		}
+		catch (Exception e) {
+			log.warn("序列化重试条目失败: noteId={}, error={}", item.getId(), e.getMessage());
+			return;
+		}
+		defer(WorkItemType.NOTE_DETAIL, item.getId(), taskId, item.getKeyword(), payload, errorType, errorMessage);
+	}
+
+	/**
+	 * 记录一次用户信息获取失败
+	 */
+	public void deferUserInfo(Long taskId, String userId, ErrorType errorType, String errorMessage) {
+		defer(WorkItemType.USER_INFO, userId, taskId, null, null, errorType, errorMessage);
+	}
+
+	private void defer(WorkItemType type, String itemKey, Long taskId, String keyword, String payload,
+			ErrorType errorType, String errorMessage) {
+		if (itemKey == null) {
+			return;
+		}
+		CrawlRetryItem item = new CrawlRetryItem();
+		item.setWorkType(type.name());
+		item.setItemKey(itemKey);
+		item.setTaskId(taskId);
+		item.setKeyword(keyword);
+		item.setPayload(payload);
+		item.setState(RetryItemState.PENDING.name());
+		item.setAttempts(0);
+		item.setNextAttemptTime(mapper.selectNow());
+		setCreateTime(item);
+		setUpdateTime(item);
+		try {
+			mapper.insert(item);
+		}
+		catch (DuplicateKeyException e) {
+			LambdaQueryWrapper<CrawlRetryItem> wrapper = new LambdaQueryWrapper<>();
+			wrapper.eq(CrawlRetryItem::getWorkType, type.name()).eq(CrawlRetryItem::getItemKey, itemKey);
+			item = findOne(wrapper);
+			if (item == null) {
+				return;
+			}
+			if (RetryItemState.RUNNING.name().equals(item.getState())) {
+				// 后台线程正在重试，由其记录结果
+				return;
+			}
+			if (!RetryItemState.PENDING.name().equals(item.getState())) {
+				// 已成功或负缓存已过期的条目重新开始计数
+				item.setAttempts(0);
+			}
+			item.setTaskId(taskId);
+			if (payload != null) {
+				item.setPayload(payload);
+				item.setKeyword(keyword);
+			}
+		}
+		recordFailure(item, errorType, errorMessage);
+	}
+
+	/**
+	 * 领取一批到期的条目 条件更新保证同一条目只被一个线程（或节点）领取，领取超时后可被重新领取
+	 * @param limit 最多领取的数量
+	 */
+	public List<CrawlRetryItem> claimDue(int limit) {
+		LocalDateTime now = mapper.selectNow();
+		LambdaQueryWrapper<CrawlRetryItem> query = new LambdaQueryWrapper<>();
+		query.in(CrawlRetryItem::getState, RetryItemState.PENDING.name(), RetryItemState.RUNNING.name())
+			.le(CrawlRetryItem::getNextAttemptTime, now)
+			.orderByAsc(CrawlRetryItem::getNextAttemptTime)
+			.last("LIMIT " + Math.max(1, limit));
+
+		LocalDateTime claimTimeout = now.plus(crawlerConfig.getRetryQueue().getClaimTimeout(), ChronoUnit.MILLIS);
+		List<CrawlRetryItem> claimed = new ArrayList<>();
+		for (CrawlRetryItem item : mapper.selectList(query)) {
+			LambdaUpdateWrapper<CrawlRetryItem> update = new LambdaUpdateWrapper<>();
+			update.eq(CrawlRetryItem::getId, item.getId())
+				.eq(CrawlRetryItem::getState, item.getState())
+				.le(CrawlRetryItem::getNextAttemptTime, now)
+				.set(CrawlRetryItem::getState, RetryItemState.RUNNING.name())
+				.set(CrawlRetryItem::getNextAttemptTime, claimTimeout)
+				.set(CrawlRetryItem::getUpdateTime, now);
+			if (mapper.update(update) > 0) {
+				item.setState(RetryItemState.RUNNING.name());
+				item.setNextAttemptTime(claimTimeout);
+				claimed.add(item);
+			}
+		}
+		return claimed;
+	}
+
+	/**
+	 * 重试成功
+	 */
+	public void complete(CrawlRetryItem item) {
+		LambdaUpdateWrapper<CrawlRetryItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlRetryItem::getId, item.getId())
+			.set(CrawlRetryItem::getState, RetryItemState.DONE.name())
+			.set(CrawlRetryItem::getUpdateTime, mapper.selectNow());
+		mapper.update(wrapper);
+	}
+
+	/**
+	 * 记录一次失败 不可重试或次数用尽时进入负缓存，否则按指数退避安排下次重试
+	 * @return 是否已放弃（进入负缓存）
+	 */
+	public boolean recordFailure(CrawlRetryItem item, ErrorType errorType, String errorMessage) {
+		CrawlerConfig.RetryQueueConfig config = crawlerConfig.getRetryQueue();
+		LocalDateTime now = mapper.selectNow();
+		int attempts = (item.getAttempts() == null ? 0 : item.getAttempts()) + 1;
+		boolean dead = isPermanent(errorType) || attempts >= config.getMaxAttempts();
+
+		item.setAttempts(attempts);
+		item.setState(dead ? RetryItemState.DEAD.name() : RetryItemState.PENDING.name());
+		item.setNextAttemptTime(dead ? now : now.plus(backoff(attempts), ChronoUnit.MILLIS));
+		item.setLastErrorType(errorType.name());
+		item.setErrorMessage(errorMessage);
+		item.setHistory(appendHistory(item.getHistory(), now, errorType, errorMessage));
+		item.setUpdateTime(now);
+		mapper.updateById(item);
+
+		if (dead) {
+			// 负缓存只在本节点内存中按本地时钟判断过期
+			negativeCache.put(cacheKey(WorkItemType.valueOf(item.getWorkType()), item.getItemKey()),
+					LocalDateTime.now().plus(config.getNegativeTtl(), ChronoUnit.MILLIS));
+			log.info("条目进入负缓存: type={}, key={}, attempts={}, errorType={}", item.getWorkType(), item.getItemKey(),
+					attempts, errorType);
+		}
+		return dead;
+	}
+
+	/**
+	 * 笔记已删除、请求参数错误等重试也不会成功的错误
+	 */
+	private boolean isPermanent(ErrorType errorType) {
+		return errorType == ErrorType.NOT_FOUND || errorType == ErrorType.CLIENT_ERROR;
+	}
+
+	/**
+	 * 第attempts次失败后的等待时间 指数增长，在[1/2, 1]倍之间随机，避免大量条目同时到期
+	 */
+	private long backoff(int attempts) {
+		CrawlerConfig.RetryQueueConfig config = crawlerConfig.getRetryQueue();
+		double delay = Math.min(config.getMaxDelay(),
+				config.getInitialDelay() * Math.pow(config.getMultiplier(), attempts - 1));
+		return (long) (delay / 2 + ThreadLocalRandom.current().nextDouble() * delay / 2);
+	}
+
+	private String appendHistory(String history, LocalDateTime time, ErrorType errorType, String errorMessage) {
+		List<Map<String, Object>> entries = new ArrayList<>();
+		if (history != null) {
+			try {
+				entries = objectMapper.readValue(history, new TypeReference<>() {
+				});
+			}
+			catch (Exception e) {
+				log.debug("解析失败历史出错，重新记录: {}", e.getMessage());
+			}
+		}
+		Map<String, Object> entry = new LinkedHashMap<>();
+		entry.put("time", time.toString());
+		entry.put("errorType", errorType.name());
+		entry.put("error", errorMessage);
+		entries.add(entry);
+		if (entries.size() > MAX_HISTORY) {
+			entries = new ArrayList<>(entries.subList(entries.size() - MAX_HISTORY, entries.size()));
+		}
+		try {
+			return objectMapper.writeValueAsString(entries);
+		}
+		catch (Exception e) {
+			return history;
+		}
+	}
+
+	/**
+	 * 从数据库加载负缓存 首次加载有效期内的所有条目，之后只加载上次加载后新放弃的条目（包括其他节点放弃的）
+	 */
+	public void refreshNegativeCache() {
+		// 放弃时间是数据库时间，按数据库时间计算剩余有效期后再换算为本地时钟的过期时间
+		LocalDateTime now = mapper.selectNow();
+		LocalDateTime localNow = LocalDateTime.now();
+		long ttl = crawlerConfig.getRetryQueue().getNegativeTtl();
+		LocalDateTime since = negativeCacheLoadedAt != null ? negativeCacheLoadedAt
+				: now.minus(ttl, ChronoUnit.MILLIS);
+
+		LambdaQueryWrapper<CrawlRetryItem> wrapper = new LambdaQueryWrapper<>();
+		wrapper.select(CrawlRetryItem::getWorkType, CrawlRetryItem::getItemKey, CrawlRetryItem::getUpdateTime)
+			.eq(CrawlRetryItem::getState, RetryItemState.DEAD.name())
+			.ge(CrawlRetryItem::getUpdateTime, since);
+		for (CrawlRetryItem item : mapper.selectList(wrapper)) {
+			LocalDateTime expireAt = item.getUpdateTime().plus(ttl, ChronoUnit.MILLIS);
+			if (expireAt.isAfter(now)) {
+				negativeCache.put(cacheKey(WorkItemType.valueOf(item.getWorkType()), item.getItemKey()),
+						localNow.plus(Duration.between(now, expireAt)));
+			}
+		}
+		negativeCache.values().removeIf(expireAt -> expireAt.isBefore(localNow));
+		negativeCacheLoadedAt = now;
+	}
+
+	private String cacheKey(WorkItemType type, String itemKey) {
+		return type.name() + ":" + itemKey;
+	}
+
+	/**
+	 * 还原笔记详情条目中的搜索结果项
+	 */
+	public SearchItem toSearchItem(CrawlRetryItem item) {
+		try {
+			return objectMapper.readValue(item.getPayload(), SearchItem.class);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("解析重试条目失败: " + item.getItemKey(), e);
+		}
+	}
+
+	/**
+	 * 获取队列统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		for (RetryItemState state : RetryItemState.values()) {
+			LambdaQueryWrapper<CrawlRetryItem> wrapper = new LambdaQueryWrapper<>();
+			wrapper.eq(CrawlRetryItem::getState, state.name());
+			stats.put(state.name().toLowerCase(), mapper.selectCount(wrapper));
+		}
+		stats.put("negativeCache", negativeCache.size());
+		return stats;
+	}
+
+}
@@ -0,0 +1,298 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlWorkItem;
+import com.libre.spider.enums.WorkItemState;
+import com.libre.spider.enums.WorkItemType;
+import com.libre.spider.mapper.CrawlWorkItemMapper;
+import com.libre.spider.model.SearchItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 持久化工作队列服务 笔记详情和用户信息的获取以工作项的形式保存在数据库中，多个工作线程或节点共同领取处理
+ * <p>
+ * 领取使用SELECT ... FOR UPDATE SKIP LOCKED，被领取的工作项在可见性超时之前对其他工作者不可见；
+ * 工作者崩溃或超时未确认时，工作项会在超时后被重新领取，直到领取次数达到上限。
+ * 可见时间均按数据库时钟计算和比较，节点之间的时钟偏差不会导致工作项被提前重新领取或长时间不可见
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlWorkQueueService extends BaseDataService<CrawlWorkItem, CrawlWorkItemMapper> {
+
+	/**
+	 * 用户信息优先于笔记详情，尽早完成已有笔记的作者信息
+	 */
+	public static final int PRIORITY_NOTE_DETAIL = 0;
+
+	public static final int PRIORITY_USER_INFO = 10;
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ObjectMapper objectMapper;
+
+	@Override
+	protected String getEntityName() {
+		return "工作队列";
+	}
+
+	@Override
+	protected Object getId(CrawlWorkItem entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(CrawlWorkItem entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(CrawlWorkItem entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(CrawlWorkItem entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 是否启用持久化工作队列
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getWorkQueue().isEnabled();
+	}
+
+	/**
+	 * 加入笔记详情工作项
+	 * @param taskId 任务ID
+	 * @param item 搜索结果项
+	 * @return 是否新加入（同一任务中重复的笔记返回false）
+	 */
+	public boolean enqueueNoteDetail(Long taskId, SearchItem item) {
+		String payload;
+		try {
+			payload = objectMapper.writeValueAsString(item);
+		}
+		catch (Exception e) {
+			log.warn("序列化工作项失败: noteId={}, error={}", item.getId(), e.getMessage());
+			return false;
+		}
+		return enqueue(taskId, WorkItemType.NOTE_DETAIL, item.getId(), item.getKeyword(), payload,
+				PRIORITY_NOTE_DETAIL);
+	}
+
+	/**
+	 * 加入用户信息工作项
+	 * @param taskId 任务ID
+	 * @param userId 用户ID
+	 * @param keyword 关键词
+	 * @return 是否新加入（同一任务中重复的用户返回false）
+	 */
+	public boolean enqueueUserInfo(Long taskId, String userId, String keyword) {
+		return enqueue(taskId, WorkItemType.USER_INFO, userId, keyword, null, PRIORITY_USER_INFO);
+	}
+
+	private boolean enqueue(Long taskId, WorkItemType type, String itemKey, String keyword, String payload,
+			int priority) {
+		if (itemKey == null) {
+			return false;
+		}
+		CrawlWorkItem workItem = new CrawlWorkItem();
+		workItem.setTaskId(taskId);
+		workItem.setWorkType(type.name());
+		workItem.setItemKey(itemKey);
+		workItem.setKeyword(keyword);
+		workItem.setPayload(payload);
+		workItem.setPriority(priority);
+		workItem.setState(WorkItemState.READY.name());
+		workItem.setAttempts(0);
+		workItem.setMaxAttempts(Math.max(1, crawlerConfig.getWorkQueue().getMaxAttempts()));
+		// 不设置可见时间，由数据库默认值（数据库当前时间）填充
+		setCreateTime(workItem);
+		setUpdateTime(workItem);
+		try {
+			return mapper.insert(workItem) > 0;
+		}
+		catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 领取一批工作项 在同一事务内锁定并标记为已领取，领取次数加1，可见性超时前其他工作者不会再领取
+	 * @param workerId 工作者标识
+	 * @param limit 最多领取的数量
+	 * @return 领取到的工作项
+	 */
+	@Transactional
+	public List<CrawlWorkItem> claim(String workerId, int limit) {
+		LocalDateTime now = mapper.selectNow();
+		List<CrawlWorkItem> items = mapper.selectClaimableForUpdate(now, Math.max(1, limit));
+		if (items.isEmpty()) {
+			return items;
+		}
+
+		LocalDateTime visibleAt = now.plus(crawlerConfig.getWorkQueue().getVisibilityTimeout(), ChronoUnit.MILLIS);
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.in(CrawlWorkItem::getId, items.stream().map(CrawlWorkItem::getId).toList())
+			.set(CrawlWorkItem::getState, WorkItemState.CLAIMED.name())
+			.set(CrawlWorkItem::getClaimedBy, workerId)
+			.set(CrawlWorkItem::getClaimedAt, now)
+			.set(CrawlWorkItem::getVisibleAt, visibleAt)
+			.set(CrawlWorkItem::getUpdateTime, now)
+			.setSql("attempts = attempts + 1");
+		mapper.update(wrapper);
+
+		for (CrawlWorkItem item : items) {
+			item.setState(WorkItemState.CLAIMED.name());
+			item.setClaimedBy(workerId);
+			item.setClaimedAt(now);
+			item.setVisibleAt(visibleAt);
+			item.setAttempts(item.getAttempts() + 1);
+		}
+		return items;
+	}
+
+	/**
+	 * 确认工作项已完成 只有当前领取者可以确认，超时后被其他工作者重新领取的工作项不会被覆盖
+	 * @return 是否确认成功
+	 */
+	public boolean complete(CrawlWorkItem item) {
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = ownedBy(item);
+		wrapper.set(CrawlWorkItem::getState, WorkItemState.DONE.name())
+			.set(CrawlWorkItem::getErrorMessage, null)
+			.set(CrawlWorkItem::getUpdateTime, LocalDateTime.now());
+		return mapper.update(wrapper) > 0;
+	}
+
+	/**
+	 * 工作项处理失败 未达到领取次数上限时延迟后重新进入队列，否则标记为失败
+	 * @return 是否已彻底失败（不会再重试）
+	 */
+	public boolean fail(CrawlWorkItem item, String errorMessage) {
+		boolean exhausted = item.getAttempts() >= item.getMaxAttempts();
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = ownedBy(item);
+		wrapper.set(CrawlWorkItem::getState, exhausted ? WorkItemState.FAILED.name() : WorkItemState.READY.name())
+			.set(CrawlWorkItem::getErrorMessage, errorMessage)
+			.set(CrawlWorkItem::getVisibleAt,
+					now.plus(crawlerConfig.getWorkQueue().getRetryDelay() * item.getAttempts(), ChronoUnit.MILLIS))
+			.set(CrawlWorkItem::getUpdateTime, now);
+		mapper.update(wrapper);
+		return exhausted;
+	}
+
+	private LambdaUpdateWrapper<CrawlWorkItem> ownedBy(CrawlWorkItem item) {
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlWorkItem::getId, item.getId())
+			.eq(CrawlWorkItem::getState, WorkItemState.CLAIMED.name())
+			.eq(CrawlWorkItem::getClaimedBy, item.getClaimedBy())
+			.eq(CrawlWorkItem::getAttempts, item.getAttempts());
+		return wrapper;
+	}
+
+	/**
+	 * 把超时未确认且领取次数已用尽的工作项标记为失败
+	 * @return 标记的数量
+	 */
+	public int failExpired() {
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlWorkItem::getState, WorkItemState.CLAIMED.name())
+			.le(CrawlWorkItem::getVisibleAt, now)
+			.apply("attempts >= max_attempts")
+			.set(CrawlWorkItem::getState, WorkItemState.FAILED.name())
+			.set(CrawlWorkItem::getErrorMessage, "处理超时")
+			.set(CrawlWorkItem::getUpdateTime, now);
+		return mapper.update(wrapper);
+	}
+
+	/**
+	 * 把任务中失败的工作项重新放回队列（恢复任务时使用）
+	 * @return 重新入队的数量
+	 */
+	public int requeueFailed(Long taskId) {
+		LocalDateTime now = mapper.selectNow();
+		LambdaUpdateWrapper<CrawlWorkItem> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlWorkItem::getTaskId, taskId)
+			.eq(CrawlWorkItem::getState, WorkItemState.FAILED.name())
+			.set(CrawlWorkItem::getState, WorkItemState.READY.name())
+			.set(CrawlWorkItem::getAttempts, 0)
+			.set(CrawlWorkItem::getVisibleAt, now)
+			.set(CrawlWorkItem::getUpdateTime, now);
+		return mapper.update(wrapper);
+	}
+
+	/**
+	 * 任务中尚未结束（待领取或处理中）的工作项数量
+	 */
+	public long countOpen(Long taskId) {
+		LambdaQueryWrapper<CrawlWorkItem> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(CrawlWorkItem::getTaskId, taskId)
+			.in(CrawlWorkItem::getState, WorkItemState.READY.name(), WorkItemState.CLAIMED.name());
+		return mapper.selectCount(wrapper);
+	}
+
+	/**
+	 * 按工作类型和状态统计任务的工作项数量
+	 */
+	public Map<WorkItemType, Map<WorkItemState, Integer>> countByTypeAndState(Long taskId) {
+		Map<WorkItemType, Map<WorkItemState, Integer>> counts = new EnumMap<>(WorkItemType.class);
+		for (WorkItemType type : WorkItemType.values()) {
+			Map<WorkItemState, Integer> byState = new EnumMap<>(WorkItemState.class);
+			for (WorkItemState state : WorkItemState.values()) {
+				byState.put(state, 0);
+			}
+			counts.put(type, byState);
+		}
+
+		LambdaQueryWrapper<CrawlWorkItem> wrapper = new LambdaQueryWrapper<>();
+		wrapper.select(CrawlWorkItem::getWorkType, CrawlWorkItem::getState).eq(CrawlWorkItem::getTaskId, taskId);
+		for (CrawlWorkItem item : mapper.selectList(wrapper)) {
+			counts.get(WorkItemType.valueOf(item.getWorkType()))
+				.merge(WorkItemState.valueOf(item.getState()), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	/**
+	 * 还原笔记详情工作项中的搜索结果项
+	 */
+	public SearchItem toSearchItem(CrawlWorkItem item) {
+		try {
+			return objectMapper.readValue(item.getPayload(), SearchItem.class);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("解析工作项失败: " + item.getItemKey(), e);
+		}
+	}
+
+	/**
+	 * 获取队列统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		for (WorkItemState state : WorkItemState.values()) {
+			LambdaQueryWrapper<CrawlWorkItem> wrapper = new LambdaQueryWrapper<>();
+			wrapper.eq(CrawlWorkItem::getState, state.name());
+			stats.put(state.name().toLowerCase(), mapper.selectCount(wrapper));
+		}
+		return stats;
+	}
+
+}
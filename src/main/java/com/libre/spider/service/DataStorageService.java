@@ -1,6 +1,7 @@
 package com.libre.spider.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.entity.CrawlTask;
 import com.libre.spider.entity.NoteInfo;
 import com.libre.spider.entity.UserInfo;
 import com.libre.spider.model.NoteCard;
@@ -59,6 +60,51 @@ public class DataStorageService {
 		taskDataService.completeTask(taskId, totalNotes, successNotes, failedNotes, errorMessage);
 	}
 
+	/**
+	 * 标记爬取任务超时 已完成的部分结果保留，任务之后可以恢复
+	 * @param taskId 任务ID
+	 * @param totalNotes 总笔记数
+	 * @param successNotes 成功笔记数
+	 * @param failedNotes 失败笔记数
+	 * @param errorMessage 错误信息
+	 */
+	public void timeoutCrawlTask(Long taskId, int totalNotes, int successNotes, int failedNotes, String errorMessage) {
+		taskDataService.timeoutTask(taskId, totalNotes, successNotes, failedNotes, errorMessage);
+	}
+
+	/**
+	 * 已结束任务中一条失败的笔记由延迟重试补齐，更新任务计数
+	 * @param taskId 任务ID
+	 */
+	public void recoverFailedNote(Long taskId) {
+		taskDataService.recoverFailedNote(taskId);
+	}
+
+	/**
+	 * 标记任务的搜索阶段已完成
+	 * @param taskId 任务ID
+	 */
+	public void markSearchCompleted(Long taskId) {
+		taskDataService.markSearchCompleted(taskId);
+	}
+
+	/**
+	 * 查询爬取任务
+	 * @param taskId 任务ID
+	 * @return 任务，不存在时返回null
+	 */
+	public CrawlTask getCrawlTask(Long taskId) {
+		return taskDataService.findById(taskId);
+	}
+
+	/**
+	 * 查询未完成（仍处于运行中）的爬取任务，通常是进程中断遗留的任务
+	 * @return 任务列表
+	 */
+	public List<CrawlTask> findUnfinishedCrawlTasks() {
+		return taskDataService.findByStatus("RUNNING");
+	}
+
 	/**
 	 * 批量保存笔记信息
 	 * @param noteCards 笔记卡片列表
@@ -102,10 +148,42 @@ public class DataStorageService {
 		log.info("保存用户信息完成: userId={}, nickname={}, taskId={}", user.getUserId(), user.getNickname(), taskId);
 	}
 
+	/**
+	 * 按noteId批量写入笔记（每批一次查询）
+	 * @param noteInfos 笔记实体列表
+	 */
+	@Transactional
+	public void batchUpsertNotes(List<NoteInfo> noteInfos) {
+		noteDataService.batchUpsert(noteInfos, NoteInfo::getNoteId);
+	}
+
+	/**
+	 * 按userId批量写入用户（每批一次查询）
+	 * @param userInfos 用户实体列表
+	 */
+	@Transactional
+	public void batchUpsertUsers(List<UserInfo> userInfos) {
+		userDataService.batchUpsert(userInfos, UserInfo::getUserId);
+	}
+
+	/**
+	 * 逐条写入笔记（批量写入失败时用于隔离出错的记录）
+	 */
+	public void saveNoteInfo(NoteInfo noteInfo) {
+		noteDataService.saveOrUpdateByNoteId(noteInfo);
+	}
+
+	/**
+	 * 逐条写入用户（批量写入失败时用于隔离出错的记录）
+	 */
+	public void saveUserInfo(UserInfo userInfo) {
+		userDataService.saveOrUpdateByUserId(userInfo);
+	}
+
 	/**
 	 * 转换NoteCard为NoteInfo
 	 */
-	private NoteInfo convertToNoteInfo(NoteCard noteCard, String keyword, Long taskId) {
+	public NoteInfo convertToNoteInfo(NoteCard noteCard, String keyword, Long taskId) {
 		NoteInfo noteInfo = new NoteInfo();
 		noteInfo.setNoteId(noteCard.getNoteId());
 		noteInfo.setTitle(noteCard.getTitle());
@@ -158,7 +236,7 @@ public class DataStorageService {
 	/**
 	 * 转换User为UserInfo
 	 */
-	private UserInfo convertToUserInfo(User user, Long taskId) {
+	public UserInfo convertToUserInfo(User user, Long taskId) {
 		UserInfo userInfo = new UserInfo();
 		userInfo.setUserId(user.getUserId());
 		userInfo.setNickname(user.getNickname());
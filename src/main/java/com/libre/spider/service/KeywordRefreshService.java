@@ -0,0 +1,260 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.KeywordRefreshStat;
+import com.libre.spider.mapper.KeywordRefreshStatMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 关键词自适应刷新服务 按每个关键词的产出（每个请求发现的新笔记数、每小时新增笔记数）计算下次执行时间和翻页深度
+ * <p>
+ * 新笔记多的关键词刷新更频繁、翻页更深，长期没有新笔记的关键词逐步降低频率；所有关键词共享一个全局的每日请求预算，
+ * 预算不足时优先执行产出高的关键词
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeywordRefreshService extends BaseDataService<KeywordRefreshStat, KeywordRefreshStatMapper> {
+
+	private final CrawlerConfig crawlerConfig;
+
+	@Override
+	protected String getEntityName() {
+		return "关键词刷新统计";
+	}
+
+	@Override
+	protected Object getId(KeywordRefreshStat entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(KeywordRefreshStat entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(KeywordRefreshStat entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(KeywordRefreshStat entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 是否启用自适应刷新
+	 */
+	public boolean isEnabled() {
+		return crawlerConfig.getRefresh().isEnabled();
+	}
+
+	/**
+	 * 根据关键词查询刷新统计
+	 * @return 统计，从未执行过时返回null
+	 */
+	public KeywordRefreshStat findByKeyword(String keyword) {
+		LambdaQueryWrapper<KeywordRefreshStat> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(KeywordRefreshStat::getKeyword, keyword);
+		return findOne(wrapper);
+	}
+
+	/**
+	 * 获取关键词本次的最大翻页数 未启用自适应刷新或没有统计时使用全局配置
+	 */
+	public int getMaxPages(String keyword) {
+		if (!isEnabled()) {
+			return crawlerConfig.getMaxPages();
+		}
+		KeywordRefreshStat stat = findByKeyword(keyword);
+		if (stat == null || stat.getNextMaxPages() == null) {
+			return crawlerConfig.getMaxPages();
+		}
+		return stat.getNextMaxPages();
+	}
+
+	/**
+	 * 记录一次执行的产出，并计算下次执行时间和翻页深度
+	 * @param keyword 关键词
+	 * @param requests 本次消耗的请求数
+	 * @param searchPages 本次搜索翻页数
+	 * @param newNotes 本次发现的新笔记数
+	 */
+	public void recordRun(String keyword, int requests, int searchPages, int newNotes) {
+		CrawlerConfig.RefreshConfig config = crawlerConfig.getRefresh();
+		LocalDateTime now = LocalDateTime.now();
+		KeywordRefreshStat stat = findByKeyword(keyword);
+		if (stat == null) {
+			stat = new KeywordRefreshStat();
+			stat.setKeyword(keyword);
+			stat.setRuns(0);
+		}
+		boolean first = stat.getRuns() == null || stat.getRuns() == 0;
+		double alpha = config.getSmoothing();
+
+		// 每个请求的产出
+		double yield = requests > 0 ? (double) newNotes / requests : 0;
+		stat.setYieldRate(smooth(stat.getYieldRate(), yield, alpha, first));
+		stat.setAvgRequests(smooth(stat.getAvgRequests(), requests, alpha, first));
+		if (searchPages > 0) {
+			stat.setNewNotesPerPage(smooth(stat.getNewNotesPerPage(), (double) newNotes / searchPages, alpha, first));
+		}
+
+		// 每小时新增笔记数，首次执行无法计算
+		Double elapsedHours = null;
+		if (stat.getLastRunTime() != null) {
+			elapsedHours = Math.max(1.0 / 60, Duration.between(stat.getLastRunTime(), now).toMinutes() / 60.0);
+			stat.setNewNotesPerHour(
+					smooth(stat.getNewNotesPerHour(), newNotes / elapsedHours, alpha, stat.getNewNotesPerHour() == null));
+		}
+
+		// 下次执行间隔：按新增速度估算积累到目标数量所需的时间；没有新笔记时间隔翻倍
+		long intervalMinutes;
+		Double rate = stat.getNewNotesPerHour();
+		if (rate == null) {
+			intervalMinutes = config.getMinInterval();
+		}
+		else if (rate <= 0) {
+			intervalMinutes = (long) ((elapsedHours != null ? elapsedHours : 0) * 60 * 2);
+		}
+		else {
+			intervalMinutes = (long) (config.getTargetNewNotes() / rate * 60);
+		}
+		intervalMinutes = Math.max(config.getMinInterval(), Math.min(config.getMaxInterval(), intervalMinutes));
+
+		// 下次翻页深度：预计新增笔记数除以每页新笔记数，多翻一页用于衔接水位线
+		int pages = crawlerConfig.getMaxPages();
+		Double perPage = stat.getNewNotesPerPage();
+		if (rate != null && perPage != null && perPage > 0) {
+			double expected = rate * intervalMinutes / 60.0;
+			pages = (int) Math.ceil(expected / perPage) + 1;
+		}
+		pages = Math.max(1, Math.min(config.getMaxPages(), pages));
+
+		// 当日请求数
+		LocalDate today = now.toLocalDate();
+		int requestsToday = today.equals(stat.getStatDate()) && stat.getRequestsToday() != null
+				? stat.getRequestsToday() : 0;
+		stat.setStatDate(today);
+		stat.setRequestsToday(requestsToday + requests);
+
+		stat.setRuns(stat.getRuns() + 1);
+		stat.setLastRunTime(now);
+		stat.setLastRequests(requests);
+		stat.setLastNewNotes(newNotes);
+		stat.setNextRunTime(now.plusMinutes(intervalMinutes));
+		stat.setNextMaxPages(pages);
+
+		LambdaQueryWrapper<KeywordRefreshStat> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(KeywordRefreshStat::getKeyword, keyword);
+		saveOrUpdate(stat, wrapper, null);
+		log.info("更新关键词刷新计划: keyword={}, requests={}, newNotes={}, yield={}, notesPerHour={}, nextRun={}, nextPages={}",
+				keyword, requests, newNotes, format(stat.getYieldRate()), format(stat.getNewNotesPerHour()),
+				stat.getNextRunTime(), pages);
+	}
+
+	private double smooth(Double previous, double value, double alpha, boolean first) {
+		return first || previous == null ? value : alpha * value + (1 - alpha) * previous;
+	}
+
+	private String format(Double value) {
+		return value == null ? "-" : String.format("%.3f", value);
+	}
+
+	/**
+	 * 选出到期需要执行的关键词 从未执行过的关键词优先，其余按产出从高到低，在当日剩余请求预算内依次选取
+	 * @param keywords 关键词列表
+	 * @return 本次应执行的关键词
+	 */
+	public List<String> selectDue(List<String> keywords) {
+		CrawlerConfig.RefreshConfig config = crawlerConfig.getRefresh();
+		LocalDateTime now = LocalDateTime.now();
+		Map<String, KeywordRefreshStat> stats = findList(new LambdaQueryWrapper<>()).stream()
+			.collect(Collectors.toMap(KeywordRefreshStat::getKeyword, Function.identity(), (a, b) -> a));
+
+		List<String> due = new ArrayList<>();
+		for (String raw : keywords) {
+			String keyword = raw == null ? "" : raw.trim();
+			if (keyword.isEmpty()) {
+				continue;
+			}
+			KeywordRefreshStat stat = stats.get(keyword);
+			if (stat == null || stat.getNextRunTime() == null || !stat.getNextRunTime().isAfter(now)) {
+				due.add(keyword);
+			}
+		}
+		due.sort(Comparator.comparingDouble(keyword -> {
+			KeywordRefreshStat stat = stats.get(keyword);
+			return stat == null || stat.getYieldRate() == null ? Double.NEGATIVE_INFINITY : -stat.getYieldRate();
+		}));
+
+		long budget = config.getDailyRequestBudget();
+		if (budget <= 0 || due.isEmpty()) {
+			return due;
+		}
+
+		long remaining = budget - getRequestsToday(stats.values());
+		List<String> selected = new ArrayList<>();
+		for (String keyword : due) {
+			long estimate = estimateRequests(stats.get(keyword));
+			if (estimate > remaining) {
+				log.info("当日请求预算不足，跳过关键词: keyword={}, estimate={}, remaining={}", keyword, estimate, remaining);
+				continue;
+			}
+			remaining -= estimate;
+			selected.add(keyword);
+		}
+		return selected;
+	}
+
+	/**
+	 * 估算一次执行消耗的请求数 没有历史数据时按配置的最大翻页数和笔记数估算
+	 */
+	private long estimateRequests(KeywordRefreshStat stat) {
+		if (stat != null && stat.getAvgRequests() != null) {
+			return Math.max(1, Math.round(stat.getAvgRequests()));
+		}
+		int perNote = 1 + (crawlerConfig.isEnableUserInfo() ? 1 : 0);
+		return crawlerConfig.getMaxPages() + (long) crawlerConfig.getMaxNotesPerKeyword() * perNote;
+	}
+
+	private long getRequestsToday(Iterable<KeywordRefreshStat> stats) {
+		LocalDate today = LocalDate.now();
+		long total = 0;
+		for (KeywordRefreshStat stat : stats) {
+			if (today.equals(stat.getStatDate()) && stat.getRequestsToday() != null) {
+				total += stat.getRequestsToday();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 获取各关键词的刷新计划
+	 */
+	public Map<String, Object> getPlans() {
+		List<KeywordRefreshStat> stats = findList(new LambdaQueryWrapper<>());
+		Map<String, Object> plans = new LinkedHashMap<>();
+		plans.put("enabled", isEnabled());
+		plans.put("dailyRequestBudget", crawlerConfig.getRefresh().getDailyRequestBudget());
+		plans.put("requestsToday", getRequestsToday(stats));
+		plans.put("keywords", stats);
+		return plans;
+	}
+
+}
@@ -0,0 +1,448 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlTask;
+import com.libre.spider.entity.KeywordRefreshStat;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 关键词调度服务 全局最多同时执行K个关键词，其余关键词排队等待
+ * <p>
+ * 每个关键词的流水线以任务名称作为限流流标识，全局令牌桶在各关键词之间轮询分配请求配额，
+ * 因此笔记数量多的关键词不会占满配额，其他关键词始终能按比例推进
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeywordSchedulerService {
+
+	private static final DateTimeFormatter TASK_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm");
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final BatchCrawlerService batchCrawlerService;
+
+	private final CrawlExecutorService crawlExecutorService;
+
+	private final DataStorageService dataStorageService;
+
+	private final CrawlLeaseService crawlLeaseService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	private final KeywordRefreshService keywordRefreshService;
+
+	private final ConcurrentLinkedQueue<KeywordJob> pending = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger activeWorkers = new AtomicInteger(0);
+
+	/**
+	 * 各关键词最近一次执行的进度，key为关键词
+	 */
+	private final Map<String, KeywordProgress> progressMap = new LinkedHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		crawlLeaseService.onExpired(this::takeOver);
+	}
+
+	/**
+	 * 提交一组关键词，已在排队或执行中的关键词不会重复提交，启用节点租约时正由其他节点执行的关键词也会跳过
+	 * @param keywords 关键词列表
+	 * @param taskPrefix 任务名称前缀（如"定时任务"）
+	 * @return 所有关键词执行完成时完成的Future
+	 */
+	public CompletableFuture<Void> submit(List<String> keywords, String taskPrefix) {
+		memoryGovernorService.checkAcceptTask();
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		String timestamp = LocalDateTime.now().format(TASK_TIME_FORMAT);
+
+		synchronized (progressMap) {
+			for (String raw : keywords) {
+				String keyword = raw == null ? "" : raw.trim();
+				if (keyword.isEmpty()) {
+					continue;
+				}
+
+				KeywordProgress existing = progressMap.get(keyword);
+				if (existing != null && existing.isActive()) {
+					log.info("关键词已在排队或执行中，跳过: {}", keyword);
+					futures.add(existing.future);
+					continue;
+				}
+				if (!crawlLeaseService.acquireKeyword(keyword)) {
+					log.info("关键词正由其他节点执行或本周期已执行，跳过: {}", keyword);
+					continue;
+				}
+
+				KeywordProgress progress = new KeywordProgress();
+				progress.setKeyword(keyword);
+				progress.setTaskName(String.format("%s-%s-%s", taskPrefix, keyword, timestamp));
+				progress.setState(KeywordState.PENDING);
+				progress.setSubmitTime(LocalDateTime.now());
+				progressMap.put(keyword, progress);
+
+				pending.add(new KeywordJob(progress, null));
+				futures.add(progress.future);
+			}
+		}
+
+		dispatch();
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * 关键词是否在排队或执行中
+	 */
+	public boolean isActive(String keyword) {
+		synchronized (progressMap) {
+			KeywordProgress progress = progressMap.get(keyword);
+			return progress != null && progress.isActive();
+		}
+	}
+
+	/**
+	 * 释放调用方为一组关键词领取的租约，已在排队或执行中的关键词仍需要租约保护，不释放
+	 * @param keywords 调用方本次领取了租约的关键词
+	 */
+	public void releaseUnscheduled(List<String> keywords) {
+		for (String keyword : keywords) {
+			if (!isActive(keyword)) {
+				crawlLeaseService.releaseKeyword(keyword);
+			}
+		}
+	}
+
+	/**
+	 * 提交恢复一个中断的任务，与新提交的关键词共用并行度上限
+	 * @param taskId 任务ID
+	 * @return 任务执行完成时完成的Future
+	 */
+	public CompletableFuture<Void> submitResume(Long taskId) {
+		CrawlTask task = dataStorageService.getCrawlTask(taskId);
+		if (task == null) {
+			throw new IllegalArgumentException("任务不存在: " + taskId);
+		}
+		if ("SUCCESS".equals(task.getStatus())) {
+			throw new IllegalStateException("任务已成功完成: " + taskId);
+		}
+		memoryGovernorService.checkAcceptTask();
+
+		KeywordProgress progress;
+		synchronized (progressMap) {
+			KeywordProgress existing = progressMap.get(task.getKeyword());
+			if (existing != null && existing.isActive()) {
+				throw new IllegalStateException("关键词已在排队或执行中: " + task.getKeyword());
+			}
+			if (!crawlLeaseService.acquireKeyword(task.getKeyword())) {
+				throw new IllegalStateException("关键词正由其他节点执行或本周期已执行: " + task.getKeyword());
+			}
+
+			progress = new KeywordProgress();
+			progress.setKeyword(task.getKeyword());
+			progress.setTaskName(task.getTaskName());
+			progress.setState(KeywordState.PENDING);
+			progress.setSubmitTime(LocalDateTime.now());
+			progressMap.put(task.getKeyword(), progress);
+
+			pending.add(new KeywordJob(progress, taskId));
+		}
+
+		dispatch();
+		return progress.future;
+	}
+
+	/**
+	 * 启动完成后恢复上次进程中断时仍在运行的任务
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void recoverUnfinishedTasks() {
+		CrawlerConfig.CheckpointConfig config = crawlerConfig.getCheckpoint();
+		if (!config.isEnabled() || !config.isRecoverOnStartup()) {
+			return;
+		}
+
+		try {
+			List<CrawlTask> tasks = dataStorageService.findUnfinishedCrawlTasks();
+			if (tasks.isEmpty()) {
+				return;
+			}
+			log.info("发现{}个中断的任务，开始恢复", tasks.size());
+			for (CrawlTask task : tasks) {
+				try {
+					submitResume(task.getId());
+				}
+				catch (Exception e) {
+					log.warn("恢复任务失败: taskId={}, error={}", task.getId(), e.getMessage());
+				}
+			}
+		}
+		catch (Exception e) {
+			log.error("恢复中断的任务失败", e);
+		}
+	}
+
+	/**
+	 * 接管其他节点过期的关键词租约 优先恢复该关键词未完成的任务，没有未完成的任务时重新执行该关键词
+	 * @param keyword 关键词
+	 */
+	private void takeOver(String keyword) {
+		synchronized (progressMap) {
+			KeywordProgress existing = progressMap.get(keyword);
+			if (existing != null && existing.isActive()) {
+				return;
+			}
+		}
+		if (!crawlLeaseService.acquireKeyword(keyword)) {
+			return;
+		}
+
+		log.warn("接管过期的关键词租约: keyword={}, nodeId={}", keyword, crawlLeaseService.getNodeId());
+		try {
+			CrawlTask unfinished = dataStorageService.findUnfinishedCrawlTasks()
+				.stream()
+				.filter(task -> keyword.equals(task.getKeyword()))
+				.reduce((first, second) -> second)
+				.orElse(null);
+			if (unfinished != null) {
+				submitResume(unfinished.getId());
+			}
+			else {
+				submit(List.of(keyword), "接管任务");
+			}
+		}
+		catch (Exception e) {
+			log.warn("接管关键词失败: keyword={}, error={}", keyword, e.getMessage());
+			crawlLeaseService.releaseKeyword(keyword);
+		}
+	}
+
+	/**
+	 * 在并行度允许的范围内启动工作线程
+	 */
+	private void dispatch() {
+		int parallelism = Math.max(1, crawlerConfig.getSchedule().getParallelKeywords());
+		while (!pending.isEmpty()) {
+			int active = activeWorkers.get();
+			if (active >= parallelism) {
+				return;
+			}
+			if (!activeWorkers.compareAndSet(active, active + 1)) {
+				continue;
+			}
+			try {
+				crawlExecutorService.executeWorker(this::workLoop);
+			}
+			catch (RejectedExecutionException e) {
+				if (activeWorkers.decrementAndGet() > 0) {
+					log.warn("关键词调度线程启动失败，稍后由正在运行的工作线程继续处理: {}", e.getMessage());
+					return;
+				}
+				// 没有工作线程会再取排队的关键词，直接结束它们，避免等待执行结果的调用方一直阻塞
+				log.error("关键词调度线程启动失败，排队的关键词全部结束: pending={}, error={}", pending.size(), e.getMessage());
+				failPending("调度线程启动失败: " + e.getMessage());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 结束所有排队的关键词 标记为失败并释放租约
+	 */
+	private void failPending(String reason) {
+		KeywordJob job;
+		while ((job = pending.poll()) != null) {
+			KeywordProgress progress = job.progress;
+			progress.setState(KeywordState.FAILED);
+			progress.setErrorMessage(reason);
+			finishLease(progress);
+			progress.setEndTime(LocalDateTime.now());
+			progress.future.complete(null);
+		}
+	}
+
+	/**
+	 * 工作线程 依次取出排队的关键词执行，队列为空时退出
+	 */
+	private void workLoop() {
+		try {
+			KeywordJob job;
+			while ((job = pending.poll()) != null) {
+				runJob(job);
+			}
+		}
+		finally {
+			activeWorkers.decrementAndGet();
+		}
+		// 退出前后可能有新提交的关键词
+		dispatch();
+	}
+
+	private void runJob(KeywordJob job) {
+		KeywordProgress progress = job.progress;
+		progress.setState(KeywordState.RUNNING);
+		progress.setStartTime(LocalDateTime.now());
+		log.info("开始处理关键词: keyword={}, running={}, pending={}", progress.getKeyword(), activeWorkers.get(),
+				pending.size());
+
+		try {
+			CrawlPipeline.PipelineResult result = job.resumeTaskId != null
+					? batchCrawlerService.resumeTask(job.resumeTaskId)
+					: batchCrawlerService.crawlKeyword(progress.getTaskName(), progress.getKeyword());
+			progress.setResult(result);
+			progress.setState(result != null && result.getDiscovered() > 0 ? KeywordState.COMPLETED
+					: KeywordState.FAILED);
+		}
+		catch (Exception e) {
+			log.error("关键词执行失败: {}", progress.getKeyword(), e);
+			progress.setState(KeywordState.FAILED);
+			progress.setErrorMessage(e.getMessage());
+		}
+		finally {
+			finishLease(progress);
+			progress.setEndTime(LocalDateTime.now());
+			progress.future.complete(null);
+			log.info("完成处理关键词: keyword={}, state={}", progress.getKeyword(), progress.getState());
+		}
+	}
+
+	/**
+	 * 结束关键词租约 成功时保持到本调度周期结束，避免触发稍晚的节点在同一周期内重复执行；失败时立即释放，由其他节点或下次调度重试
+	 */
+	private void finishLease(KeywordProgress progress) {
+		String keyword = progress.getKeyword();
+		try {
+			if (progress.getState() == KeywordState.COMPLETED) {
+				crawlLeaseService.completeKeyword(keyword, remainingSlotMillis(keyword));
+			}
+			else {
+				crawlLeaseService.releaseKeyword(keyword);
+			}
+		}
+		catch (Exception e) {
+			log.warn("结束关键词租约失败: keyword={}, error={}", keyword, e.getMessage());
+		}
+	}
+
+	/**
+	 * 到关键词下一调度周期开始的剩余时间 启用自适应刷新时为该关键词的下次执行时间，否则为cron的下次触发时间；
+	 * 提前一段时间（不超过租约有效期）结束，给各节点触发时间的差异留出余量
+	 */
+	private long remainingSlotMillis(String keyword) {
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime next;
+		if (keywordRefreshService.isEnabled()) {
+			KeywordRefreshStat stat = keywordRefreshService.findByKeyword(keyword);
+			next = stat != null ? stat.getNextRunTime() : null;
+		}
+		else {
+			next = CronExpression.parse(crawlerConfig.getSchedule().getCron()).next(now);
+		}
+		if (next == null) {
+			return 0;
+		}
+		long remaining = Duration.between(now, next).toMillis();
+		return remaining - Math.min(crawlerConfig.getLease().getTtl(), remaining / 2);
+	}
+
+	/**
+	 * 获取各关键词的进度，执行中的关键词返回实时计数
+	 */
+	public List<KeywordProgress> getProgress() {
+		List<KeywordProgress> list;
+		synchronized (progressMap) {
+			list = new ArrayList<>(progressMap.values());
+		}
+		for (KeywordProgress progress : list) {
+			if (progress.getState() == KeywordState.RUNNING) {
+				CrawlPipeline.PipelineResult live = batchCrawlerService.getRunningProgress(progress.getTaskName());
+				if (live != null) {
+					progress.setResult(live);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 获取调度统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("parallelKeywords", crawlerConfig.getSchedule().getParallelKeywords());
+		stats.put("running", activeWorkers.get());
+		stats.put("pending", pending.size());
+		return stats;
+	}
+
+	/**
+	 * 关键词状态
+	 */
+	public enum KeywordState {
+
+		PENDING, RUNNING, COMPLETED, FAILED
+
+	}
+
+	/**
+	 * 关键词进度
+	 */
+	@Data
+	public static class KeywordProgress {
+
+		private String keyword;
+
+		private String taskName;
+
+		private volatile KeywordState state;
+
+		private LocalDateTime submitTime;
+
+		private LocalDateTime startTime;
+
+		private LocalDateTime endTime;
+
+		private volatile CrawlPipeline.PipelineResult result;
+
+		private String errorMessage;
+
+		@Getter(AccessLevel.NONE)
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		boolean isActive() {
+			return state == KeywordState.PENDING || state == KeywordState.RUNNING;
+		}
+
+	}
+
+	/**
+	 * 排队的关键词任务
+	 * @param progress 进度
+	 * @param resumeTaskId 恢复的任务ID，新任务为null
+	 */
+	private record KeywordJob(KeywordProgress progress, Long resumeTaskId) {
+	}
+
+}
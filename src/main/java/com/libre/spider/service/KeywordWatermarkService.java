@@ -0,0 +1,135 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.KeywordWatermark;
+import com.libre.spider.mapper.KeywordWatermarkMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 关键词水位线数据服务 按时间排序搜索时记录每个关键词最新的前K个笔记ID，下次执行遇到这些笔记即可停止翻页
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeywordWatermarkService extends BaseDataService<KeywordWatermark, KeywordWatermarkMapper> {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ObjectMapper objectMapper;
+
+	@Override
+	protected String getEntityName() {
+		return "关键词水位线";
+	}
+
+	@Override
+	protected Object getId(KeywordWatermark entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(KeywordWatermark entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(KeywordWatermark entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	@Override
+	protected void setUpdateTime(KeywordWatermark entity) {
+		entity.setUpdateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 根据关键词查询水位线
+	 * @param keyword 关键词
+	 * @return 水位线，不存在时返回null
+	 */
+	public KeywordWatermark findByKeyword(String keyword) {
+		LambdaQueryWrapper<KeywordWatermark> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(KeywordWatermark::getKeyword, keyword);
+		return findOne(wrapper);
+	}
+
+	/**
+	 * 获取关键词已知的最新笔记ID（按从新到旧排列）
+	 * @param keyword 关键词
+	 * @return 笔记ID集合，没有水位线时返回空集合
+	 */
+	public Set<String> getKnownNoteIds(String keyword) {
+		KeywordWatermark watermark = findByKeyword(keyword);
+		if (watermark == null || watermark.getKnownNoteIds() == null) {
+			return new LinkedHashSet<>();
+		}
+		try {
+			return objectMapper.readValue(watermark.getKnownNoteIds(), new TypeReference<LinkedHashSet<String>>() {
+			});
+		}
+		catch (Exception e) {
+			log.warn("解析关键词水位线失败，按全量爬取处理: keyword={}, error={}", keyword, e.getMessage());
+			return new LinkedHashSet<>();
+		}
+	}
+
+	/**
+	 * 推进水位线 本次看到的笔记ID排在前面，与原有的已知ID合并后保留最新的前K个
+	 * @param keyword 关键词
+	 * @param newestNoteIds 本次按顺序看到的笔记ID（从新到旧）
+	 * @param previous 原有的已知ID
+	 * @param pages 本次翻页数
+	 * @param newNotes 本次发现的新笔记数
+	 */
+	public void advance(String keyword, List<String> newestNoteIds, Set<String> previous, int pages, int newNotes) {
+		if (newestNoteIds.isEmpty()) {
+			return;
+		}
+
+		int topK = Math.max(1, crawlerConfig.getWatermark().getTopK());
+		Set<String> merged = new LinkedHashSet<>();
+		for (String noteId : newestNoteIds) {
+			if (merged.size() >= topK) {
+				break;
+			}
+			merged.add(noteId);
+		}
+		for (String noteId : previous) {
+			if (merged.size() >= topK) {
+				break;
+			}
+			merged.add(noteId);
+		}
+
+		KeywordWatermark watermark = new KeywordWatermark();
+		watermark.setKeyword(keyword);
+		watermark.setNewestNoteId(newestNoteIds.get(0));
+		watermark.setLastRunTime(LocalDateTime.now());
+		watermark.setLastPages(pages);
+		watermark.setLastNewNotes(newNotes);
+		try {
+			watermark.setKnownNoteIds(objectMapper.writeValueAsString(merged));
+		}
+		catch (Exception e) {
+			log.warn("序列化关键词水位线失败: keyword={}, error={}", keyword, e.getMessage());
+			return;
+		}
+
+		LambdaQueryWrapper<KeywordWatermark> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(KeywordWatermark::getKeyword, keyword);
+		saveOrUpdate(watermark, wrapper, null);
+		log.info("更新关键词水位线: keyword={}, newestNoteId={}, known={}, pages={}, newNotes={}", keyword,
+				watermark.getNewestNoteId(), merged.size(), pages, newNotes);
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.MemoryPressure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存保护服务 按GC后的堆占用率（存活对象占比，不受尚未回收的垃圾影响）划分压力等级，供各处降级使用
+ * <p>
+ * 偏高时爬取流水线和工作队列的在途窗口减半、写入缓冲不再攒批；危险时在途窗口降为1、拒绝新任务、
+ * REST接口停止继续收集结果。老年代超过偏高阈值时由JVM的内存通知立即重新评估，此外每5秒评估一次
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MemoryGovernorService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+	private volatile MemoryPressure level = MemoryPressure.NORMAL;
+
+	private volatile double occupancy = 0;
+
+	private final AtomicLong highEvents = new AtomicLong(0);
+
+	private final AtomicLong criticalEvents = new AtomicLong(0);
+
+	private final AtomicLong thresholdNotifications = new AtomicLong(0);
+
+	private final AtomicLong rejectedTasks = new AtomicLong(0);
+
+	private NotificationListener listener;
+
+	@PostConstruct
+	public void init() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool);
+			}
+		}
+		CrawlerConfig.MemoryConfig config = crawlerConfig.getMemory();
+		if (!config.isEnabled()) {
+			return;
+		}
+
+		// GC后占用超过偏高阈值的内存池会发出通知，不必等到下一次定时评估
+		for (MemoryPoolMXBean pool : heapPools) {
+			long max = pool.getUsage().getMax();
+			if (pool.isCollectionUsageThresholdSupported() && max > 0) {
+				pool.setCollectionUsageThreshold((long) (max * config.getHighRatio()));
+			}
+		}
+		listener = (notification, handback) -> {
+			if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+				thresholdNotifications.incrementAndGet();
+				evaluate();
+			}
+		};
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+		log.info("初始化内存保护服务完成: heapMax={}MB, highRatio={}, criticalRatio={}", toMb(getHeapMax()),
+				config.getHighRatio(), config.getCriticalRatio());
+	}
+
+	/**
+	 * 重新计算GC后的堆占用率和压力等级
+	 */
+	@Scheduled(fixedDelay = 5000)
+	public synchronized void evaluate() {
+		CrawlerConfig.MemoryConfig config = crawlerConfig.getMemory();
+		if (!config.isEnabled()) {
+			level = MemoryPressure.NORMAL;
+			return;
+		}
+		occupancy = measure();
+		MemoryPressure next = classify(occupancy, config);
+		if (next == level) {
+			return;
+		}
+		if (next == MemoryPressure.CRITICAL) {
+			criticalEvents.incrementAndGet();
+		}
+		else if (next == MemoryPressure.HIGH && level == MemoryPressure.NORMAL) {
+			highEvents.incrementAndGet();
+		}
+		if (next.ordinal() > level.ordinal()) {
+			log.warn("内存压力升高: {} -> {}, occupancy={}", level, next, String.format("%.2f", occupancy));
+		}
+		else {
+			log.info("内存压力回落: {} -> {}, occupancy={}", level, next, String.format("%.2f", occupancy));
+		}
+		level = next;
+	}
+
+	/**
+	 * GC后的堆占用率 各堆内存池上次GC后的占用之和除以堆最大值；不支持GC后统计的内存池按当前占用计算
+	 */
+	private double measure() {
+		long max = getHeapMax();
+		if (max <= 0) {
+			return 0;
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			used += usage != null ? usage.getUsed() : pool.getUsage().getUsed();
+		}
+		return (double) used / max;
+	}
+
+	private MemoryPressure classify(double value, CrawlerConfig.MemoryConfig config) {
+		double hysteresis = Math.max(0, config.getHysteresis());
+		if (value >= config.getCriticalRatio()
+				|| level == MemoryPressure.CRITICAL && value >= config.getCriticalRatio() - hysteresis) {
+			return MemoryPressure.CRITICAL;
+		}
+		if (value >= config.getHighRatio()
+				|| level != MemoryPressure.NORMAL && value >= config.getHighRatio() - hysteresis) {
+			return MemoryPressure.HIGH;
+		}
+		return MemoryPressure.NORMAL;
+	}
+
+	private long getHeapMax() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+	}
+
+	public MemoryPressure getLevel() {
+		return level;
+	}
+
+	/**
+	 * GC后的堆占用率（0~1）
+	 */
+	public double getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * 是否处于偏高或危险等级
+	 */
+	public boolean isUnderPressure() {
+		return level != MemoryPressure.NORMAL;
+	}
+
+	/**
+	 * 是否处于危险等级
+	 */
+	public boolean isCritical() {
+		return level == MemoryPressure.CRITICAL;
+	}
+
+	/**
+	 * 按内存压力缩小在途窗口
+	 * @param window 其他因素（如写入背压）允许的窗口
+	 * @return 偏高时减半（至少为1），危险时不超过1；输入为0（暂停）时保持为0
+	 */
+	public int scaleWindow(int window) {
+		return switch (level) {
+			case NORMAL -> window;
+			case HIGH -> Math.min(window, Math.max(1, window / 2));
+			case CRITICAL -> Math.min(window, 1);
+		};
+	}
+
+	/**
+	 * 检查是否可以接收新任务
+	 * @throws IllegalStateException 内存处于危险等级且配置为拒绝新任务
+	 */
+	public void checkAcceptTask() {
+		if (isCritical() && crawlerConfig.getMemory().isRejectTasks()) {
+			rejectedTasks.incrementAndGet();
+			throw new IllegalStateException(
+					String.format("内存使用率过高(%.2f)，暂不接收新任务", occupancy));
+		}
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", crawlerConfig.getMemory().isEnabled());
+		stats.put("level", level);
+		stats.put("occupancyAfterGc", String.format("%.2f", occupancy));
+		stats.put("heapUsedMb", toMb(heap.getUsed()));
+		stats.put("heapCommittedMb", toMb(heap.getCommitted()));
+		stats.put("heapMaxMb", toMb(heap.getMax()));
+		stats.put("highRatio", crawlerConfig.getMemory().getHighRatio());
+		stats.put("criticalRatio", crawlerConfig.getMemory().getCriticalRatio());
+		stats.put("highEvents", highEvents.get());
+		stats.put("criticalEvents", criticalEvents.get());
+		stats.put("thresholdNotifications", thresholdNotifications.get());
+		stats.put("rejectedTasks", rejectedTasks.get());
+		return stats;
+	}
+
+	private long toMb(long bytes) {
+		return bytes < 0 ? -1 : bytes / (1024 * 1024);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (listener == null) {
+			return;
+		}
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+		}
+		catch (ListenerNotFoundException e) {
+			// 未注册成功，忽略
+		}
+	}
+
+}
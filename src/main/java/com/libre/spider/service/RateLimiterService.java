@@ -0,0 +1,221 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.exception.RateLimitException;
+import com.libre.spider.exception.TaskTimeoutException;
+import com.libre.spider.limiter.AdaptivePacer;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.limiter.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局限流服务 按端点类别维护共享的令牌桶，所有任务的请求都从这里获取令牌
+ * <p>
+ * 启用集群限流时，本节点取得令牌后还需要取得集群令牌，rateLimit中配置的速率即为整个集群的速率
+ * <p>
+ * 启用自适应节奏时，令牌桶的生成间隔随服务端反馈调整：配置的间隔为下限，被限流或响应变慢时放大，恢复正常后逐步回落
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RateLimiterService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ClusterRateLimitService clusterRateLimitService;
+
+	private final Map<EndpointType, TokenBucket> buckets = new EnumMap<>(EndpointType.class);
+
+	private final Map<EndpointType, AdaptivePacer> pacers = new EnumMap<>(EndpointType.class);
+
+	@PostConstruct
+	public void init() {
+		for (EndpointType endpointType : EndpointType.values()) {
+			CrawlerConfig.BucketConfig bucketConfig = crawlerConfig.getRateLimit().getBucket(endpointType);
+			long interval = resolveInterval(bucketConfig);
+			buckets.put(endpointType, new TokenBucket(endpointType.name(), interval, bucketConfig.getBurst()));
+			pacers.put(endpointType, new AdaptivePacer(endpointType.name(), crawlerConfig.getPacing(), interval));
+			CrawlerConfig.PriorityConfig priorityConfig = crawlerConfig.getPriority();
+			buckets.get(endpointType)
+				.setLanes(priorityConfig.getInteractiveWeight(), priorityConfig.getBatchWeight(),
+						priorityConfig.getReservedTokens());
+			log.info("初始化限流令牌桶: endpoint={}, interval={}ms, burst={}", endpointType, interval,
+					bucketConfig.getBurst());
+		}
+	}
+
+	/**
+	 * 获取指定端点类别的请求令牌，按当前线程的优先级和所属任务公平排队，启用集群限流时再取得集群令牌 等待时间不超过任务的剩余时间
+	 * @param endpointType 端点类别
+	 * @throws RateLimitException 等待超时
+	 * @throws TaskTimeoutException 任务已超过截止时间
+	 */
+	public void acquire(EndpointType endpointType) {
+		CrawlContext context = CrawlContext.current();
+		context.checkDeadline();
+		String flow = context.getFlow();
+		long timeout = Math.min(crawlerConfig.getRateLimit().getAcquireTimeout(), context.remainingMillis());
+
+		try {
+			if (!buckets.get(endpointType).acquire(flow, context.getPriority(), timeout, TimeUnit.MILLISECONDS)) {
+				context.checkDeadline();
+				throw new RateLimitException(
+						String.format("等待限流令牌超时: endpoint=%s, flow=%s, timeout=%dms", endpointType, flow, timeout));
+			}
+			long clusterTimeout = Math.min(crawlerConfig.getRateLimit().getAcquireTimeout(), context.remainingMillis());
+			if (!clusterRateLimitService.acquire(endpointType, clusterTimeout)) {
+				context.checkDeadline();
+				throw new RateLimitException(String.format("等待集群限流令牌超时: endpoint=%s, flow=%s, timeout=%dms",
+						endpointType, flow, clusterTimeout));
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RateLimitException("等待限流令牌被中断: endpoint=" + endpointType, e);
+		}
+	}
+
+	/**
+	 * 尝试立即获取令牌，不等待
+	 */
+	public boolean tryAcquire(EndpointType endpointType) {
+		if (!buckets.get(endpointType).tryAcquire()) {
+			return false;
+		}
+		try {
+			return clusterRateLimitService.acquire(endpointType, 0);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * 端点类别是否有空闲配额（没有请求在排队且积攒了reserve个令牌），供低优先级的后台工作判断是否可以发送请求
+	 */
+	public boolean hasSpare(EndpointType endpointType, double reserve) {
+		return buckets.get(endpointType).hasSpare(reserve);
+	}
+
+	/**
+	 * 记录一次响应，用于调整请求节奏
+	 * @param endpointType 端点类别
+	 * @param statusCode HTTP状态码
+	 * @param latencyMs 响应耗时（毫秒）
+	 */
+	public void recordResponse(EndpointType endpointType, int statusCode, long latencyMs) {
+		if (!crawlerConfig.getPacing().isEnabled()) {
+			return;
+		}
+		AdaptivePacer pacer = pacers.get(endpointType);
+		long before = pacer.getIntervalMs();
+		long after = isThrottled(statusCode) ? pacer.onThrottled() : pacer.onResponse(latencyMs);
+		applyPace(endpointType, before, after);
+	}
+
+	/**
+	 * 记录一次限流/风控信号（如HTTP 200但业务错误码表示限流）
+	 */
+	public void recordThrottled(EndpointType endpointType) {
+		if (!crawlerConfig.getPacing().isEnabled()) {
+			return;
+		}
+		AdaptivePacer pacer = pacers.get(endpointType);
+		long before = pacer.getIntervalMs();
+		applyPace(endpointType, before, pacer.onThrottled());
+	}
+
+	/**
+	 * 记录一次请求失败（连接失败、读取超时等）
+	 */
+	public void recordError(EndpointType endpointType) {
+		if (!crawlerConfig.getPacing().isEnabled()) {
+			return;
+		}
+		AdaptivePacer pacer = pacers.get(endpointType);
+		long before = pacer.getIntervalMs();
+		applyPace(endpointType, before, pacer.onError());
+	}
+
+	/**
+	 * 间隔变化时更新令牌桶 退避期间突发容量降为1，避免积攒的令牌在恢复前集中发出
+	 */
+	private void applyPace(EndpointType endpointType, long before, long after) {
+		if (before == after) {
+			return;
+		}
+		AdaptivePacer pacer = pacers.get(endpointType);
+		int burst = pacer.isBackedOff() ? 1 : crawlerConfig.getRateLimit().getBucket(endpointType).getBurst();
+		buckets.get(endpointType).setRate(after, burst);
+		if (after > before) {
+			log.info("请求节奏放慢: endpoint={}, interval={}ms -> {}ms", endpointType, before, after);
+		}
+		else if (!pacer.isBackedOff()) {
+			log.info("请求节奏已恢复: endpoint={}, interval={}ms", endpointType, after);
+		}
+	}
+
+	/**
+	 * 按当前配置更新各端点类别的最小间隔和突发容量（运行时调整配置后调用），已退避的端点保留当前间隔
+	 */
+	public synchronized void reconfigure() {
+		boolean pacingEnabled = crawlerConfig.getPacing().isEnabled();
+		for (EndpointType endpointType : EndpointType.values()) {
+			CrawlerConfig.BucketConfig bucketConfig = crawlerConfig.getRateLimit().getBucket(endpointType);
+			AdaptivePacer pacer = pacers.get(endpointType);
+			pacer.setFloor(resolveInterval(bucketConfig));
+			if (!pacingEnabled) {
+				pacer.reset();
+			}
+			int burst = pacer.isBackedOff() ? 1 : bucketConfig.getBurst();
+			buckets.get(endpointType).setRate(pacer.getIntervalMs(), burst);
+			log.info("更新限流令牌桶: endpoint={}, interval={}ms, burst={}", endpointType, pacer.getIntervalMs(), burst);
+		}
+	}
+
+	/**
+	 * 是否为限流/风控状态码（461/471为小红书的风控状态码）
+	 */
+	private boolean isThrottled(int statusCode) {
+		return statusCode == 429 || statusCode == 461 || statusCode == 471;
+	}
+
+	/**
+	 * 所有端点类别中等待令牌的请求总数
+	 */
+	public int getWaiting() {
+		int waiting = 0;
+		for (TokenBucket bucket : buckets.values()) {
+			waiting += bucket.getWaiting();
+		}
+		return waiting;
+	}
+
+	/**
+	 * 获取限流统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		buckets.forEach((endpointType, bucket) -> {
+			Map<String, Object> bucketStats = bucket.getStats();
+			bucketStats.putAll(pacers.get(endpointType).getStats());
+			stats.put(endpointType.name(), bucketStats);
+		});
+		return stats;
+	}
+
+	private long resolveInterval(CrawlerConfig.BucketConfig bucketConfig) {
+		return bucketConfig.getInterval() > 0 ? bucketConfig.getInterval() : crawlerConfig.getRequestInterval();
+	}
+
+}
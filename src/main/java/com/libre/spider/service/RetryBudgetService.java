@@ -0,0 +1,95 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.limiter.RetryBudget;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算服务 所有重试共享一个预算，并统计重试放大倍数
+ * <p>
+ * 放大倍数 = 实际发出的HTTP请求数 / 业务操作数，没有重试和降级时为1
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetryBudgetService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private RetryBudget budget;
+
+	private final AtomicLong operations = new AtomicLong(0);
+
+	private final AtomicLong requests = new AtomicLong(0);
+
+	private final AtomicLong retries = new AtomicLong(0);
+
+	private final AtomicLong denied = new AtomicLong(0);
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.RetryBudgetConfig config = crawlerConfig.getRetryBudget();
+		budget = new RetryBudget(config.getWindow());
+		log.info("初始化重试预算: enabled={}, ratio={}, minRetries={}, window={}ms", config.isEnabled(),
+				config.getRatio(), config.getMinRetries(), config.getWindow());
+	}
+
+	/**
+	 * 记录一次业务操作（首次尝试）
+	 */
+	public void recordOperation() {
+		operations.incrementAndGet();
+	}
+
+	/**
+	 * 记录一次实际发出的HTTP请求
+	 */
+	public void recordRequest() {
+		requests.incrementAndGet();
+		budget.recordRequest();
+	}
+
+	/**
+	 * 申请一次重试
+	 * @return 预算允许时返回true，否则调用方应直接失败
+	 */
+	public boolean tryAcquireRetry() {
+		CrawlerConfig.RetryBudgetConfig config = crawlerConfig.getRetryBudget();
+		if (!config.isEnabled() || budget.tryAcquire(config.getRatio(), config.getMinRetries())) {
+			retries.incrementAndGet();
+			return true;
+		}
+		denied.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		CrawlerConfig.RetryBudgetConfig config = crawlerConfig.getRetryBudget();
+		long operationCount = operations.get();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", config.isEnabled());
+		stats.put("ratio", config.getRatio());
+		stats.put("operations", operationCount);
+		stats.put("requests", requests.get());
+		stats.put("retries", retries.get());
+		stats.put("denied", denied.get());
+		stats.put("retryAmplification",
+				operationCount > 0 ? String.format("%.2f", (double) (operationCount + retries.get()) / operationCount)
+						: "-");
+		stats.put("requestAmplification",
+				operationCount > 0 ? String.format("%.2f", (double) requests.get() / operationCount) : "-");
+		stats.putAll(budget.getStats());
+		return stats;
+	}
+
+}
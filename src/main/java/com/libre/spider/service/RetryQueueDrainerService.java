@@ -0,0 +1,213 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlRetryItem;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.enums.ErrorType;
+import com.libre.spider.enums.WorkItemType;
+import com.libre.spider.limiter.AdaptiveLimiter;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.utils.ExceptionHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟重试队列消费服务 单个低优先级后台线程，只在限流令牌和并发许可都有空闲时重试到期的条目，不与爬取流程争抢配额
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetryQueueDrainerService {
+
+	private static final String FLOW = "retry-queue";
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final CrawlRetryQueueService crawlRetryQueueService;
+
+	private final BatchCrawlerService batchCrawlerService;
+
+	private final RateLimiterService rateLimiterService;
+
+	private final ConcurrencyControlService concurrencyControlService;
+
+	private final ExceptionHandler exceptionHandler;
+
+	private Thread drainer;
+
+	private volatile boolean running = false;
+
+	private final AtomicLong attempted = new AtomicLong(0);
+
+	private final AtomicLong succeeded = new AtomicLong(0);
+
+	private final AtomicLong rescheduled = new AtomicLong(0);
+
+	private final AtomicLong dead = new AtomicLong(0);
+
+	private final AtomicLong skippedNoCapacity = new AtomicLong(0);
+
+	@PostConstruct
+	public void init() {
+		if (!crawlRetryQueueService.isEnabled()) {
+			return;
+		}
+		running = true;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("retry-queue-");
+		threadFactory.setDaemon(true);
+		threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+		drainer = threadFactory.newThread(this::drainLoop);
+		drainer.start();
+		CrawlerConfig.RetryQueueConfig config = crawlerConfig.getRetryQueue();
+		log.info("初始化延迟重试队列完成: maxAttempts={}, initialDelay={}ms, maxDelay={}ms, negativeTtl={}ms",
+				config.getMaxAttempts(), config.getInitialDelay(), config.getMaxDelay(), config.getNegativeTtl());
+	}
+
+	private void drainLoop() {
+		CrawlerConfig.RetryQueueConfig config = crawlerConfig.getRetryQueue();
+		while (running) {
+			try {
+				crawlRetryQueueService.refreshNegativeCache();
+				if (hasSpareCapacity()) {
+					List<CrawlRetryItem> items = crawlRetryQueueService.claimDue(config.getBatchSize());
+					for (CrawlRetryItem item : items) {
+						if (!running) {
+							break;
+						}
+						process(item);
+					}
+				}
+				Thread.sleep(config.getPollInterval());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (Exception e) {
+				log.error("延迟重试队列处理失败", e);
+				try {
+					Thread.sleep(config.getPollInterval());
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
+	private void process(CrawlRetryItem item) throws InterruptedException {
+		WorkItemType type = WorkItemType.valueOf(item.getWorkType());
+		AdaptiveLimiter.Permit permit = null;
+		// 配额被爬取流程占用时等待空闲，超过领取超时后放弃，条目会被重新领取
+		while (running && LocalDateTime.now().isBefore(item.getNextAttemptTime())) {
+			if (rateLimiterService.hasSpare(endpointOf(type), crawlerConfig.getRetryQueue().getSpareTokens())) {
+				permit = concurrencyControlService.tryAcquirePermit();
+				if (permit != null) {
+					break;
+				}
+			}
+			skippedNoCapacity.incrementAndGet();
+			Thread.sleep(crawlerConfig.getRetryQueue().getPollInterval());
+		}
+		if (permit == null) {
+			return;
+		}
+
+		attempted.incrementAndGet();
+		try (CrawlContext.Scope ignored = CrawlContext.open(CrawlContext.of(FLOW))) {
+			boolean success = batchCrawlerService.processRetryItem(item);
+			permit.success();
+			if (success) {
+				crawlRetryQueueService.complete(item);
+				succeeded.incrementAndGet();
+				log.info("延迟重试成功: type={}, key={}, attempts={}", type, item.getItemKey(), item.getAttempts());
+			}
+			else {
+				recordFailure(item, ErrorType.PARSE_ERROR, "解析失败");
+			}
+		}
+		catch (Exception e) {
+			ErrorType errorType = exceptionHandler.classify(e);
+			if (errorType.isOverload()) {
+				permit.dropped();
+			}
+			recordFailure(item, errorType, e.getMessage());
+		}
+		finally {
+			permit.release();
+		}
+	}
+
+	private void recordFailure(CrawlRetryItem item, ErrorType errorType, String errorMessage) {
+		if (crawlRetryQueueService.recordFailure(item, errorType, errorMessage)) {
+			dead.incrementAndGet();
+		}
+		else {
+			rescheduled.incrementAndGet();
+			log.debug("延迟重试失败，稍后再试: type={}, key={}, attempts={}, nextAttempt={}, error={}", item.getWorkType(),
+					item.getItemKey(), item.getAttempts(), item.getNextAttemptTime(), errorMessage);
+		}
+	}
+
+	/**
+	 * 笔记详情或用户信息端点有空闲配额时才领取条目（笔记详情按Feed接口判断）
+	 */
+	private boolean hasSpareCapacity() {
+		double reserve = crawlerConfig.getRetryQueue().getSpareTokens();
+		boolean spare = rateLimiterService.hasSpare(EndpointType.FEED_API, reserve)
+				|| rateLimiterService.hasSpare(EndpointType.USER_PROFILE, reserve);
+		if (!spare) {
+			skippedNoCapacity.incrementAndGet();
+		}
+		return spare;
+	}
+
+	private EndpointType endpointOf(WorkItemType type) {
+		return type == WorkItemType.USER_INFO ? EndpointType.USER_PROFILE : EndpointType.FEED_API;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", crawlRetryQueueService.isEnabled());
+		stats.put("attempted", attempted.get());
+		stats.put("succeeded", succeeded.get());
+		stats.put("rescheduled", rescheduled.get());
+		stats.put("dead", dead.get());
+		stats.put("skippedNoCapacity", skippedNoCapacity.get());
+		if (crawlRetryQueueService.isEnabled()) {
+			stats.put("queue", crawlRetryQueueService.getStats());
+		}
+		return stats;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		drainer.interrupt();
+		try {
+			drainer.join(5000);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.info("延迟重试队列已关闭: succeeded={}, dead={}", succeeded.get(), dead.get());
+	}
+
+}
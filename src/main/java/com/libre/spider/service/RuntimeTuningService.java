@@ -0,0 +1,279 @@
+package com.libre.spider.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.ConfigChangeLog;
+import com.libre.spider.enums.EndpointType;
+import com.libre.spider.mapper.ConfigChangeLogMapper;
+import com.libre.spider.model.RuntimeTuning;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 运行时配置调整服务 不重启调整并发、请求节奏和批量大小，正在执行的任务不受影响
+ * <p>
+ * 先整体校验，全部通过后才依次修改配置并更新令牌桶、节奏和舱壁；任何一项不合法时不做任何修改。
+ * 每次生效的变更连同旧值、新值和操作来源记入config_change_log。变更只在当前节点生效，不会同步到其他节点
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RuntimeTuningService extends BaseDataService<ConfigChangeLog, ConfigChangeLogMapper> {
+
+	/**
+	 * 允许的最小请求间隔（毫秒），防止误操作导致请求过于密集
+	 */
+	private static final long MIN_INTERVAL = 100;
+
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final ConcurrencyControlService concurrencyControlService;
+
+	private final RateLimiterService rateLimiterService;
+
+	private final BulkheadService bulkheadService;
+
+	private final CrawlLeaseService crawlLeaseService;
+
+	private final ObjectMapper objectMapper;
+
+	@Override
+	protected String getEntityName() {
+		return "配置变更记录";
+	}
+
+	@Override
+	protected Object getId(ConfigChangeLog entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected void setId(ConfigChangeLog entity, Object id) {
+		entity.setId((Long) id);
+	}
+
+	@Override
+	protected void setCreateTime(ConfigChangeLog entity) {
+		entity.setCreateTime(LocalDateTime.now());
+	}
+
+	/**
+	 * 校验并应用配置调整
+	 * @param tuning 调整参数，为null的项不修改
+	 * @param operator 操作来源
+	 * @return 实际发生的变更（配置项 -> 旧值/新值），没有变化时为空
+	 * @throws IllegalArgumentException 参数不合法，此时不做任何修改
+	 */
+	public synchronized Map<String, Object> apply(RuntimeTuning tuning, String operator) {
+		List<String> errors = new ArrayList<>();
+		List<Change> changes = new ArrayList<>();
+
+		// 并发数：先修改上下限，再设置当前值
+		CrawlerConfig.ConcurrencyLimitConfig limitConfig = crawlerConfig.getConcurrencyLimit();
+		int minConcurrency = valueOr(tuning.getMinConcurrency(), limitConfig.getMinLimit());
+		int maxConcurrency = valueOr(tuning.getMaxConcurrency(), limitConfig.getMaxLimit());
+		check(errors, minConcurrency >= 1, "minConcurrency必须大于0");
+		check(errors, maxConcurrency >= minConcurrency, "maxConcurrency不能小于minConcurrency");
+		if (tuning.getConcurrency() != null) {
+			check(errors, tuning.getConcurrency() >= minConcurrency && tuning.getConcurrency() <= maxConcurrency,
+					"concurrency必须在 " + minConcurrency + " 到 " + maxConcurrency + " 之间");
+		}
+		stage(changes, "concurrencyLimit.minLimit", limitConfig.getMinLimit(), tuning.getMinConcurrency(),
+				limitConfig::setMinLimit);
+		stage(changes, "concurrencyLimit.maxLimit", limitConfig.getMaxLimit(), tuning.getMaxConcurrency(),
+				limitConfig::setMaxLimit);
+		int currentConcurrency = concurrencyControlService.getCurrentConcurrency();
+		Integer concurrency = tuning.getConcurrency();
+		if (concurrency == null && (currentConcurrency < minConcurrency || currentConcurrency > maxConcurrency)) {
+			// 只修改了上下限，当前值收缩到新的范围内
+			concurrency = Math.max(minConcurrency, Math.min(maxConcurrency, currentConcurrency));
+		}
+		stage(changes, "concurrency", currentConcurrency, concurrency, concurrencyControlService::setConcurrency);
+
+		// 请求节奏
+		if (tuning.getRequestInterval() != null) {
+			check(errors, tuning.getRequestInterval() >= MIN_INTERVAL, "requestInterval不能小于" + MIN_INTERVAL + "ms");
+		}
+		stage(changes, "requestInterval", crawlerConfig.getRequestInterval(), tuning.getRequestInterval(),
+				crawlerConfig::setRequestInterval);
+		if (tuning.getEndpoints() != null) {
+			tuning.getEndpoints().forEach((endpointType, endpoint) -> stageEndpoint(errors, changes, endpointType,
+					endpoint));
+		}
+		CrawlerConfig.PacingConfig pacing = crawlerConfig.getPacing();
+		if (tuning.getPacingMaxInterval() != null) {
+			check(errors, tuning.getPacingMaxInterval() >= 1000, "pacingMaxInterval不能小于1000ms");
+		}
+		stage(changes, "pacing.enabled", pacing.isEnabled(), tuning.getPacingEnabled(), pacing::setEnabled);
+		stage(changes, "pacing.maxInterval", pacing.getMaxInterval(), tuning.getPacingMaxInterval(),
+				pacing::setMaxInterval);
+
+		// 任务规模和批量大小
+		checkRange(errors, "maxPages", tuning.getMaxPages(), 1, Integer.MAX_VALUE);
+		checkRange(errors, "maxNotesPerKeyword", tuning.getMaxNotesPerKeyword(), 1, Integer.MAX_VALUE);
+		checkRange(errors, "writeBehindBatchSize", tuning.getWriteBehindBatchSize(), 1, MAX_BATCH_SIZE);
+		checkRange(errors, "workQueueClaimBatchSize", tuning.getWorkQueueClaimBatchSize(), 1, MAX_BATCH_SIZE);
+		checkRange(errors, "retryQueueBatchSize", tuning.getRetryQueueBatchSize(), 1, MAX_BATCH_SIZE);
+		stage(changes, "maxPages", crawlerConfig.getMaxPages(), tuning.getMaxPages(), crawlerConfig::setMaxPages);
+		stage(changes, "maxNotesPerKeyword", crawlerConfig.getMaxNotesPerKeyword(), tuning.getMaxNotesPerKeyword(),
+				crawlerConfig::setMaxNotesPerKeyword);
+		stage(changes, "writeBehind.batchSize", crawlerConfig.getWriteBehind().getBatchSize(),
+				tuning.getWriteBehindBatchSize(), crawlerConfig.getWriteBehind()::setBatchSize);
+		stage(changes, "workQueue.claimBatchSize", crawlerConfig.getWorkQueue().getClaimBatchSize(),
+				tuning.getWorkQueueClaimBatchSize(), crawlerConfig.getWorkQueue()::setClaimBatchSize);
+		stage(changes, "retryQueue.batchSize", crawlerConfig.getRetryQueue().getBatchSize(),
+				tuning.getRetryQueueBatchSize(), crawlerConfig.getRetryQueue()::setBatchSize);
+
+		if (!errors.isEmpty()) {
+			throw new IllegalArgumentException(String.join("; ", errors));
+		}
+		if (changes.isEmpty()) {
+			return Map.of();
+		}
+
+		Map<String, Object> applied = new LinkedHashMap<>();
+		for (Change change : changes) {
+			change.action().run();
+			applied.put(change.name(), Map.of("old", change.oldValue(), "new", change.newValue()));
+		}
+		rateLimiterService.reconfigure();
+		bulkheadService.reconfigure();
+		log.info("运行时配置已调整: operator={}, reason={}, changes={}", operator, tuning.getReason(), applied);
+		audit(operator, tuning.getReason(), applied);
+		return applied;
+	}
+
+	private void stageEndpoint(List<String> errors, List<Change> changes, EndpointType endpointType,
+			RuntimeTuning.EndpointTuning endpoint) {
+		if (endpointType == null || endpoint == null) {
+			errors.add("endpoints中存在无效的端点类别");
+			return;
+		}
+		String prefix = endpointType.name() + ".";
+		if (endpoint.getInterval() != null) {
+			check(errors, endpoint.getInterval() == 0 || endpoint.getInterval() >= MIN_INTERVAL,
+					prefix + "interval必须为0或不小于" + MIN_INTERVAL + "ms");
+		}
+		checkRange(errors, prefix + "burst", endpoint.getBurst(), 1, 100);
+		checkRange(errors, prefix + "maxConcurrent", endpoint.getMaxConcurrent(), 1, 100);
+		if (endpoint.getTimeout() != null) {
+			check(errors, endpoint.getTimeout() >= 0, prefix + "timeout不能小于0");
+		}
+
+		CrawlerConfig.BucketConfig bucket = crawlerConfig.getRateLimit().getBucket(endpointType);
+		CrawlerConfig.BulkheadConfig bulkhead = crawlerConfig.getBulkhead().getBulkhead(endpointType);
+		stage(changes, "rateLimit." + prefix + "interval", bucket.getInterval(), endpoint.getInterval(),
+				bucket::setInterval);
+		stage(changes, "rateLimit." + prefix + "burst", bucket.getBurst(), endpoint.getBurst(), bucket::setBurst);
+		stage(changes, "bulkhead." + prefix + "maxConcurrent", bulkhead.getMaxConcurrent(),
+				endpoint.getMaxConcurrent(), bulkhead::setMaxConcurrent);
+		stage(changes, "bulkhead." + prefix + "timeout", bulkhead.getTimeout(), endpoint.getTimeout(),
+				bulkhead::setTimeout);
+	}
+
+	/**
+	 * 记录一次变更 值为null表示不修改，与当前值相同时忽略
+	 */
+	private <T> void stage(List<Change> changes, String name, T current, T value, Consumer<T> setter) {
+		if (value != null && !value.equals(current)) {
+			changes.add(new Change(name, current, value, () -> setter.accept(value)));
+		}
+	}
+
+	private void check(List<String> errors, boolean valid, String message) {
+		if (!valid) {
+			errors.add(message);
+		}
+	}
+
+	private void checkRange(List<String> errors, String name, Integer value, int min, int max) {
+		if (value != null && (value < min || value > max)) {
+			errors.add(max == Integer.MAX_VALUE ? name + "必须大于等于" + min : name + "必须在 " + min + " 到 " + max + " 之间");
+		}
+	}
+
+	private int valueOr(Integer value, int current) {
+		return value != null ? value : current;
+	}
+
+	/**
+	 * 记录一次配置变更（也供关键词等其他运行时修改使用），写入失败只记录日志，不影响已生效的配置
+	 * @param operator 操作来源
+	 * @param reason 变更原因
+	 * @param changes 变更内容（配置项 -> 旧值/新值）
+	 */
+	public void audit(String operator, String reason, Map<String, Object> changes) {
+		try {
+			ConfigChangeLog entry = new ConfigChangeLog();
+			entry.setNodeId(crawlLeaseService.getNodeId());
+			entry.setOperator(operator);
+			entry.setReason(reason);
+			entry.setChanges(objectMapper.writeValueAsString(changes));
+			setCreateTime(entry);
+			mapper.insert(entry);
+		}
+		catch (Exception e) {
+			log.error("记录配置变更失败: operator={}, changes={}", operator, changes, e);
+		}
+	}
+
+	/**
+	 * 当前可在运行时调整的配置
+	 */
+	public Map<String, Object> getCurrent() {
+		Map<String, Object> current = new LinkedHashMap<>();
+		CrawlerConfig.ConcurrencyLimitConfig limitConfig = crawlerConfig.getConcurrencyLimit();
+		current.put("concurrency", concurrencyControlService.getCurrentConcurrency());
+		current.put("minConcurrency", limitConfig.getMinLimit());
+		current.put("maxConcurrency", limitConfig.getMaxLimit());
+		current.put("requestInterval", crawlerConfig.getRequestInterval());
+		current.put("maxPages", crawlerConfig.getMaxPages());
+		current.put("maxNotesPerKeyword", crawlerConfig.getMaxNotesPerKeyword());
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		for (EndpointType endpointType : EndpointType.values()) {
+			CrawlerConfig.BucketConfig bucket = crawlerConfig.getRateLimit().getBucket(endpointType);
+			CrawlerConfig.BulkheadConfig bulkhead = crawlerConfig.getBulkhead().getBulkhead(endpointType);
+			Map<String, Object> endpoint = new LinkedHashMap<>();
+			endpoint.put("interval", bucket.getInterval());
+			endpoint.put("burst", bucket.getBurst());
+			endpoint.put("maxConcurrent", bulkhead.getMaxConcurrent());
+			endpoint.put("timeout", bulkhead.getTimeout());
+			endpoints.put(endpointType.name(), endpoint);
+		}
+		current.put("endpoints", endpoints);
+		current.put("pacingEnabled", crawlerConfig.getPacing().isEnabled());
+		current.put("pacingMaxInterval", crawlerConfig.getPacing().getMaxInterval());
+		current.put("writeBehindBatchSize", crawlerConfig.getWriteBehind().getBatchSize());
+		current.put("workQueueClaimBatchSize", crawlerConfig.getWorkQueue().getClaimBatchSize());
+		current.put("retryQueueBatchSize", crawlerConfig.getRetryQueue().getBatchSize());
+		return current;
+	}
+
+	/**
+	 * 最近的配置变更记录
+	 * @param limit 最多返回的条数
+	 */
+	public List<ConfigChangeLog> getRecentChanges(int limit) {
+		LambdaQueryWrapper<ConfigChangeLog> wrapper = new LambdaQueryWrapper<>();
+		wrapper.orderByDesc(ConfigChangeLog::getId).last("LIMIT " + Math.max(1, Math.min(limit, 500)));
+		return findList(wrapper);
+	}
+
+	/**
+	 * 待应用的单项变更
+	 */
+	private record Change(String name, Object oldValue, Object newValue, Runnable action) {
+	}
+
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 定时任务爬虫服务
@@ -23,13 +24,32 @@ public class ScheduledCrawlerService {
 
 	private final CrawlerConfig crawlerConfig;
 
-	private final BatchCrawlerService batchCrawlerService;
+	private final KeywordSchedulerService keywordSchedulerService;
+
+	private final CrawlLeaseService crawlLeaseService;
+
+	private final KeywordRefreshService keywordRefreshService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	/**
+	 * 上一次定时任务的执行结果，未完成时跳过新的调度
+	 */
+	private volatile CompletableFuture<Void> lastScheduledRun = CompletableFuture.completedFuture(null);
 
 	/**
 	 * 定时执行爬虫任务 默认每天8点执行，可通过配置文件修改
 	 */
 	@Scheduled(cron = "#{@crawlerConfig.schedule.cron}")
 	public void scheduledCrawl() {
+		if (keywordRefreshService.isEnabled()) {
+			log.debug("已启用自适应刷新，跳过固定cron调度");
+			return;
+		}
+		if (!lastScheduledRun.isDone()) {
+			log.warn("上一次定时爬虫任务尚未完成，跳过本次调度");
+			return;
+		}
 		log.info("=== 开始执行定时爬虫任务 ===");
 
 		String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
@@ -40,45 +60,75 @@ public class ScheduledCrawlerService {
 			List<String> keywords = crawlerConfig.getKeywordList();
 			log.info("配置的关键词: {}", keywords);
 
-			// 为每个关键词创建爬取任务
-			for (String keyword : keywords) {
-				String taskName = String.format("定时任务-%s-%s", keyword,
-						LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm")));
+			// 内存不足时在领取租约之前拒绝，不占用其他节点可以执行的关键词
+			memoryGovernorService.checkAcceptTask();
 
-				log.info("开始处理关键词: {}", keyword);
+			// 多节点部署时只领取本节点的份额，其余关键词由其他节点执行
+			keywords = crawlLeaseService.acquireShare(keywords);
 
-				// 执行批量爬取
-				batchCrawlerService.executeBatchCrawl(taskName, keyword);
+			// 交给关键词调度器并行执行，不在调度线程上等待（其他定时任务共用该线程），未完成前的调度直接跳过
+			lastScheduledRun = submitAcquired(keywords, "定时任务").whenComplete((result, error) -> {
+				if (error != null) {
+					log.error("定时爬虫任务执行失败", error);
+				}
+				else {
+					log.info("=== 定时爬虫任务执行完成 ===");
+				}
+			});
+		}
+		catch (Exception e) {
+			handleScheduledTaskException(e);
+		}
+	}
 
-				log.info("完成处理关键词: {}", keyword);
+	/**
+	 * 自适应刷新调度 定期检查到期的关键词并提交执行，各关键词的执行时间和翻页深度由其产出决定
+	 */
+	@Scheduled(fixedDelayString = "#{@crawlerConfig.refresh.checkInterval}",
+			initialDelayString = "#{@crawlerConfig.refresh.checkInterval}")
+	public void adaptiveCrawl() {
+		if (!keywordRefreshService.isEnabled()) {
+			return;
+		}
 
-				// 关键词之间的间隔
-				if (keywords.size() > 1) {
-					try {
-						Thread.sleep(crawlerConfig.getRequestInterval());
-					}
-					catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						log.warn("定时任务被中断");
-						break;
-					}
-				}
+		try {
+			List<String> due = keywordRefreshService.selectDue(crawlerConfig.getKeywordList());
+			if (due.isEmpty()) {
+				return;
 			}
+			memoryGovernorService.checkAcceptTask();
+			due = crawlLeaseService.acquireShare(due);
+			log.info("自适应刷新到期关键词: {}", due);
 
-			log.info("=== 定时爬虫任务执行完成 ===");
-
+			// 不等待执行完成，已在执行中的关键词不会重复提交
+			submitAcquired(due, "自适应任务");
 		}
 		catch (Exception e) {
 			handleScheduledTaskException(e);
 		}
 	}
 
+	/**
+	 * 提交已领取租约的关键词 提交失败时释放本次领取的租约，已在排队或执行中的关键词除外
+	 */
+	private CompletableFuture<Void> submitAcquired(List<String> keywords, String taskPrefix) {
+		try {
+			return keywordSchedulerService.submit(keywords, taskPrefix);
+		}
+		catch (RuntimeException e) {
+			keywordSchedulerService.releaseUnscheduled(keywords);
+			throw e;
+		}
+	}
+
 	/**
 	 * 手动触发爬虫任务
 	 */
 	public void manualCrawl() {
 		log.info("=== 手动触发爬虫任务 ===");
-		scheduledCrawl();
+		List<String> keywords = crawlerConfig.getKeywordList();
+		log.info("配置的关键词: {}", keywords);
+		keywordSchedulerService.submit(keywords, "手动任务");
 	}
 
 	/**
@@ -87,12 +137,9 @@ public class ScheduledCrawlerService {
 	public void manualCrawlForKeyword(String keyword) {
 		log.info("=== 手动触发关键词爬虫任务: {} ===", keyword);
 
-		String taskName = String.format("手动任务-%s-%s", keyword,
-				LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm")));
-
 		try {
-			batchCrawlerService.executeBatchCrawl(taskName, keyword);
-			log.info("=== 手动关键词爬虫任务完成: {} ===", keyword);
+			keywordSchedulerService.submit(List.of(keyword), "手动任务");
+			log.info("=== 手动关键词爬虫任务已提交: {} ===", keyword);
 		}
 		catch (Exception e) {
 			handleTaskException(e, "手动关键词爬虫任务失败: " + keyword);
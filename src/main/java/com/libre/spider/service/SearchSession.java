@@ -0,0 +1,252 @@
+package com.libre.spider.service;
+
+import com.libre.spider.client.XhsApiClient;
+import com.libre.spider.enums.SearchSortType;
+import com.libre.spider.limiter.CrawlContext;
+import com.libre.spider.model.SearchItem;
+import com.libre.spider.model.SearchResponse;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 搜索会话 同一关键词的所有分页请求共用一个search_id，并跟踪has_more
+ * <p>
+ * 第一页确认还有更多结果后，第2..N页可以有限并发地预取（请求仍经过全局限流器），结果按页码顺序交付，跨页重复的笔记只交付一次
+ */
+@Slf4j
+public class SearchSession {
+
+	private final XhsApiClient apiClient;
+
+	private final String keyword;
+
+	private final String searchId;
+
+	private final SearchSortType sortType;
+
+	private final Set<String> seenNoteIds = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger requestedPages = new AtomicInteger(0);
+
+	private final AtomicInteger duplicateItems = new AtomicInteger(0);
+
+	private volatile boolean hasMore = true;
+
+	private volatile int lastPage = 0;
+
+	public SearchSession(XhsApiClient apiClient, String keyword, String searchId, SearchSortType sortType) {
+		this.apiClient = apiClient;
+		this.keyword = keyword;
+		this.searchId = searchId;
+		this.sortType = sortType;
+	}
+
+	/**
+	 * 获取指定页，返回的笔记已经过有效性过滤，但尚未跨页去重
+	 * @param page 页码（从1开始）
+	 */
+	public PageResult fetchPage(int page) throws IOException {
+		log.info("搜索关键词: {}, 页码: {}, 排序: {}, searchId: {}", keyword, page, sortType.name(), searchId);
+		requestedPages.incrementAndGet();
+
+		SearchResponse response = apiClient.searchNotes(keyword, searchId, page, sortType);
+
+		PageResult result = new PageResult();
+		result.setPage(page);
+		result.setResponse(response);
+		if (response == null || !Boolean.TRUE.equals(response.getSuccess()) || response.getData() == null
+				|| response.getData().getItems() == null || response.getData().getItems().isEmpty()) {
+			result.setItems(List.of());
+			result.setHasMore(false);
+			return result;
+		}
+
+		result.setItems(response.getData().getItems().stream().filter(SearchItem::isValidNoteItem).toList());
+		// 接口未返回has_more时按有数据处理
+		result.setHasMore(!Boolean.FALSE.equals(response.getData().getHasMore()));
+		return result;
+	}
+
+	/**
+	 * 依次交付第1..maxPages页 第1页同步获取，确认还有更多结果后，后续页以最多fanOut个并发预取
+	 * @param maxPages 最多获取的页数
+	 * @param fanOut 预取并发数，小于等于1时逐页获取
+	 * @param executor 预取使用的线程池
+	 * @param consumer 页结果消费者，返回false时停止后续翻页
+	 */
+	public void fetchPages(int maxPages, int fanOut, Executor executor, PageConsumer consumer)
+			throws IOException, InterruptedException {
+		if (maxPages <= 0) {
+			return;
+		}
+
+		PageResult first = fetchPage(1);
+		if (!deliver(first, consumer) || maxPages == 1) {
+			return;
+		}
+
+		int window = Math.max(1, fanOut);
+		CrawlContext context = CrawlContext.current();
+		Map<Integer, Future<PageResult>> inFlight = new TreeMap<>();
+		int nextToSubmit = 2;
+
+		try {
+			for (int page = 2; page <= maxPages; page++) {
+				// 保持最多window个页面在途
+				while (nextToSubmit <= maxPages && nextToSubmit < page + window) {
+					int target = nextToSubmit++;
+					// 使用FutureTask而不是CompletableFuture，取消时才能中断正在等待令牌或响应的预取线程
+					FutureTask<PageResult> task = new FutureTask<>(() -> fetchInContext(context, target));
+					executor.execute(task);
+					inFlight.put(target, task);
+				}
+
+				PageResult result = await(inFlight.remove(page));
+				if (!deliver(result, consumer)) {
+					return;
+				}
+			}
+		}
+		finally {
+			// 提前结束时丢弃已预取的页面，尚未开始的不再执行，执行中的被中断
+			inFlight.values().forEach(future -> future.cancel(true));
+		}
+	}
+
+	private PageResult fetchInContext(CrawlContext context, int page) {
+		try (CrawlContext.Scope ignored = CrawlContext.open(context)) {
+			return fetchPage(page);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private PageResult await(Future<PageResult> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException io) {
+				throw io.getCause();
+			}
+			if (cause instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new CompletionException(cause);
+		}
+	}
+
+	/**
+	 * 跨页去重后交付给消费者
+	 * @return 是否继续翻页
+	 */
+	private boolean deliver(PageResult result, PageConsumer consumer) throws InterruptedException {
+		lastPage = result.getPage();
+		hasMore = result.isHasMore();
+		if (result.getItems().isEmpty()) {
+			log.info("第{}页无更多数据，停止搜索", result.getPage());
+			return false;
+		}
+
+		List<SearchItem> fresh = new ArrayList<>(result.getItems().size());
+		for (SearchItem item : result.getItems()) {
+			if (item.getId() != null && seenNoteIds.add(item.getId())) {
+				fresh.add(item);
+			}
+			else {
+				duplicateItems.incrementAndGet();
+			}
+		}
+		result.setItems(fresh);
+		log.info("第{}页获取笔记数量: {}", result.getPage(), fresh.size());
+
+		return consumer.accept(result) && hasMore;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public String getSearchId() {
+		return searchId;
+	}
+
+	/**
+	 * 最近一次交付的页是否还有更多结果
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * 最近一次交付的页码
+	 */
+	public int getLastPage() {
+		return lastPage;
+	}
+
+	/**
+	 * 实际发出的分页请求数（包括预取后被丢弃的页）
+	 */
+	public int getRequestedPages() {
+		return requestedPages.get();
+	}
+
+	/**
+	 * 跨页重复的笔记数
+	 */
+	public int getDuplicateItems() {
+		return duplicateItems.get();
+	}
+
+	/**
+	 * 页结果消费者
+	 */
+	@FunctionalInterface
+	public interface PageConsumer {
+
+		/**
+		 * 处理一页去重后的结果
+		 * @return 是否继续翻页
+		 */
+		boolean accept(PageResult result) throws InterruptedException;
+
+	}
+
+	/**
+	 * 单页搜索结果
+	 */
+	@Data
+	public static class PageResult {
+
+		private int page;
+
+		private SearchResponse response;
+
+		private List<SearchItem> items;
+
+		private boolean hasMore;
+
+	}
+
+}
@@ -1,11 +1,14 @@
 package com.libre.spider.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.libre.spider.entity.CrawlTask;
 import com.libre.spider.mapper.CrawlTaskMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 任务数据访问服务 继承基础数据服务类，提供任务相关的数据操作
@@ -111,4 +114,84 @@ public class TaskDataService extends BaseDataService<CrawlTask, CrawlTaskMapper>
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 标记任务超时
+	 * @param taskId 任务ID
+	 * @param totalNotes 总笔记数
+	 * @param successNotes 成功笔记数
+	 * @param failedNotes 失败笔记数
+	 * @param errorMessage 错误信息
+	 */
+	public void timeoutTask(Long taskId, int totalNotes, int successNotes, int failedNotes, String errorMessage) {
+		CrawlTask task = new CrawlTask();
+		task.setId(taskId);
+		task.setStatus("TIMEOUT");
+		task.setEndTime(LocalDateTime.now());
+		task.setTotalNotes(totalNotes);
+		task.setSuccessNotes(successNotes);
+		task.setFailedNotes(failedNotes);
+		task.setErrorMessage(errorMessage);
+		task.setUpdateTime(LocalDateTime.now());
+
+		int updateCount = mapper.updateById(task);
+		if (updateCount > 0) {
+			log.warn("爬取任务超时: taskId={}, total={}, success={}, failed={}", taskId, totalNotes, successNotes,
+					failedNotes);
+		}
+		else {
+			log.warn("标记爬取任务超时失败: taskId={}", taskId);
+		}
+	}
+
+	/**
+	 * 已结束任务中一条失败的笔记由延迟重试补齐 成功数加一、失败数减一，失败数归零时任务转为成功；
+	 * 仍在运行的任务结束时会按检查点统计，这里不做修改
+	 * @param taskId 任务ID
+	 */
+	public void recoverFailedNote(Long taskId) {
+		LambdaUpdateWrapper<CrawlTask> wrapper = new LambdaUpdateWrapper<>();
+		wrapper.eq(CrawlTask::getId, taskId)
+			.ne(CrawlTask::getStatus, "RUNNING")
+			.gt(CrawlTask::getFailedNotes, 0)
+			.setSql("status = CASE WHEN status = 'FAILED' AND failed_notes <= 1 THEN 'SUCCESS' ELSE status END")
+			.setSql("success_notes = success_notes + 1")
+			.setSql("failed_notes = failed_notes - 1")
+			.set(CrawlTask::getUpdateTime, LocalDateTime.now());
+		if (mapper.update(wrapper) > 0) {
+			log.info("延迟重试补齐失败笔记，已更新任务计数: taskId={}", taskId);
+		}
+	}
+
+	/**
+	 * 标记任务的搜索阶段已完成
+	 * @param taskId 任务ID
+	 */
+	public void markSearchCompleted(Long taskId) {
+		CrawlTask task = new CrawlTask();
+		task.setId(taskId);
+		task.setSearchCompleted(true);
+		task.setUpdateTime(LocalDateTime.now());
+		mapper.updateById(task);
+	}
+
+	/**
+	 * 根据ID查询任务
+	 * @param taskId 任务ID
+	 * @return 任务，不存在时返回null
+	 */
+	public CrawlTask findById(Long taskId) {
+		return mapper.selectById(taskId);
+	}
+
+	/**
+	 * 查询指定状态的任务
+	 * @param status 任务状态
+	 * @return 任务列表
+	 */
+	public List<CrawlTask> findByStatus(String status) {
+		LambdaQueryWrapper<CrawlTask> wrapper = new LambdaQueryWrapper<>();
+		wrapper.eq(CrawlTask::getStatus, status).orderByAsc(CrawlTask::getId);
+		return findList(wrapper);
+	}
+
+}
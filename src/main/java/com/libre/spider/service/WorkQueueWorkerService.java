@@ -0,0 +1,204 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.CrawlWorkItem;
+import com.libre.spider.limiter.CrawlContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作队列消费服务 启用持久化工作队列时，本节点启动若干工作线程从数据库领取笔记详情/用户信息工作项并处理
+ * <p>
+ * 多个节点连接同一个数据库时各自启动工作线程，共同消费所有任务的工作项
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkQueueWorkerService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final CrawlWorkQueueService crawlWorkQueueService;
+
+	private final BatchCrawlerService batchCrawlerService;
+
+	private final WriteBehindService writeBehindService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	private final List<Thread> workers = new ArrayList<>();
+
+	private volatile boolean running = false;
+
+	private final AtomicLong claimed = new AtomicLong(0);
+
+	private final AtomicLong completed = new AtomicLong(0);
+
+	private final AtomicLong retried = new AtomicLong(0);
+
+	private final AtomicLong failed = new AtomicLong(0);
+
+	private final AtomicLong lost = new AtomicLong(0);
+
+	private final AtomicLong throttled = new AtomicLong(0);
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.WorkQueueConfig config = crawlerConfig.getWorkQueue();
+		if (!config.isEnabled()) {
+			return;
+		}
+
+		running = true;
+		String node = ManagementFactory.getRuntimeMXBean().getName();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("work-queue-");
+		threadFactory.setDaemon(true);
+		int workerCount = Math.max(1, config.getWorkers());
+		for (int i = 0; i < workerCount; i++) {
+			String workerId = node + "-" + i;
+			int index = i;
+			Thread worker = threadFactory.newThread(() -> workLoop(workerId, index, workerCount));
+			workers.add(worker);
+			worker.start();
+		}
+		log.info("初始化工作队列消费服务完成: node={}, workers={}, claimBatchSize={}, visibilityTimeout={}ms", node,
+				workers.size(), config.getClaimBatchSize(), config.getVisibilityTimeout());
+	}
+
+	/**
+	 * 工作线程主循环
+	 * @param workerId 工作者标识
+	 * @param index 工作线程序号，0号线程负责清理超时且重试次数用尽的工作项
+	 * @param workerCount 工作线程总数
+	 */
+	private void workLoop(String workerId, int index, int workerCount) {
+		CrawlerConfig.WorkQueueConfig config = crawlerConfig.getWorkQueue();
+		while (running) {
+			try {
+				if (index == 0) {
+					int expired = crawlWorkQueueService.failExpired();
+					if (expired > 0) {
+						log.warn("工作项处理超时且重试次数已用尽: count={}", expired);
+					}
+				}
+
+				// 持久化积压或内存压力高时只有序号在窗口内的工作线程继续领取
+				if (index >= memoryGovernorService.scaleWindow(writeBehindService.getWindow(workerCount))) {
+					throttled.incrementAndGet();
+					Thread.sleep(config.getPollInterval());
+					continue;
+				}
+
+				List<CrawlWorkItem> items = crawlWorkQueueService.claim(workerId, config.getClaimBatchSize());
+				if (items.isEmpty()) {
+					Thread.sleep(config.getPollInterval());
+					continue;
+				}
+				claimed.addAndGet(items.size());
+				for (CrawlWorkItem item : items) {
+					process(item);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (Exception e) {
+				log.error("工作队列领取失败: workerId={}", workerId, e);
+				try {
+					Thread.sleep(config.getPollInterval());
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
+	private void process(CrawlWorkItem item) {
+		boolean success;
+		String errorMessage = "处理失败";
+		try (CrawlContext.Scope ignored = CrawlContext.open(CrawlContext.of("task-" + item.getTaskId()))) {
+			success = batchCrawlerService.processWorkItem(item);
+		}
+		catch (Exception e) {
+			success = false;
+			errorMessage = e.getMessage();
+			log.warn("工作项处理失败: type={}, key={}, attempts={}, error={}", item.getWorkType(), item.getItemKey(),
+					item.getAttempts(), e.getMessage());
+		}
+
+		if (success) {
+			if (crawlWorkQueueService.complete(item)) {
+				completed.incrementAndGet();
+			}
+			else {
+				// 处理时间超过可见性超时，工作项已被其他工作者重新领取
+				lost.incrementAndGet();
+				log.warn("工作项确认失败，可能已超时被重新领取: type={}, key={}", item.getWorkType(), item.getItemKey());
+			}
+		}
+		else if (crawlWorkQueueService.fail(item, errorMessage)) {
+			failed.incrementAndGet();
+		}
+		else {
+			retried.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", crawlerConfig.getWorkQueue().isEnabled());
+		stats.put("workers", workers.size());
+		stats.put("claimed", claimed.get());
+		stats.put("completed", completed.get());
+		stats.put("retried", retried.get());
+		stats.put("failed", failed.get());
+		stats.put("lost", lost.get());
+		stats.put("throttled", throttled.get());
+		if (crawlerConfig.getWorkQueue().isEnabled()) {
+			stats.put("queue", crawlWorkQueueService.getStats());
+		}
+		return stats;
+	}
+
+	/**
+	 * 关闭时停止领取，正在处理的工作项未确认，可见性超时后会被其他工作者重新领取
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join(5000);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		log.info("工作队列消费服务已关闭: completed={}, failed={}", completed.get(), failed.get());
+	}
+
+}
@@ -0,0 +1,438 @@
+package com.libre.spider.service;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.entity.NoteInfo;
+import com.libre.spider.entity.UserInfo;
+import com.libre.spider.model.NoteCard;
+import com.libre.spider.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步写入服务（write-behind） 爬取线程只负责把数据放入有界内存队列，由后台写入线程按数量或时间攒批后批量写库
+ * <p>
+ * 队列满时爬取线程最多等待offerTimeout，仍然放不进去则退化为同步写入，保证数据不丢失；应用关闭时会先把队列中的数据全部写完。
+ * 提交时可以附带写入完成的回调（如更新任务检查点），记录真正写入数据库后才在写入线程上执行
+ * <p>
+ * 每个写入线程有自己的队列，记录按主键（noteId/userId）哈希分配，同一主键的写入总由同一线程按提交顺序完成，
+ * 不会出现两个批次同时插入同一主键导致的唯一键冲突；退化的同步写入也持有对应线程的写锁
+ * <p>
+ * 同时对外发布背压信号（积压量、平滑后的写入耗时），爬取流水线据此缩小并发窗口，避免抓取写不进去的数据
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WriteBehindService {
+
+	private final CrawlerConfig crawlerConfig;
+
+	private final DataStorageService dataStorageService;
+
+	private final MemoryGovernorService memoryGovernorService;
+
+	private final List<Shard> shards = new ArrayList<>();
+
+	private final List<Thread> writers = new ArrayList<>();
+
+	private volatile boolean running = false;
+
+	/**
+	 * 已取出但尚未写完的记录数
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	private final AtomicLong enqueued = new AtomicLong(0);
+
+	private final AtomicLong written = new AtomicLong(0);
+
+	private final AtomicLong failed = new AtomicLong(0);
+
+	private final AtomicLong batches = new AtomicLong(0);
+
+	private final AtomicLong overflow = new AtomicLong(0);
+
+	private final AtomicLong lastFlushMs = new AtomicLong(0);
+
+	/**
+	 * 平滑后的批次写入耗时（毫秒）
+	 */
+	private volatile double flushLatencyMs = 0;
+
+	@PostConstruct
+	public void init() {
+		CrawlerConfig.WriteBehindConfig config = crawlerConfig.getWriteBehind();
+		int writerCount = Math.max(1, config.getWriters());
+		// 总容量平均分给各写入线程的队列
+		int shardCapacity = Math.max(1, (config.getQueueCapacity() + writerCount - 1) / writerCount);
+		running = true;
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("write-behind-");
+		threadFactory.setDaemon(true);
+		for (int i = 0; i < writerCount; i++) {
+			Shard shard = new Shard(new LinkedBlockingQueue<>(shardCapacity), new ReentrantLock());
+			shards.add(shard);
+			Thread writer = threadFactory.newThread(() -> writeLoop(shard));
+			writers.add(writer);
+			writer.start();
+		}
+		log.info("初始化异步写入服务完成: queueCapacity={}, batchSize={}, flushInterval={}ms, writers={}",
+				config.getQueueCapacity(), config.getBatchSize(), config.getFlushInterval(), writers.size());
+	}
+
+	/**
+	 * 提交笔记写入
+	 * @param noteCard 笔记卡片
+	 * @param keyword 关键词
+	 * @param taskId 任务ID
+	 */
+	public void submitNote(NoteCard noteCard, String keyword, Long taskId) {
+		submitNote(noteCard, keyword, taskId, null);
+	}
+
+	/**
+	 * 提交笔记写入
+	 * @param noteCard 笔记卡片
+	 * @param keyword 关键词
+	 * @param taskId 任务ID
+	 * @param onWritten 写入数据库成功后执行的回调，写入失败时不执行，可以为null
+	 */
+	public void submitNote(NoteCard noteCard, String keyword, Long taskId, Runnable onWritten) {
+		if (noteCard == null || noteCard.getNoteId() == null) {
+			return;
+		}
+		submit(new Entry(dataStorageService.convertToNoteInfo(noteCard, keyword, taskId), onWritten));
+	}
+
+	/**
+	 * 提交用户写入
+	 * @param user 用户
+	 * @param taskId 任务ID
+	 */
+	public void submitUser(User user, Long taskId) {
+		if (user == null || user.getUserId() == null) {
+			return;
+		}
+		submit(new Entry(dataStorageService.convertToUserInfo(user, taskId), null));
+	}
+
+	private void submit(Entry entity) {
+		enqueued.incrementAndGet();
+		Shard shard = shardOf(entity);
+		try {
+			if (running
+					&& shard.queue().offer(entity, crawlerConfig.getWriteBehind().getOfferTimeout(), TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// 队列已满或服务已关闭，退化为同步写入
+		overflow.incrementAndGet();
+		log.warn("异步写入队列已满，改为同步写入: backlog={}", shard.queue().size());
+		shard.lock().lock();
+		try {
+			writeBatch(List.of(entity));
+		}
+		finally {
+			shard.lock().unlock();
+		}
+	}
+
+	/**
+	 * 按主键选择写入线程的队列
+	 */
+	private Shard shardOf(Entry entry) {
+		String key = entry.entity() instanceof NoteInfo noteInfo ? noteInfo.getNoteId()
+				: ((UserInfo) entry.entity()).getUserId();
+		return shards.get(Math.floorMod(key.hashCode(), shards.size()));
+	}
+
+	/**
+	 * 写入线程主循环
+	 */
+	private void writeLoop(Shard shard) {
+		CrawlerConfig.WriteBehindConfig config = crawlerConfig.getWriteBehind();
+		int batchSize = Math.max(1, config.getBatchSize());
+		BlockingQueue<Entry> queue = shard.queue();
+		List<Entry> batch = new ArrayList<>(batchSize);
+
+		while (running || !queue.isEmpty()) {
+			try {
+				Entry first = queue.poll(config.getFlushInterval(), TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				inFlight.incrementAndGet();
+				batch.add(first);
+
+				// 按数量或时间攒批
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getFlushInterval());
+				while (batch.size() < batchSize) {
+					int drained = queue.drainTo(batch, batchSize - batch.size());
+					inFlight.addAndGet(drained);
+					if (batch.size() >= batchSize) {
+						break;
+					}
+					// 内存压力高时不再攒批，取到多少写多少，尽快释放缓冲的记录
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || !running || memoryGovernorService.isUnderPressure()) {
+						break;
+					}
+					Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					inFlight.incrementAndGet();
+					batch.add(next);
+				}
+			}
+			catch (InterruptedException e) {
+				// 关闭时被中断，写完已取出的批次后继续排空队列
+				running = false;
+			}
+
+			if (!batch.isEmpty()) {
+				int size = batch.size();
+				shard.lock().lock();
+				try {
+					writeBatch(batch);
+				}
+				finally {
+					shard.lock().unlock();
+				}
+				inFlight.addAndGet(-size);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * 写入一个批次，批量写入失败时逐条重试以隔离出错的记录 写入成功的记录执行其回调
+	 */
+	private void writeBatch(List<Entry> batch) {
+		long start = System.currentTimeMillis();
+		List<Entry> noteEntries = new ArrayList<>();
+		List<Entry> userEntries = new ArrayList<>();
+		for (Entry entry : batch) {
+			if (entry.entity() instanceof NoteInfo) {
+				noteEntries.add(entry);
+			}
+			else if (entry.entity() instanceof UserInfo) {
+				userEntries.add(entry);
+			}
+		}
+
+		if (!noteEntries.isEmpty()) {
+			List<NoteInfo> notes = noteEntries.stream().map(entry -> (NoteInfo) entry.entity()).toList();
+			try {
+				dataStorageService.batchUpsertNotes(notes);
+				written.addAndGet(notes.size());
+				noteEntries.forEach(this::afterWritten);
+			}
+			catch (Exception e) {
+				log.warn("批量写入笔记失败，改为逐条写入: count={}, error={}", notes.size(), e.getMessage());
+				noteEntries.forEach(entry -> {
+					NoteInfo noteInfo = (NoteInfo) entry.entity();
+					if (writeOne(noteInfo, () -> dataStorageService.saveNoteInfo(noteInfo), noteInfo.getNoteId())) {
+						afterWritten(entry);
+					}
+				});
+			}
+		}
+		if (!userEntries.isEmpty()) {
+			List<UserInfo> users = userEntries.stream().map(entry -> (UserInfo) entry.entity()).toList();
+			try {
+				dataStorageService.batchUpsertUsers(users);
+				written.addAndGet(users.size());
+				userEntries.forEach(this::afterWritten);
+			}
+			catch (Exception e) {
+				log.warn("批量写入用户失败，改为逐条写入: count={}, error={}", users.size(), e.getMessage());
+				userEntries.forEach(entry -> {
+					UserInfo userInfo = (UserInfo) entry.entity();
+					if (writeOne(userInfo, () -> dataStorageService.saveUserInfo(userInfo), userInfo.getUserId())) {
+						afterWritten(entry);
+					}
+				});
+			}
+		}
+
+		batches.incrementAndGet();
+		long elapsed = System.currentTimeMillis() - start;
+		lastFlushMs.set(elapsed);
+		flushLatencyMs = flushLatencyMs == 0 ? elapsed : 0.3 * elapsed + 0.7 * flushLatencyMs;
+		log.debug("异步写入批次完成: notes={}, users={}, elapsedMs={}", noteEntries.size(), userEntries.size(),
+				lastFlushMs.get());
+	}
+
+	/**
+	 * 逐条写入
+	 * @return 是否写入成功
+	 */
+	private boolean writeOne(Object entity, Runnable action, String identifier) {
+		try {
+			action.run();
+			written.incrementAndGet();
+			return true;
+		}
+		catch (Exception e) {
+			failed.incrementAndGet();
+			log.error("写入{}失败: id={}, error={}", entity.getClass().getSimpleName(), identifier, e.getMessage());
+			return false;
+		}
+	}
+
+	private void afterWritten(Entry entry) {
+		if (entry.onWritten() == null) {
+			return;
+		}
+		try {
+			entry.onWritten().run();
+		}
+		catch (Exception e) {
+			log.warn("执行写入完成回调失败: error={}", e.getMessage());
+		}
+	}
+
+	/**
+	 * 当前积压的记录数（队列中 + 正在写入）
+	 */
+	public int getBacklog() {
+		return shards.stream().mapToInt(shard -> shard.queue().size()).sum() + inFlight.get();
+	}
+
+	/**
+	 * 等待积压的记录全部写完（包括执行回调）
+	 * @param timeoutMs 最长等待时间（毫秒）
+	 * @return 是否已写完
+	 */
+	public boolean awaitDrained(long timeoutMs) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (getBacklog() > 0) {
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(Math.min(50, Math.max(1, crawlerConfig.getWriteBehind().getFlushInterval())));
+		}
+		return true;
+	}
+
+	/**
+	 * 背压系数 1表示不限制，0表示暂停爬取
+	 * <p>
+	 * 积压低于水位线时不限制，超过后随积压线性下降，队列满时为0；写入耗时超过阈值时再按阈值与实际耗时之比缩小
+	 */
+	public double getPressureScale() {
+		CrawlerConfig.WriteBehindConfig config = crawlerConfig.getWriteBehind();
+		if (!config.isBackpressure()) {
+			return 1.0;
+		}
+		double ratio = (double) getBacklog() / Math.max(1, config.getQueueCapacity());
+		double high = Math.min(0.99, Math.max(0, config.getHighWatermark()));
+		double scale = ratio <= high ? 1.0 : Math.max(0, (1 - ratio) / (1 - high));
+		double latency = flushLatencyMs;
+		if (config.getSlowFlushThreshold() > 0 && latency > config.getSlowFlushThreshold()) {
+			scale = Math.min(scale, config.getSlowFlushThreshold() / latency);
+		}
+		return scale;
+	}
+
+	/**
+	 * 按当前背压计算允许的并发窗口
+	 * @param concurrency 配置的并发数
+	 * @return 允许同时抓取的数量，积压未超过水位线时至少为1
+	 */
+	public int getWindow(int concurrency) {
+		double scale = getPressureScale();
+		if (scale >= 1.0) {
+			return concurrency;
+		}
+		int window = (int) Math.floor(concurrency * scale);
+		double ratio = (double) getBacklog() / Math.max(1, crawlerConfig.getWriteBehind().getQueueCapacity());
+		if (ratio <= crawlerConfig.getWriteBehind().getHighWatermark()) {
+			// 仅写入变慢时只缩小窗口，不完全暂停
+			window = Math.max(1, window);
+		}
+		return window;
+	}
+
+	/**
+	 * 获取统计信息
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long batchCount = batches.get();
+		stats.put("backlog", getBacklog());
+		stats.put("queueCapacity", crawlerConfig.getWriteBehind().getQueueCapacity());
+		stats.put("enqueued", enqueued.get());
+		stats.put("written", written.get());
+		stats.put("failed", failed.get());
+		stats.put("overflow", overflow.get());
+		stats.put("batches", batchCount);
+		stats.put("avgBatchSize", batchCount > 0 ? (written.get() + failed.get()) / batchCount : 0);
+		stats.put("lastFlushMs", lastFlushMs.get());
+		stats.put("flushLatencyMs", Math.round(flushLatencyMs));
+		stats.put("pressureScale", String.format("%.2f", getPressureScale()));
+		return stats;
+	}
+
+	/**
+	 * 关闭时停止接收新数据，并等待写入线程把队列排空
+	 */
+	@PreDestroy
+	public void shutdown() {
+		log.info("关闭异步写入服务，等待写入积压数据: backlog={}", getBacklog());
+		running = false;
+		long timeout = crawlerConfig.getWriteBehind().getShutdownTimeout();
+		long deadline = System.currentTimeMillis() + timeout;
+		for (Thread writer : writers) {
+			try {
+				writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (getBacklog() > 0) {
+			log.warn("异步写入服务关闭超时，仍有{}条数据未写入", getBacklog());
+		}
+		else {
+			log.info("异步写入服务已关闭: written={}, failed={}", written.get(), failed.get());
+		}
+	}
+
+	/**
+	 * 队列中的一条记录
+	 * @param entity 待写入的实体（NoteInfo或UserInfo）
+	 * @param onWritten 写入成功后的回调，可以为null
+	 */
+	private record Entry(Object entity, Runnable onWritten) {
+	}
+
+	/**
+	 * 一个写入线程的队列及写锁
+	 * @param queue 分配给该线程的记录
+	 * @param lock 写入批次时持有，保证同一主键的写入不会并发执行
+	 */
+	private record Shard(BlockingQueue<Entry> queue, ReentrantLock lock) {
+	}
+
+}
@@ -3,7 +3,9 @@ package com.libre.spider.service;
 import com.libre.spider.client.XhsApiClient;
 import com.libre.spider.config.XhsConfig;
 import com.libre.spider.enums.SearchSortType;
+import com.libre.spider.limiter.AdaptiveLimiter;
 import com.libre.spider.model.*;
+import com.libre.spider.utils.ExceptionHandler;
 import com.libre.spider.utils.XhsSignatureHelper;
 import com.microsoft.playwright.Page;
 import jakarta.annotation.PostConstruct;
@@ -39,6 +41,10 @@ public class XhsCrawlerService {
 
 	private final DataStorageService dataStorageService;
 
+	private final MemoryGovernorService memoryGovernorService;
+
+	private final ExceptionHandler exceptionHandler;
+
 	private Page page;
 
 	private boolean initialized = false;
@@ -148,6 +154,15 @@ public class XhsCrawlerService {
 		return apiClient.searchNotes(keyword, searchId, page, sortType);
 	}
 
+	/**
+	 * 创建搜索会话，同一关键词的所有分页共用一个search_id
+	 */
+	public SearchSession openSearchSession(String keyword, SearchSortType sortType) {
+		String searchId = signatureHelper.getSearchId();
+		log.debug("创建搜索会话: keyword={}, searchId={}", keyword, searchId);
+		return new SearchSession(apiClient, keyword, searchId, sortType);
+	}
+
 	/**
 	 * 获取笔记详情（指定xsecSource和xsecToken）
 	 */
@@ -237,10 +252,6 @@ public class XhsCrawlerService {
 					noteDetail.put("search_url", item.buildNoteUrl(xhsConfig.getWebDomain()));
 					noteDetails.add(noteDetail);
 				}
-
-				// 控制请求频率，避免被封
-				Thread.sleep(3000);
-
 			}
 			catch (Exception e) {
 				log.warn("获取笔记详情失败，笔记ID: {}, 错误: {}", item.getId(), e.getMessage());
@@ -305,19 +316,25 @@ public class XhsCrawlerService {
 	 */
 	private List<SearchItem> searchMultiplePages(CrawlerRequest request) {
 		List<SearchItem> allItems = new ArrayList<>();
+		SearchSession session = openSearchSession(request.getKeyword(), request.getSortType());
 
 		try {
 			for (int page = request.getStartPage(); page < request.getStartPage() + request.getMaxPages(); page++) {
+				// 结果全部保存在内存中返回，内存压力危险时停止继续收集
+				if (memoryGovernorService.isCritical()) {
+					log.warn("内存使用率过高，停止搜索: keyword={}, page={}, found={}", request.getKeyword(), page,
+							allItems.size());
+					break;
+				}
 				log.info("搜索第{}页，关键词: {}", page, request.getKeyword());
 
-				SearchResponse response = searchNotes(request.getKeyword(), page, request.getSortType());
-				if (response == null || !Boolean.TRUE.equals(response.getSuccess()) || response.getData() == null
-						|| response.getData().getItems() == null || response.getData().getItems().isEmpty()) {
+				SearchSession.PageResult pageResult = session.fetchPage(page);
+				if (pageResult.getItems().isEmpty()) {
 					log.info("第{}页无更多数据，停止搜索", page);
 					break;
 				}
 
-				List<SearchItem> pageItems = extractValidNoteItems(response);
+				List<SearchItem> pageItems = pageResult.getItems();
 				allItems.addAll(pageItems);
 				log.info("第{}页获取笔记数量: {}", page, pageItems.size());
 
@@ -328,9 +345,9 @@ public class XhsCrawlerService {
 					break;
 				}
 
-				// 页面间隔
-				if (page < request.getStartPage() + request.getMaxPages() - 1) {
-					Thread.sleep(request.getRequestInterval());
+				if (!pageResult.isHasMore()) {
+					log.info("第{}页之后没有更多数据，停止搜索", page);
+					break;
 				}
 			}
 		}
@@ -383,6 +400,11 @@ public class XhsCrawlerService {
 			int endIndex = Math.min(i + batchSize, searchItems.size());
 			List<SearchItem> batch = searchItems.subList(i, endIndex);
 
+			if (memoryGovernorService.isCritical()) {
+				log.warn("内存使用率过高，停止获取笔记详情: processed={}, skipped={}", i, searchItems.size() - i);
+				failedCount += searchItems.size() - i;
+				break;
+			}
 			log.debug("处理笔记详情批次: {}-{}/{}", i + 1, endIndex, searchItems.size());
 
 			// 处理当前批次
@@ -394,17 +416,6 @@ public class XhsCrawlerService {
 					failedCount++;
 				}
 			}
-
-			// 批次间隔
-			if (endIndex < searchItems.size()) {
-				try {
-					Thread.sleep(request.getRequestInterval());
-				}
-				catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					log.warn("线程被中断");
-				}
-			}
 		}
 
 		log.info("批量获取笔记详情完成: success={}, failed={}", successCount, failedCount);
@@ -417,9 +428,9 @@ public class XhsCrawlerService {
 	private boolean processSingleNoteDetail(SearchItem item, CrawlerRequest request, List<NoteCard> noteCards,
 			List<Map<String, Object>> noteDetails) {
 		// 获取并发许可证
-		if (!concurrencyControlService.acquirePermit(5000)) {
+		AdaptiveLimiter.Permit permit = concurrencyControlService.acquirePermit(5000);
+		if (permit == null) {
 			log.warn("获取并发许可证超时: {}", item.getId());
-			concurrencyControlService.recordFailure();
 			addNoteCardIfExists(item, noteCards);
 			return false;
 		}
@@ -429,32 +440,26 @@ public class XhsCrawlerService {
 			String xsecToken = item.getXsecToken() != null ? item.getXsecToken() : "";
 
 			Map<String, Object> noteDetail = apiClient.getNoteById(item.getId(), xsecSource, xsecToken);
+			// 空结果（笔记已删除等）也是一次正常完成的请求
+			permit.success();
+			addNoteCardIfExists(item, noteCards);
 			if (noteDetail != null && !noteDetail.isEmpty()) {
 				noteDetails.add(noteDetail);
-				addNoteCardIfExists(item, noteCards);
-				concurrencyControlService.recordSuccess();
 				return true;
 			}
-			else {
-				concurrencyControlService.recordFailure();
-				addNoteCardIfExists(item, noteCards);
-				return false;
-			}
+			return false;
 		}
 		catch (Exception e) {
 			log.warn("获取笔记详情失败: noteId={}, error={}", item.getId(), e.getMessage());
-			concurrencyControlService.recordFailure();
+			// 只有过载类错误才收缩并发，404、解析失败等与服务端负载无关，由finally归还名额
+			if (exceptionHandler.classify(e).isOverload()) {
+				permit.dropped();
+			}
 			addNoteCardIfExists(item, noteCards);
 			return false;
 		}
 		finally {
-			concurrencyControlService.releasePermit();
-			try {
-				Thread.sleep(request.getRequestInterval());
-			}
-			catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
+			permit.release();
 		}
 	}
 
@@ -1,9 +1,14 @@
 package com.libre.spider.utils;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.libre.spider.config.RetryPolicy;
+import com.libre.spider.enums.ErrorType;
 import com.libre.spider.exception.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+
 /**
  * 异常处理工具类 统一处理爬虫系统中的各种异常情况
  */
@@ -84,15 +89,70 @@ public class ExceptionHandler {
 		log.debug("数据库异常详情", e);
 	}
 
+	/**
+	 * 判断异常的失败类型 沿原因链查找第一个能确定类型的异常
+	 * @param e 异常对象
+	 * @return 失败类型
+	 */
+	public ErrorType classify(Throwable e) {
+		Throwable current = e;
+		for (int depth = 0; current != null && depth < 8; depth++) {
+			ErrorType type = classifyOne(current);
+			if (type != ErrorType.UNKNOWN) {
+				return type;
+			}
+			current = current.getCause();
+		}
+		return ErrorType.UNKNOWN;
+	}
+
+	private ErrorType classifyOne(Throwable e) {
+		if (e instanceof CrawlerException crawlerException) {
+			return crawlerException.getErrorType();
+		}
+		if (e instanceof XhsException.VerificationError) {
+			return ErrorType.VERIFICATION;
+		}
+		if (e instanceof XhsException.IPBlockError) {
+			return ErrorType.IP_BLOCKED;
+		}
+		if (e instanceof XhsException.ParameterError) {
+			return ErrorType.CLIENT_ERROR;
+		}
+		if (e instanceof XhsException.DataFetchError) {
+			return ErrorType.API_ERROR;
+		}
+		if (e instanceof JsonProcessingException) {
+			return ErrorType.PARSE_ERROR;
+		}
+		if (e instanceof IOException) {
+			return ErrorType.NETWORK;
+		}
+		return ErrorType.UNKNOWN;
+	}
+
+	/**
+	 * 获取异常携带的服务端重试等待时间（Retry-After）
+	 * @return 毫秒，0表示未给出
+	 */
+	public long getRetryAfterMs(Throwable e) {
+		Throwable current = e;
+		for (int depth = 0; current != null && depth < 8; depth++) {
+			if (current instanceof CrawlerException crawlerException && crawlerException.getRetryAfterMs() > 0) {
+				return crawlerException.getRetryAfterMs();
+			}
+			current = current.getCause();
+		}
+		return 0;
+	}
+
 	/**
 	 * 判断异常是否为可重试类型
 	 * @param e 异常对象
 	 * @return 是否可重试
 	 */
 	public boolean isRetryableException(Exception e) {
-		return e instanceof RateLimitException
-				|| (e instanceof DataFetchException && !(e instanceof LoginRequiredException))
-				|| (e instanceof RuntimeException && e.getCause() instanceof java.net.SocketTimeoutException);
+		return RetryPolicy.of(classify(e)).isRetryable();
 	}
 
 	/**
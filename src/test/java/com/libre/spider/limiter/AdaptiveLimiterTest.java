@@ -0,0 +1,144 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.LimitAlgorithm;
+import com.libre.spider.enums.RequestPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自适应并发限制器测试 - 在途数限制、出错收缩、AIMD增长、预留名额和等待队列
+ */
+public class AdaptiveLimiterTest {
+
+	private CrawlerConfig.ConcurrencyLimitConfig config(int initialLimit) {
+		CrawlerConfig.ConcurrencyLimitConfig config = new CrawlerConfig.ConcurrencyLimitConfig();
+		config.setAlgorithm(LimitAlgorithm.AIMD);
+		config.setInitialLimit(initialLimit);
+		config.setMinLimit(1);
+		config.setMaxLimit(10);
+		config.setBackoffRatio(0.5);
+		return config;
+	}
+
+	@Test
+	public void inFlightIsBoundedByLimit() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(2));
+
+		AdaptiveLimiter.Permit first = limiter.tryAcquire();
+		assertNotNull(first);
+		assertNotNull(limiter.tryAcquire());
+		assertNull(limiter.tryAcquire());
+
+		first.release();
+		assertNotNull(limiter.tryAcquire());
+	}
+
+	@Test
+	public void releaseIsIdempotent() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(1));
+
+		AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+		permit.release();
+		permit.release();
+		permit.dropped();
+
+		assertEquals(1, limiter.getLimit());
+		assertNotNull(limiter.tryAcquire());
+		assertNull(limiter.tryAcquire());
+	}
+
+	@Test
+	public void droppedShrinksLimit() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(4));
+
+		limiter.tryAcquire().dropped();
+		assertEquals(2, limiter.getLimit());
+
+		limiter.tryAcquire().dropped();
+		limiter.tryAcquire().dropped();
+		// 不低于minLimit
+		assertEquals(1, limiter.getLimit());
+	}
+
+	@Test
+	public void aimdGrowsWhenFullyUsed() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(1));
+
+		limiter.tryAcquire().success();
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void aimdDoesNotGrowWhenAppLimited() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(4));
+
+		// 在途数远低于限制，响应时间不能说明还有余量
+		limiter.tryAcquire().success();
+		assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void setLimitIsClamped() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(3));
+
+		limiter.setLimit(100);
+		assertEquals(10, limiter.getLimit());
+		limiter.setLimit(0);
+		assertEquals(1, limiter.getLimit());
+
+		limiter.setLimit(8);
+		limiter.setMaxLimit(5);
+		assertEquals(5, limiter.getLimit());
+	}
+
+	@Test
+	public void reservedSlotsAreOnlyForInteractiveRequests() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(3));
+		limiter.setReservedSlots(1);
+
+		assertNotNull(limiter.tryAcquire());
+		assertNotNull(limiter.tryAcquire());
+		assertNull(limiter.tryAcquire());
+
+		assertNotNull(limiter.acquire(0, TimeUnit.MILLISECONDS, RequestPriority.INTERACTIVE));
+		assertNull(limiter.acquire(0, TimeUnit.MILLISECONDS, RequestPriority.INTERACTIVE));
+	}
+
+	@Test
+	public void fullWaitingQueueRejectsWithoutWaiting() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(1), 1, 0);
+		assertNotNull(limiter.tryAcquire());
+
+		long start = System.nanoTime();
+		assertNull(limiter.acquire(5, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+	}
+
+	@Test
+	public void waiterIsWokenWhenPermitIsReleased() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", config(1));
+		AdaptiveLimiter.Permit held = limiter.tryAcquire();
+
+		Thread releaser = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			held.release();
+		});
+		releaser.start();
+
+		assertNotNull(limiter.acquire(2, TimeUnit.SECONDS));
+		releaser.join();
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.config.CrawlerConfig;
+import com.libre.spider.enums.CircuitState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 熔断器测试 - 关闭、打开、半开之间的状态转换
+ */
+public class CircuitBreakerTest {
+
+	private static final long COOLDOWN = 50;
+
+	private CircuitBreaker newBreaker() {
+		CrawlerConfig.CircuitBreakerConfig config = new CrawlerConfig.CircuitBreakerConfig();
+		config.setCooldown(COOLDOWN);
+		config.setMaxCooldown(10000);
+		config.setHalfOpenProbes(1);
+		config.setCloseAfterSuccesses(2);
+		return new CircuitBreaker("test", config);
+	}
+
+	private CircuitBreaker.Permission openAndWaitForProbe(CircuitBreaker breaker) throws InterruptedException {
+		breaker.tryAcquire().blocked(461);
+		Thread.sleep(COOLDOWN + 30);
+		CircuitBreaker.Permission probe = breaker.tryAcquire();
+		assertNotNull(probe);
+		assertTrue(probe.isProbe());
+		return probe;
+	}
+
+	@Test
+	public void closedBreakerAllowsRequests() {
+		CircuitBreaker breaker = newBreaker();
+
+		CircuitBreaker.Permission permission = breaker.tryAcquire();
+		assertNotNull(permission);
+		assertFalse(permission.isProbe());
+		permission.success();
+
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getRetryAfterMillis());
+	}
+
+	@Test
+	public void blockedOpensAndRejects() {
+		CircuitBreaker breaker = newBreaker();
+
+		breaker.tryAcquire().blocked(461);
+
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		assertNull(breaker.tryAcquire());
+		assertTrue(breaker.getRetryAfterMillis() > 0);
+	}
+
+	@Test
+	public void cooldownEndsInHalfOpenWithLimitedProbes() throws InterruptedException {
+		CircuitBreaker breaker = newBreaker();
+
+		openAndWaitForProbe(breaker);
+
+		assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+		// 探测名额已满
+		assertNull(breaker.tryAcquire());
+	}
+
+	@Test
+	public void enoughProbeSuccessesClose() throws InterruptedException {
+		CircuitBreaker breaker = newBreaker();
+
+		openAndWaitForProbe(breaker).success();
+		assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+
+		CircuitBreaker.Permission probe = breaker.tryAcquire();
+		assertTrue(probe.isProbe());
+		probe.success();
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+		assertFalse(breaker.tryAcquire().isProbe());
+	}
+
+	@Test
+	public void blockedProbeReopensWithLongerCooldown() throws InterruptedException {
+		CircuitBreaker breaker = newBreaker();
+
+		openAndWaitForProbe(breaker).blocked(461);
+
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		// 第二次打开的冷却时间翻倍
+		assertTrue(breaker.getRetryAfterMillis() > COOLDOWN);
+	}
+
+	@Test
+	public void releasedProbeOnlyFreesTheSlot() throws InterruptedException {
+		CircuitBreaker breaker = newBreaker();
+
+		openAndWaitForProbe(breaker).release();
+
+		assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+		assertNotNull(breaker.tryAcquire());
+	}
+
+	@Test
+	public void permissionCompletesOnlyOnce() {
+		CircuitBreaker breaker = newBreaker();
+
+		CircuitBreaker.Permission permission = breaker.tryAcquire();
+		permission.success();
+		permission.blocked(461);
+
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.libre.spider.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重试预算测试 - 保底重试数和按请求数比例增加的预算
+ */
+public class RetryBudgetTest {
+
+	@Test
+	public void minRetriesAreAllowedWithoutRequests() {
+		RetryBudget budget = new RetryBudget(60000);
+
+		assertTrue(budget.tryAcquire(0.5, 2));
+		assertTrue(budget.tryAcquire(0.5, 2));
+		assertFalse(budget.tryAcquire(0.5, 2));
+	}
+
+	@Test
+	public void budgetGrowsWithRequests() {
+		RetryBudget budget = new RetryBudget(60000);
+		assertTrue(budget.tryAcquire(0.5, 1));
+		assertFalse(budget.tryAcquire(0.5, 1));
+
+		for (int i = 0; i < 4; i++) {
+			budget.recordRequest();
+		}
+		// 保底1次 + 4个请求的50%
+		assertTrue(budget.tryAcquire(0.5, 1));
+		assertTrue(budget.tryAcquire(0.5, 1));
+		assertFalse(budget.tryAcquire(0.5, 1));
+
+		assertEquals(4L, budget.getStats().get("windowRequests"));
+		assertEquals(3L, budget.getStats().get("windowRetries"));
+	}
+
+}
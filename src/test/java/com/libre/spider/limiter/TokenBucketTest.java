@@ -0,0 +1,83 @@
+package com.libre.spider.limiter;
+
+import com.libre.spider.enums.RequestPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶测试 - 突发容量、按间隔补充、等待超时和交互式预留
+ */
+public class TokenBucketTest {
+
+	@Test
+	public void burstIsAvailableImmediately() {
+		TokenBucket bucket = new TokenBucket("test", 10000, 3);
+
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	public void refillsOneTokenPerInterval() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket("test", 50, 1);
+
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+
+		Thread.sleep(80);
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	public void acquireWaitsForRefillWithinTimeout() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket("test", 50, 1);
+		assertTrue(bucket.tryAcquire());
+
+		// 超时短于补充间隔时放弃
+		assertFalse(bucket.acquire("flow", 10, TimeUnit.MILLISECONDS));
+		// 超时长于补充间隔时等到令牌
+		assertTrue(bucket.acquire("flow", 500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void reservedTokensAreOnlyForInteractiveRequests() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket("test", 10000, 2);
+		bucket.setLanes(3, 1, 1);
+
+		// 批量请求需要留下预留的令牌
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+		assertFalse(bucket.acquire("batch", RequestPriority.BATCH, 0, TimeUnit.MILLISECONDS));
+
+		assertTrue(bucket.acquire("interactive", RequestPriority.INTERACTIVE, 0, TimeUnit.MILLISECONDS));
+		assertFalse(bucket.acquire("interactive", RequestPriority.INTERACTIVE, 0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void setRateShrinksAvailableTokens() {
+		TokenBucket bucket = new TokenBucket("test", 10000, 5);
+		bucket.setRate(10000, 2);
+
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	public void hasSpareRespectsReserve() {
+		TokenBucket bucket = new TokenBucket("test", 10000, 3);
+
+		assertTrue(bucket.hasSpare(3));
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.hasSpare(3));
+		assertTrue(bucket.hasSpare(2));
+	}
+
+}